@@ -0,0 +1,16 @@
+package cn.forbearance.spring.aspect;
+
+import org.aspectj.lang.JoinPoint;
+
+/**
+ * {@link LogAspect} 记录日志的去处
+ *
+ * @author cristina
+ */
+public interface AuditLog {
+
+    /**
+     * 只读取需要的连接点信息，签名和参数在第一次访问时才创建
+     */
+    void record(JoinPoint joinPoint);
+}
@@ -0,0 +1,257 @@
+package cn.forbearance.spring.aspect;
+
+import org.aopalliance.aop.Advice;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.aspectj.weaver.internal.tools.PointcutDesignatorHandlerBasedPointcut;
+import org.aspectj.weaver.internal.tools.PointcutExpressionImpl;
+import org.aspectj.weaver.patterns.AndPointcut;
+import org.aspectj.weaver.patterns.NotPointcut;
+import org.aspectj.weaver.patterns.OrPointcut;
+import org.aspectj.weaver.tools.PointcutExpression;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.IntroductionAdvisor;
+import org.springframework.aop.Pointcut;
+import org.springframework.aop.PointcutAdvisor;
+import org.springframework.aop.aspectj.AbstractAspectJAdvice;
+import org.springframework.aop.aspectj.AspectJExpressionPointcut;
+import org.springframework.aop.aspectj.AspectJPrecedenceInformation;
+import org.springframework.aop.aspectj.InstantiationModelAwarePointcutAdvisor;
+import org.springframework.aop.aspectj.annotation.AnnotationAwareAspectJAutoProxyCreator;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按目标类缓存AspectJ切点匹配结果的自动代理创建器
+ * <p>
+ * 切点表达式是否匹配某个类只取决于类和表达式本身，结果按类保存在 {@link ClassValue} 中，同一个类的原型bean、
+ * 同一个类加载器下的多个容器都复用第一次的匹配结果，类被卸载时缓存随之释放。解析后的切点(包括引用的命名切点)
+ * 含有 {@code bean()} 时结果还取决于bean名称，缓存键中加上bean名称；其他类型的Advisor与实例状态有关，不缓存。
+ * 存在引介(introduction)时匹配结果会受影响，整体交给默认实现
+ * <p>
+ * 每个切面的匹配耗时在单例初始化完成后输出，也可以通过 {@link #getPointcutMatchReport()} 获取
+ *
+ * @author cristina
+ */
+@SuppressWarnings("serial")
+public class CachingAspectJAutoProxyCreator extends AnnotationAwareAspectJAutoProxyCreator implements SmartInitializingSingleton {
+
+    private static final Log reportLogger = LogFactory.getLog(CachingAspectJAutoProxyCreator.class);
+
+    private static final ClassValue<Map<MatchKey, Boolean>> MATCHES = new ClassValue<Map<MatchKey, Boolean>>() {
+        @Override
+        protected Map<MatchKey, Boolean> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+
+    /**
+     * 切点 -> 解析后的切点是否与bean名称有关
+     */
+    private final Map<AspectJExpressionPointcut, Boolean> beanNameDependent = new ConcurrentHashMap<>();
+
+    /**
+     * 清空这些类的匹配结果
+     */
+    public static void clearMatchCache(Class<?>... types) {
+        for (Class<?> type : types) {
+            MATCHES.remove(type);
+        }
+    }
+
+    @Override
+    protected List<Advisor> findAdvisorsThatCanApply(List<Advisor> candidateAdvisors, Class<?> beanClass, String beanName) {
+        if (candidateAdvisors.isEmpty()) {
+            return candidateAdvisors;
+        }
+        for (Advisor candidate : candidateAdvisors) {
+            if (candidate instanceof IntroductionAdvisor) {
+                return super.findAdvisorsThatCanApply(candidateAdvisors, beanClass, beanName);
+            }
+        }
+        Map<MatchKey, Boolean> matches = MATCHES.get(beanClass);
+        List<Advisor> eligibleAdvisors = new ArrayList<>();
+        for (Advisor candidate : candidateAdvisors) {
+            long start = System.nanoTime();
+            MatchKey key = keyFor(candidate, beanName);
+            Boolean matched = key != null ? matches.get(key) : null;
+            boolean hit = matched != null;
+            if (!hit) {
+                // 由默认实现匹配，bean()表达式需要它设置的当前bean名称
+                matched = !super.findAdvisorsThatCanApply(Collections.singletonList(candidate), beanClass, beanName).isEmpty();
+                if (key != null) {
+                    matches.put(key, matched);
+                }
+            }
+            if (matched) {
+                eligibleAdvisors.add(candidate);
+            }
+            statsFor(candidate).record(System.nanoTime() - start, hit);
+        }
+        return eligibleAdvisors;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (reportLogger.isInfoEnabled() && !stats.isEmpty()) {
+            reportLogger.info(getPointcutMatchReport());
+        }
+    }
+
+    /**
+     * @return 到目前为止本容器中的匹配统计
+     */
+    public PointcutMatchReport getPointcutMatchReport() {
+        List<PointcutMatchReport.AspectStats> aspects = new ArrayList<>(stats.size());
+        for (Map.Entry<String, Stats> entry : stats.entrySet()) {
+            Stats value = entry.getValue();
+            aspects.add(new PointcutMatchReport.AspectStats(entry.getKey(),
+                    value.nanos.sum(), value.evaluations.sum(), value.hits.sum()));
+        }
+        return new PointcutMatchReport(aspects);
+    }
+
+    /**
+     * @return 不能缓存时返回null
+     */
+    private MatchKey keyFor(Advisor advisor, String beanName) {
+        if (!(advisor instanceof PointcutAdvisor)) {
+            return null;
+        }
+        // perthis/pertarget切面的通知延迟创建，不在匹配阶段触发
+        if (advisor instanceof InstantiationModelAwarePointcutAdvisor
+                && ((InstantiationModelAwarePointcutAdvisor) advisor).isLazy()) {
+            return null;
+        }
+        Pointcut pointcut = ((PointcutAdvisor) advisor).getPointcut();
+        Advice advice = advisor.getAdvice();
+        if (!(pointcut instanceof AspectJExpressionPointcut) || !(advice instanceof AbstractAspectJAdvice)) {
+            return null;
+        }
+        AspectJExpressionPointcut expressionPointcut = (AspectJExpressionPointcut) pointcut;
+        String expression = expressionPointcut.getExpression();
+        if (expression == null) {
+            return null;
+        }
+        Boolean dependent = beanNameDependent.get(expressionPointcut);
+        if (dependent == null) {
+            try {
+                dependent = dependsOnBeanName(expressionPointcut.getPointcutExpression());
+            } catch (RuntimeException ex) {
+                // 表达式无法解析，交给默认实现处理
+                return null;
+            }
+            beanNameDependent.put(expressionPointcut, dependent);
+        }
+        if (dependent && beanName == null) {
+            return null;
+        }
+        return new MatchKey(((AbstractAspectJAdvice) advice).getAspectJAdviceMethod(), expression,
+                dependent ? beanName : null);
+    }
+
+    /**
+     * 遍历解析后的切点，Spring注册的自定义切点只有 {@code bean()}；无法识别的实现按与bean名称有关处理
+     */
+    private static boolean dependsOnBeanName(PointcutExpression expression) {
+        if (!(expression instanceof PointcutExpressionImpl)) {
+            return true;
+        }
+        return dependsOnBeanName(((PointcutExpressionImpl) expression).getUnderlyingPointcut());
+    }
+
+    private static boolean dependsOnBeanName(org.aspectj.weaver.patterns.Pointcut pointcut) {
+        if (pointcut instanceof PointcutDesignatorHandlerBasedPointcut) {
+            return true;
+        }
+        if (pointcut instanceof AndPointcut) {
+            AndPointcut and = (AndPointcut) pointcut;
+            return dependsOnBeanName(and.getLeft()) || dependsOnBeanName(and.getRight());
+        }
+        if (pointcut instanceof OrPointcut) {
+            OrPointcut or = (OrPointcut) pointcut;
+            return dependsOnBeanName(or.getLeft()) || dependsOnBeanName(or.getRight());
+        }
+        if (pointcut instanceof NotPointcut) {
+            return dependsOnBeanName(((NotPointcut) pointcut).getNegatedPointcut());
+        }
+        return false;
+    }
+
+    private Stats statsFor(Advisor advisor) {
+        String aspectName;
+        if (advisor instanceof AspectJPrecedenceInformation) {
+            aspectName = ((AspectJPrecedenceInformation) advisor).getAspectName();
+        } else if (advisor.getAdvice() instanceof AspectJPrecedenceInformation) {
+            // XML配置的切面
+            aspectName = ((AspectJPrecedenceInformation) advisor.getAdvice()).getAspectName();
+        } else {
+            aspectName = advisor.getClass().getName();
+        }
+        Stats value = stats.get(aspectName);
+        if (value == null) {
+            value = stats.computeIfAbsent(aspectName, name -> new Stats());
+        }
+        return value;
+    }
+
+    private static final class MatchKey {
+
+        private final Method adviceMethod;
+
+        private final String expression;
+
+        /**
+         * 切点与bean名称无关时为null
+         */
+        private final String beanName;
+
+        private MatchKey(Method adviceMethod, String expression, String beanName) {
+            this.adviceMethod = adviceMethod;
+            this.expression = expression;
+            this.beanName = beanName;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof MatchKey)) {
+                return false;
+            }
+            MatchKey that = (MatchKey) other;
+            return adviceMethod.equals(that.adviceMethod) && expression.equals(that.expression)
+                    && Objects.equals(beanName, that.beanName);
+        }
+
+        @Override
+        public int hashCode() {
+            return (adviceMethod.hashCode() * 31 + expression.hashCode()) * 31 + Objects.hashCode(beanName);
+        }
+    }
+
+    private static final class Stats {
+
+        private final LongAdder nanos = new LongAdder();
+
+        private final LongAdder evaluations = new LongAdder();
+
+        private final LongAdder hits = new LongAdder();
+
+        private void record(long elapsed, boolean hit) {
+            nanos.add(elapsed);
+            (hit ? hits : evaluations).increment();
+        }
+    }
+}
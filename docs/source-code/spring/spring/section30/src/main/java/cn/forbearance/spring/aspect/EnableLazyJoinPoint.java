@@ -0,0 +1,22 @@
+package cn.forbearance.spring.aspect;
+
+import org.springframework.context.annotation.EnableAspectJAutoProxy;
+import org.springframework.context.annotation.Import;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 与 {@link EnableAspectJAutoProxy} 一起使用，通知改为由 {@link LazyJoinPointAdvisorFactory} 创建
+ *
+ * @author cristina
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Documented
+@Import(LazyJoinPointConfigurer.class)
+public @interface EnableLazyJoinPoint {
+}
@@ -0,0 +1,23 @@
+package cn.forbearance.spring.aspect;
+
+import org.springframework.context.annotation.EnableAspectJAutoProxy;
+import org.springframework.context.annotation.Import;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 与 {@link EnableAspectJAutoProxy} 一起使用，自动代理改为由 {@link CachingAspectJAutoProxyCreator} 创建。
+ * XML配置中直接声明 {@link PointcutMatchCacheConfigurer} bean
+ *
+ * @author cristina
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Documented
+@Import(PointcutMatchCacheConfigurer.class)
+public @interface EnablePointcutMatchCache {
+}
@@ -0,0 +1,165 @@
+package cn.forbearance.spring.aspect;
+
+import org.aopalliance.aop.Advice;
+import org.aopalliance.intercept.MethodInvocation;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.annotation.AfterReturning;
+import org.aspectj.lang.annotation.AfterThrowing;
+import org.springframework.aop.ProxyMethodInvocation;
+import org.springframework.aop.aspectj.AbstractAspectJAdvice;
+import org.springframework.aop.aspectj.AspectInstanceFactory;
+import org.springframework.aop.aspectj.AspectJAfterAdvice;
+import org.springframework.aop.aspectj.AspectJAfterReturningAdvice;
+import org.springframework.aop.aspectj.AspectJAfterThrowingAdvice;
+import org.springframework.aop.aspectj.AspectJExpressionPointcut;
+import org.springframework.aop.aspectj.AspectJMethodBeforeAdvice;
+import org.springframework.aop.aspectj.MethodInvocationProceedingJoinPoint;
+import org.springframework.aop.aspectj.annotation.MetadataAwareAspectInstanceFactory;
+import org.springframework.aop.aspectj.annotation.ReflectiveAspectJAdvisorFactory;
+import org.springframework.aop.interceptor.ExposeInvocationInterceptor;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.util.StringUtils;
+
+import java.lang.reflect.Method;
+
+/**
+ * 按需创建 {@link JoinPoint} 的通知
+ * <p>
+ * 默认的通知每次调用都会创建 {@link JoinPoint}，并为了在同一次调用的多个通知间共享，把它放进调用的属性Map中(每次调用新建一个Map)。
+ * 这里的before、after、after-returning、after-throwing通知在方法没有声明 {@link JoinPoint}/{@link JoinPoint.StaticPart}
+ * 参数时不创建连接点，声明了时直接创建、不放进属性Map。{@link MethodInvocationProceedingJoinPoint} 本身在第一次访问时
+ * 才创建签名、复制参数，所以通知没有访问的信息不会被生成。around通知总是需要连接点，保持不变
+ *
+ * @author cristina
+ */
+public class LazyJoinPointAdvisorFactory extends ReflectiveAspectJAdvisorFactory {
+
+    private static final long serialVersionUID = 1L;
+
+    public LazyJoinPointAdvisorFactory(BeanFactory beanFactory) {
+        super(beanFactory);
+    }
+
+    @Override
+    public Advice getAdvice(Method candidateAdviceMethod, AspectJExpressionPointcut expressionPointcut,
+                            MetadataAwareAspectInstanceFactory aspectInstanceFactory, int declarationOrder, String aspectName) {
+        // 校验和不需要替换的通知交给默认实现
+        Advice advice = super.getAdvice(candidateAdviceMethod, expressionPointcut, aspectInstanceFactory, declarationOrder, aspectName);
+        AbstractAspectJAdvice lazyAdvice;
+        if (advice instanceof AspectJMethodBeforeAdvice) {
+            lazyAdvice = new LazyBeforeAdvice(candidateAdviceMethod, expressionPointcut, aspectInstanceFactory);
+        } else if (advice instanceof AspectJAfterAdvice) {
+            lazyAdvice = new LazyAfterAdvice(candidateAdviceMethod, expressionPointcut, aspectInstanceFactory);
+        } else if (advice instanceof AspectJAfterReturningAdvice) {
+            lazyAdvice = new LazyAfterReturningAdvice(candidateAdviceMethod, expressionPointcut, aspectInstanceFactory);
+            String returning = AnnotationUtils.findAnnotation(candidateAdviceMethod, AfterReturning.class).returning();
+            if (StringUtils.hasText(returning)) {
+                lazyAdvice.setReturningName(returning);
+            }
+        } else if (advice instanceof AspectJAfterThrowingAdvice) {
+            lazyAdvice = new LazyAfterThrowingAdvice(candidateAdviceMethod, expressionPointcut, aspectInstanceFactory);
+            String throwing = AnnotationUtils.findAnnotation(candidateAdviceMethod, AfterThrowing.class).throwing();
+            if (StringUtils.hasText(throwing)) {
+                lazyAdvice.setThrowingName(throwing);
+            }
+        } else {
+            return advice;
+        }
+        lazyAdvice.setAspectName(aspectName);
+        lazyAdvice.setDeclarationOrder(declarationOrder);
+        String[] argNames = this.parameterNameDiscoverer.getParameterNames(candidateAdviceMethod);
+        if (argNames != null) {
+            lazyAdvice.setArgumentNamesFromStringArray(argNames);
+        }
+        lazyAdvice.calculateArgumentBindings();
+        return lazyAdvice;
+    }
+
+    private static boolean declaresJoinPoint(Method adviceMethod) {
+        for (Class<?> parameterType : adviceMethod.getParameterTypes()) {
+            if (JoinPoint.class.isAssignableFrom(parameterType) || JoinPoint.StaticPart.class.isAssignableFrom(parameterType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return 通知方法不需要时返回null，参数绑定不会用到它
+     */
+    private static JoinPoint joinPoint(boolean declared) {
+        if (!declared) {
+            return null;
+        }
+        MethodInvocation mi = ExposeInvocationInterceptor.currentInvocation();
+        if (!(mi instanceof ProxyMethodInvocation)) {
+            throw new IllegalStateException("MethodInvocation is not a Spring ProxyMethodInvocation: " + mi);
+        }
+        return new MethodInvocationProceedingJoinPoint((ProxyMethodInvocation) mi);
+    }
+
+    @SuppressWarnings("serial")
+    private static final class LazyBeforeAdvice extends AspectJMethodBeforeAdvice {
+
+        private final boolean declaresJoinPoint;
+
+        private LazyBeforeAdvice(Method method, AspectJExpressionPointcut pointcut, AspectInstanceFactory aif) {
+            super(method, pointcut, aif);
+            this.declaresJoinPoint = declaresJoinPoint(method);
+        }
+
+        @Override
+        protected JoinPoint getJoinPoint() {
+            return joinPoint(declaresJoinPoint);
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static final class LazyAfterAdvice extends AspectJAfterAdvice {
+
+        private final boolean declaresJoinPoint;
+
+        private LazyAfterAdvice(Method method, AspectJExpressionPointcut pointcut, AspectInstanceFactory aif) {
+            super(method, pointcut, aif);
+            this.declaresJoinPoint = declaresJoinPoint(method);
+        }
+
+        @Override
+        protected JoinPoint getJoinPoint() {
+            return joinPoint(declaresJoinPoint);
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static final class LazyAfterReturningAdvice extends AspectJAfterReturningAdvice {
+
+        private final boolean declaresJoinPoint;
+
+        private LazyAfterReturningAdvice(Method method, AspectJExpressionPointcut pointcut, AspectInstanceFactory aif) {
+            super(method, pointcut, aif);
+            this.declaresJoinPoint = declaresJoinPoint(method);
+        }
+
+        @Override
+        protected JoinPoint getJoinPoint() {
+            return joinPoint(declaresJoinPoint);
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static final class LazyAfterThrowingAdvice extends AspectJAfterThrowingAdvice {
+
+        private final boolean declaresJoinPoint;
+
+        private LazyAfterThrowingAdvice(Method method, AspectJExpressionPointcut pointcut, AspectInstanceFactory aif) {
+            super(method, pointcut, aif);
+            this.declaresJoinPoint = declaresJoinPoint(method);
+        }
+
+        @Override
+        protected JoinPoint getJoinPoint() {
+            return joinPoint(declaresJoinPoint);
+        }
+    }
+}
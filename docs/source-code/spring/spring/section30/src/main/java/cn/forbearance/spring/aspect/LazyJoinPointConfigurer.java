@@ -0,0 +1,28 @@
+package cn.forbearance.spring.aspect;
+
+import org.springframework.aop.config.AopConfigUtils;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+
+/**
+ * 把 {@link LazyJoinPointAdvisorFactory} 设置到自动代理创建器上
+ * <p>
+ * 创建器在 setBeanFactory 时根据advisorFactory构建通知，所以通过属性注入，而不是创建后再修改
+ *
+ * @author cristina
+ */
+public class LazyJoinPointConfigurer implements BeanFactoryPostProcessor {
+
+    private static final String ADVISOR_FACTORY_PROPERTY = "aspectJAdvisorFactory";
+
+    @Override
+    public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) throws BeansException {
+        if (!beanFactory.containsBeanDefinition(AopConfigUtils.AUTO_PROXY_CREATOR_BEAN_NAME)) {
+            throw new IllegalStateException("@EnableLazyJoinPoint 需要和 @EnableAspectJAutoProxy 一起使用");
+        }
+        BeanDefinition creator = beanFactory.getBeanDefinition(AopConfigUtils.AUTO_PROXY_CREATOR_BEAN_NAME);
+        creator.getPropertyValues().add(ADVISOR_FACTORY_PROPERTY, new LazyJoinPointAdvisorFactory(beanFactory));
+    }
+}
@@ -4,7 +4,7 @@ import org.aspectj.lang.JoinPoint;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Before;
 import org.aspectj.lang.annotation.Pointcut;
-import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.util.Assert;
 
 /**
  * @author cristina
@@ -12,14 +12,22 @@ import org.springframework.context.annotation.AnnotationConfigApplicationContext
 @Aspect
 public class LogAspect {
 
-    @Pointcut
+    private final AuditLog auditLog;
+
+    /**
+     * 依赖在创建切面时注入一次，通知执行时不再查找
+     */
+    public LogAspect(AuditLog auditLog) {
+        Assert.notNull(auditLog, "AuditLog must not be null");
+        this.auditLog = auditLog;
+    }
+
+    @Pointcut("execution(public * cn.forbearance.spring.service.BookService.*(..))")
     public void pointCut() {}
 
     @Before("pointCut()")
     public void saveLog(JoinPoint joinPoint) {
-        AnnotationConfigApplicationContext annotationConfigApplicationContext = new AnnotationConfigApplicationContext();
-        annotationConfigApplicationContext.getBean("");
-        System.out.println("...");
+        auditLog.record(joinPoint);
     }
 
 
@@ -0,0 +1,33 @@
+package cn.forbearance.spring.aspect;
+
+import org.springframework.aop.aspectj.annotation.AnnotationAwareAspectJAutoProxyCreator;
+import org.springframework.aop.config.AopConfigUtils;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+
+/**
+ * 把注册好的 {@link AnnotationAwareAspectJAutoProxyCreator} 替换为 {@link CachingAspectJAutoProxyCreator}
+ * <p>
+ * {@code AopConfigUtils} 只认识Spring自带的创建器，不能提前注册子类，所以在注册完成后修改bean类，原有的属性保持不变
+ *
+ * @author cristina
+ */
+public class PointcutMatchCacheConfigurer implements BeanFactoryPostProcessor {
+
+    @Override
+    public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) throws BeansException {
+        if (!beanFactory.containsBeanDefinition(AopConfigUtils.AUTO_PROXY_CREATOR_BEAN_NAME)) {
+            throw new IllegalStateException("切点匹配缓存需要开启AspectJ自动代理");
+        }
+        BeanDefinition creator = beanFactory.getBeanDefinition(AopConfigUtils.AUTO_PROXY_CREATOR_BEAN_NAME);
+        if (CachingAspectJAutoProxyCreator.class.getName().equals(creator.getBeanClassName())) {
+            return;
+        }
+        if (!AnnotationAwareAspectJAutoProxyCreator.class.getName().equals(creator.getBeanClassName())) {
+            throw new IllegalStateException("不支持的自动代理创建器：" + creator.getBeanClassName());
+        }
+        creator.setBeanClassName(CachingAspectJAutoProxyCreator.class.getName());
+    }
+}
@@ -0,0 +1,93 @@
+package cn.forbearance.spring.aspect;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 创建代理时每个切面的切点匹配耗时
+ *
+ * @author cristina
+ */
+public class PointcutMatchReport {
+
+    private final List<AspectStats> aspects;
+
+    PointcutMatchReport(List<AspectStats> aspects) {
+        List<AspectStats> sorted = new ArrayList<>(aspects);
+        sorted.sort((a, b) -> Long.compare(b.matchNanos, a.matchNanos));
+        this.aspects = Collections.unmodifiableList(sorted);
+    }
+
+    /**
+     * @return 按耗时从高到低排序
+     */
+    public List<AspectStats> getAspects() {
+        return aspects;
+    }
+
+    public AspectStats getAspect(String aspectName) {
+        for (AspectStats stats : aspects) {
+            if (stats.aspectName.equals(aspectName)) {
+                return stats;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("Pointcut matching by aspect:");
+        for (AspectStats stats : aspects) {
+            sb.append("\n  ").append(stats);
+        }
+        return sb.toString();
+    }
+
+    public static class AspectStats {
+
+        private final String aspectName;
+
+        private final long matchNanos;
+
+        private final long evaluations;
+
+        private final long cacheHits;
+
+        AspectStats(String aspectName, long matchNanos, long evaluations, long cacheHits) {
+            this.aspectName = aspectName;
+            this.matchNanos = matchNanos;
+            this.evaluations = evaluations;
+            this.cacheHits = cacheHits;
+        }
+
+        public String getAspectName() {
+            return aspectName;
+        }
+
+        /**
+         * @return 匹配总耗时，包含命中缓存的查找
+         */
+        public long getMatchNanos() {
+            return matchNanos;
+        }
+
+        /**
+         * @return 实际计算切点的次数
+         */
+        public long getEvaluations() {
+            return evaluations;
+        }
+
+        public long getCacheHits() {
+            return cacheHits;
+        }
+
+        @Override
+        public String toString() {
+            return aspectName + ": " + TimeUnit.NANOSECONDS.toMicros(matchNanos) + " us, "
+                    + evaluations + " evaluated, " + cacheHits + " cached";
+        }
+    }
+}
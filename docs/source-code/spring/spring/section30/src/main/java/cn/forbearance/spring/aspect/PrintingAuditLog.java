@@ -0,0 +1,16 @@
+package cn.forbearance.spring.aspect;
+
+import org.aspectj.lang.JoinPoint;
+
+/**
+ * 输出到控制台
+ *
+ * @author cristina
+ */
+public class PrintingAuditLog implements AuditLog {
+
+    @Override
+    public void record(JoinPoint joinPoint) {
+        System.out.println("..." + joinPoint.getSignature().toShortString());
+    }
+}
@@ -0,0 +1,373 @@
+package cn.forbearance.spring.aspect;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.Signature;
+import org.springframework.util.Assert;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 异步批量写入文件的审计日志
+ * <p>
+ * 调用线程只把 时间、类名、方法名 放进有界的无锁环形缓冲区，后台线程批量取出，编码后一次写入 {@link FileChannel}。
+ * 缓冲区满时按 {@link OverflowPolicy} 处理。每行的格式为 {@code 毫秒时间戳 类名.方法名}
+ *
+ * @author cristina
+ */
+public class RingBufferAuditLog implements AuditLog, Closeable {
+
+    private static final Log logger = LogFactory.getLog(RingBufferAuditLog.class);
+
+    /**
+     * 没有记录时写入线程最长的等待时间，也是低负载时日志落盘的最大延迟
+     */
+    private static final long FLUSH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    public enum OverflowPolicy {
+
+        /**
+         * 丢弃新记录
+         */
+        DROP,
+
+        /**
+         * 等待写入线程腾出空间
+         */
+        BLOCK,
+
+        /**
+         * 缓冲区超过一半时只保留每 sampleRate 条中的一条，满时丢弃
+         */
+        SAMPLE
+    }
+
+    private final int capacity;
+
+    private final int mask;
+
+    private final OverflowPolicy overflowPolicy;
+
+    private final int sampleRate;
+
+    /**
+     * 槽位的序号：等于写入位置时可写，等于写入位置+1时可读
+     */
+    private final AtomicLongArray sequences;
+
+    private final long[] timestamps;
+
+    private final String[] types;
+
+    private final String[] methods;
+
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * 只由写入线程更新
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    private final LongAdder enqueued = new LongAdder();
+
+    private final LongAdder dropped = new LongAdder();
+
+    private final AtomicLong sampleCounter = new AtomicLong();
+
+    private volatile long written;
+
+    private final FileChannel channel;
+
+    private final Thread writer;
+
+    private volatile boolean writerParked;
+
+    private volatile boolean running = true;
+
+    /**
+     * 正在发布记录的线程数
+     */
+    private final AtomicInteger producers = new AtomicInteger();
+
+    /**
+     * @param capacity 缓冲区容量，向上取整为2的幂
+     */
+    public RingBufferAuditLog(File file, int capacity, OverflowPolicy overflowPolicy, int sampleRate) throws IOException {
+        Assert.isTrue(capacity > 1, "capacity must be greater than 1");
+        Assert.notNull(overflowPolicy, "OverflowPolicy must not be null");
+        Assert.isTrue(sampleRate > 0, "sampleRate must be positive");
+        this.capacity = Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = this.capacity - 1;
+        this.overflowPolicy = overflowPolicy;
+        this.sampleRate = sampleRate;
+        this.sequences = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++) {
+            sequences.set(i, i);
+        }
+        this.timestamps = new long[this.capacity];
+        this.types = new String[this.capacity];
+        this.methods = new String[this.capacity];
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.writer = new Thread(this::writeLoop, "audit-log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public void record(JoinPoint joinPoint) {
+        Signature signature = joinPoint.getSignature();
+        record(signature.getDeclaringTypeName(), signature.getName());
+    }
+
+    public void record(String type, String method) {
+        // 先登记再检查状态，close看到没有正在发布的线程之后，不会再有记录进入缓冲区
+        producers.incrementAndGet();
+        try {
+            publish(type, method);
+        } finally {
+            producers.decrementAndGet();
+        }
+    }
+
+    private void publish(String type, String method) {
+        if (!running) {
+            dropped.increment();
+            return;
+        }
+        if (overflowPolicy == OverflowPolicy.SAMPLE && tail.get() - head.get() >= capacity / 2
+                && sampleCounter.incrementAndGet() % sampleRate != 0) {
+            dropped.increment();
+            return;
+        }
+        long timestamp = System.currentTimeMillis();
+        while (!offer(timestamp, type, method)) {
+            if (overflowPolicy != OverflowPolicy.BLOCK || !running) {
+                dropped.increment();
+                return;
+            }
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(this, BLOCK_PARK_NANOS);
+        }
+        enqueued.increment();
+        // 积累到一半再唤醒，让写入线程每次能取出一批
+        if (writerParked && tail.get() - head.get() >= capacity / 2) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    public long getEnqueuedCount() {
+        return enqueued.sum();
+    }
+
+    public long getWrittenCount() {
+        return written;
+    }
+
+    /**
+     * @return 因为缓冲区满、采样或已关闭而丢弃的记录数
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * 写完缓冲区中剩余的记录后关闭文件，之后的记录计为丢弃
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        // 等待已经通过检查的线程发布完，BLOCK策略下等待空间的线程看到状态后会放弃
+        while (producers.get() > 0) {
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(this, BLOCK_PARK_NANOS);
+        }
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        // 写入线程结束前正在发布的记录
+        ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+        int count;
+        while (!writer.isAlive() && (count = drain(buffer)) > 0) {
+            write(buffer, count);
+        }
+        channel.close();
+    }
+
+    private boolean offer(long timestamp, String type, String method) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    timestamps[index] = timestamp;
+                    types[index] = type;
+                    methods[index] = method;
+                    sequences.lazySet(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    private void writeLoop() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+        while (true) {
+            // 先读取状态再取数据，关闭前发布的记录一定能被最后一轮取出
+            boolean stopping = !running;
+            int count = drain(buffer);
+            if (count > 0) {
+                write(buffer, count);
+            } else if (stopping) {
+                return;
+            } else {
+                writerParked = true;
+                if (!hasPending()) {
+                    LockSupport.parkNanos(this, FLUSH_INTERVAL_NANOS);
+                }
+                writerParked = false;
+            }
+        }
+    }
+
+    private boolean hasPending() {
+        long position = head.get();
+        return sequences.get((int) (position & mask)) == position + 1;
+    }
+
+    /**
+     * 取出记录直到缓冲区为空或写缓冲放不下下一条
+     */
+    private int drain(ByteBuffer buffer) {
+        long position = head.get();
+        int count = 0;
+        while (true) {
+            int index = (int) (position & mask);
+            if (sequences.get(index) != position + 1) {
+                break;
+            }
+            if (!encode(buffer, timestamps[index], types[index], methods[index])) {
+                if (count == 0) {
+                    // 单条记录超过写缓冲，截断后写入
+                    buffer.clear();
+                    encode(buffer, timestamps[index], truncate(types[index]), truncate(methods[index]));
+                } else {
+                    break;
+                }
+            }
+            types[index] = null;
+            methods[index] = null;
+            sequences.lazySet(index, position + capacity);
+            position++;
+            count++;
+        }
+        head.lazySet(position);
+        return count;
+    }
+
+    private void write(ByteBuffer buffer, int count) {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            written += count;
+        } catch (IOException ex) {
+            dropped.add(count);
+            logger.warn("Failed to write " + count + " audit records", ex);
+        }
+        buffer.clear();
+    }
+
+    private static boolean encode(ByteBuffer buffer, long timestamp, String type, String method) {
+        int start = buffer.position();
+        if (putLong(buffer, timestamp) && put(buffer, ' ') && putString(buffer, type) && put(buffer, '.')
+                && putString(buffer, method) && put(buffer, '\n')) {
+            return true;
+        }
+        buffer.position(start);
+        return false;
+    }
+
+    private static boolean putLong(ByteBuffer buffer, long value) {
+        if (value < 0) {
+            return putString(buffer, Long.toString(value));
+        }
+        int digits = 1;
+        for (long v = value / 10; v > 0; v /= 10) {
+            digits++;
+        }
+        if (buffer.remaining() < digits) {
+            return false;
+        }
+        int end = buffer.position() + digits;
+        for (int i = end - 1; i >= buffer.position(); i--) {
+            buffer.put(i, (byte) ('0' + value % 10));
+            value /= 10;
+        }
+        buffer.position(end);
+        return true;
+    }
+
+    private static boolean put(ByteBuffer buffer, char c) {
+        if (!buffer.hasRemaining()) {
+            return false;
+        }
+        buffer.put((byte) c);
+        return true;
+    }
+
+    /**
+     * 类名和方法名通常是ASCII，直接写入，其他字符再按UTF-8编码
+     */
+    private static boolean putString(ByteBuffer buffer, String value) {
+        int length = value.length();
+        if (buffer.remaining() < length) {
+            return false;
+        }
+        int start = buffer.position();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                buffer.position(start);
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                if (buffer.remaining() < bytes.length) {
+                    return false;
+                }
+                buffer.put(bytes);
+                return true;
+            }
+            buffer.put((byte) c);
+        }
+        return true;
+    }
+
+    private static String truncate(String value) {
+        return value.length() > WRITE_BUFFER_SIZE / 8 ? value.substring(0, WRITE_BUFFER_SIZE / 8) : value;
+    }
+}
@@ -1,15 +1,24 @@
 package cn.forbearance.spring.bean;
 
+import cn.forbearance.spring.factory.SelectiveBeanPostProcessor;
 import org.springframework.beans.BeansException;
-import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.core.Ordered;
 import org.springframework.stereotype.Component;
 
 /**
+ * 只处理项目自己的bean，Spring内部的bean不会经过这里
+ *
  * @author cristina
  */
 @Component
-public class CustomerBeanPostProcessor implements BeanPostProcessor, Ordered {
+public class CustomerBeanPostProcessor implements SelectiveBeanPostProcessor, Ordered {
+
+    private static final String BASE_PACKAGE = "cn.forbearance.spring.";
+
+    @Override
+    public boolean supportsBeanType(Class<?> beanType) {
+        return beanType.getName().startsWith(BASE_PACKAGE);
+    }
 
     @Override
     public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
@@ -0,0 +1,35 @@
+package cn.forbearance.spring.condition;
+
+import org.springframework.context.annotation.Condition;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+
+/**
+ * 判断结果只取决于Environment中若干属性的条件，结果由 {@link ConditionCache} 缓存：
+ * 属性源不变时直接复用，属性源变化时按这些属性的值决定是否重新判断
+ *
+ * @author cristina
+ */
+public abstract class CachingCondition implements Condition {
+
+    private final String[] keyProperties;
+
+    /**
+     * @param keyProperties 判断逻辑读取的全部属性
+     */
+    protected CachingCondition(String... keyProperties) {
+        this.keyProperties = keyProperties;
+    }
+
+    @Override
+    public final boolean matches(ConditionContext context, AnnotatedTypeMetadata metadata) {
+        return ConditionCache.matches(context.getEnvironment(), getClass(), keyProperties, () -> evaluate(context, metadata));
+    }
+
+    /**
+     * 真正的判断逻辑，结果只能依赖于构造时声明的属性，不能依赖于 metadata，否则缓存结果不正确
+     * @param context 上下文(环境)
+     * @param metadata 当前标注了@Condition注解的注释信息
+     */
+    protected abstract boolean evaluate(ConditionContext context, AnnotatedTypeMetadata metadata);
+}
@@ -0,0 +1,188 @@
+package cn.forbearance.spring.condition;
+
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.PropertySource;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 条件判断结果缓存
+ * <p>
+ * 每个Environment一份缓存，结果按 条件类 缓存，同一个条件标注在多个bean上时只会真正判断一次。
+ * 命中时只比较属性源列表是否还是判断时的那些实例，不再解析属性；属性源有增减或替换时，
+ * 重新读取条件声明的属性，值没有变化时沿用结果，否则重新判断。
+ * 已有属性源内部的修改(比如 {@link System#setProperty})不会被发现，需要时调用 {@link #clear()}
+ *
+ * @author cristina
+ */
+public final class ConditionCache {
+
+    private static final Map<Environment, ConditionCache> CACHES = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * 最近一次使用的Environment及其缓存，连续判断同一个Environment时不经过 {@link #CACHES} 的锁
+     */
+    private static volatile LastUsed lastUsed;
+
+    /**
+     * 条件类 -> 最近一次的判断结果
+     */
+    private final Map<Class<?>, Result> results = new ConcurrentHashMap<>(8);
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private ConditionCache() {
+    }
+
+    /**
+     * @return 该Environment的缓存，统计数据只包含这个Environment下的判断
+     */
+    public static ConditionCache forEnvironment(Environment environment) {
+        LastUsed last = lastUsed;
+        if (last != null && last.environment.get() == environment) {
+            return last.cache;
+        }
+        ConditionCache cache = CACHES.computeIfAbsent(environment, key -> new ConditionCache());
+        lastUsed = new LastUsed(environment, cache);
+        return cache;
+    }
+
+    static boolean matches(Environment environment, Class<?> conditionClass, String[] keyProperties,
+                           BooleanSupplier evaluator) {
+        ConditionCache cache = forEnvironment(environment);
+        Result result = cache.results.get(conditionClass);
+        if (result != null && result.isCurrent(environment)) {
+            cache.hits.incrementAndGet();
+            return result.matched;
+        }
+        // 先记录属性源再读取属性，读取期间属性源的变化留给下一次判断发现
+        PropertySource<?>[] propertySources = propertySourcesOf(environment);
+        String[] values = valuesOf(environment, keyProperties);
+        if (result != null && Arrays.equals(result.values, values)) {
+            // 属性源变化了，但条件读取的属性值没有变化
+            cache.results.put(conditionClass, new Result(propertySources, values, result.matched));
+            cache.hits.incrementAndGet();
+            return result.matched;
+        }
+        cache.misses.incrementAndGet();
+        boolean matched = evaluator.getAsBoolean();
+        cache.results.put(conditionClass, new Result(propertySources, values, matched));
+        return matched;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public double getHitRate() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    public void clear() {
+        results.clear();
+        hits.set(0);
+        misses.set(0);
+    }
+
+    public String report() {
+        return String.format("condition cache: hits=%d, misses=%d, hitRate=%.2f", getHitCount(), getMissCount(), getHitRate());
+    }
+
+    private static String[] valuesOf(Environment environment, String[] keyProperties) {
+        String[] values = new String[keyProperties.length];
+        for (int i = 0; i < keyProperties.length; i++) {
+            values[i] = environment.getProperty(keyProperties[i]);
+        }
+        return values;
+    }
+
+    /**
+     * @return 当前的属性源，不是 {@link ConfigurableEnvironment} 时为null，每次都重新读取属性
+     */
+    private static PropertySource<?>[] propertySourcesOf(Environment environment) {
+        if (!(environment instanceof ConfigurableEnvironment)) {
+            return null;
+        }
+        MutablePropertySources propertySources = ((ConfigurableEnvironment) environment).getPropertySources();
+        PropertySource<?>[] snapshot = new PropertySource<?>[propertySources.size()];
+        int i = 0;
+        for (PropertySource<?> propertySource : propertySources) {
+            if (i == snapshot.length) {
+                // 遍历期间有属性源加入，下次判断时重新读取属性
+                return null;
+            }
+            snapshot[i++] = propertySource;
+        }
+        return i == snapshot.length ? snapshot : null;
+    }
+
+    private static class Result {
+
+        /**
+         * 判断时的属性源
+         */
+        private final PropertySource<?>[] propertySources;
+
+        /**
+         * 判断时条件读取的属性值
+         */
+        private final String[] values;
+
+        private final boolean matched;
+
+        Result(PropertySource<?>[] propertySources, String[] values, boolean matched) {
+            this.propertySources = propertySources;
+            this.values = values;
+            this.matched = matched;
+        }
+
+        /**
+         * 按引用逐个比较属性源，命中时不解析属性
+         */
+        boolean isCurrent(Environment environment) {
+            if (propertySources == null) {
+                return false;
+            }
+            MutablePropertySources current = ((ConfigurableEnvironment) environment).getPropertySources();
+            if (current.size() != propertySources.length) {
+                return false;
+            }
+            int i = 0;
+            for (PropertySource<?> propertySource : current) {
+                if (i == propertySources.length || propertySource != propertySources[i++]) {
+                    return false;
+                }
+            }
+            return i == propertySources.length;
+        }
+    }
+
+    private static class LastUsed {
+
+        private final WeakReference<Environment> environment;
+
+        private final ConditionCache cache;
+
+        LastUsed(Environment environment, ConditionCache cache) {
+            this.environment = new WeakReference<>(environment);
+            this.cache = cache;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package cn.forbearance.spring.condition;
 
 import cn.forbearance.spring.bean.Background;
+import cn.forbearance.spring.registry.BeanDefinitionBatch;
 import org.springframework.beans.factory.support.BeanDefinitionRegistry;
 import org.springframework.beans.factory.support.RootBeanDefinition;
 import org.springframework.context.annotation.ImportBeanDefinitionRegistrar;
@@ -21,11 +22,14 @@ public class CustomImportBeanDefinitionRegistrar implements ImportBeanDefinition
                                         BeanDefinitionRegistry registry) {
         boolean definition1 = registry.containsBeanDefinition("cn.forbearance.spring.bean.Color");
         boolean definition2 = registry.containsBeanDefinition("cn.forbearance.spring.bean.Pink");
+        BeanDefinitionBatch batch = new BeanDefinitionBatch(1);
         if (definition1 && definition2) {
             // 可以指定bean的定义信息：bean的类型、作用域等等
             // RootBeanDefinition是BeanDefinition接口的一个实现类
             RootBeanDefinition beanDefinition = new RootBeanDefinition(Background.class);
-            registry.registerBeanDefinition("background", beanDefinition);
+            batch.add("background", beanDefinition);
         }
+        // 注册中心支持批量注册时一次性注册，否则逐个注册
+        batch.registerTo(registry);
     }
 }
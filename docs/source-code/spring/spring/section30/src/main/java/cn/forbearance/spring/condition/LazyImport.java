@@ -0,0 +1,34 @@
+package cn.forbearance.spring.condition;
+
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.ImportSelector;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 延迟导入
+ * <p>
+ * 与 {@code @Import(CustomImportSelector.class)} 不同，{@link ImportSelector} 返回的类不会在配置类解析阶段被加载和解析，
+ * 只注册一个只有类名的懒加载BeanDefinition，直到第一次按类型或名称获取时才加载类。
+ * 被导入的类按普通组件处理，不会再作为配置类解析其中的 {@code @Bean}、{@code @Import}
+ * <p>
+ * 容器刷新时会按类型查找BeanPostProcessor、监听器等，默认的BeanFactory会因此加载所有类，
+ * 需要配合 {@link cn.forbearance.spring.factory.LazyImportBeanFactory} 才能把类加载推迟到真正使用时
+ *
+ * @author cristina
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Documented
+@Import(LazyImportRegistrar.class)
+public @interface LazyImport {
+
+    /**
+     * 提供类名的ImportSelector
+     */
+    Class<? extends ImportSelector>[] value();
+}
@@ -0,0 +1,107 @@
+package cn.forbearance.spring.condition;
+
+import cn.forbearance.spring.registry.BeanDefinitionBatch;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanClassLoaderAware;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.GenericBeanDefinition;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.context.ResourceLoaderAware;
+import org.springframework.context.annotation.ImportBeanDefinitionRegistrar;
+import org.springframework.context.annotation.ImportSelector;
+import org.springframework.core.annotation.AnnotationAttributes;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.core.type.AnnotationMetadata;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 解析 {@link LazyImport}，为选择的类注册占位BeanDefinition
+ *
+ * @author cristina
+ */
+public class LazyImportRegistrar implements ImportBeanDefinitionRegistrar, BeanFactoryAware,
+        BeanClassLoaderAware, EnvironmentAware, ResourceLoaderAware {
+
+    /**
+     * 标记延迟导入的BeanDefinition
+     */
+    public static final String LAZY_IMPORT_ATTRIBUTE = LazyImportRegistrar.class.getName() + ".lazyImport";
+
+    private BeanFactory beanFactory;
+
+    private ClassLoader beanClassLoader;
+
+    private Environment environment;
+
+    private ResourceLoader resourceLoader;
+
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
+        this.beanFactory = beanFactory;
+    }
+
+    @Override
+    public void setBeanClassLoader(ClassLoader classLoader) {
+        this.beanClassLoader = classLoader;
+    }
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.environment = environment;
+    }
+
+    @Override
+    public void setResourceLoader(ResourceLoader resourceLoader) {
+        this.resourceLoader = resourceLoader;
+    }
+
+    @Override
+    public void registerBeanDefinitions(AnnotationMetadata importingClassMetadata, BeanDefinitionRegistry registry) {
+        AnnotationAttributes attributes = AnnotationAttributes.fromMap(
+                importingClassMetadata.getAnnotationAttributes(LazyImport.class.getName(), false));
+
+        List<String> classNames = new ArrayList<>();
+        for (Class<?> selectorClass : attributes.getClassArray("value")) {
+            ImportSelector selector = BeanUtils.instantiateClass(selectorClass, ImportSelector.class);
+            invokeAwareMethods(selector);
+            for (String className : selector.selectImports(importingClassMetadata)) {
+                if (!registry.containsBeanDefinition(className)) {
+                    classNames.add(className);
+                }
+            }
+        }
+
+        // 只记录类名，不加载类
+        BeanDefinitionBatch batch = new BeanDefinitionBatch(classNames.size());
+        for (String className : classNames) {
+            GenericBeanDefinition beanDefinition = new GenericBeanDefinition();
+            beanDefinition.setBeanClassName(className);
+            beanDefinition.setLazyInit(true);
+            beanDefinition.setSource(importingClassMetadata.getClassName());
+            beanDefinition.setAttribute(LAZY_IMPORT_ATTRIBUTE, Boolean.TRUE);
+            batch.add(className, beanDefinition);
+        }
+        batch.registerTo(registry);
+    }
+
+    private void invokeAwareMethods(ImportSelector selector) {
+        if (selector instanceof BeanClassLoaderAware) {
+            ((BeanClassLoaderAware) selector).setBeanClassLoader(beanClassLoader);
+        }
+        if (selector instanceof BeanFactoryAware) {
+            ((BeanFactoryAware) selector).setBeanFactory(beanFactory);
+        }
+        if (selector instanceof EnvironmentAware) {
+            ((EnvironmentAware) selector).setEnvironment(environment);
+        }
+        if (selector instanceof ResourceLoaderAware) {
+            ((ResourceLoaderAware) selector).setResourceLoader(resourceLoader);
+        }
+    }
+}
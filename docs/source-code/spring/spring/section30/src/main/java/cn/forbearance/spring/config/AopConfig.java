@@ -0,0 +1,50 @@
+package cn.forbearance.spring.config;
+
+import cn.forbearance.spring.aspect.AuditLog;
+import cn.forbearance.spring.aspect.LogAspect;
+import cn.forbearance.spring.aspect.RingBufferAuditLog;
+import cn.forbearance.spring.mapper.BookMapper;
+import cn.forbearance.spring.service.BookService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.EnableAspectJAutoProxy;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * {@link LogAspect} 记录 {@link BookService} 的调用
+ *
+ * @author cristina
+ */
+@EnableAspectJAutoProxy
+@Configuration
+public class AopConfig {
+
+    @Bean
+    public BookMapper bookMapper() {
+        return new BookMapper();
+    }
+
+    @Bean
+    public BookService bookService() {
+        return new BookService();
+    }
+
+    /**
+     * 调用线程只负责入队，由后台线程批量写入文件
+     */
+    @Bean
+    public AuditLog auditLog(@Value("${audit.log.file:${java.io.tmpdir}/audit.log}") String file,
+                             @Value("${audit.log.capacity:8192}") int capacity,
+                             @Value("${audit.log.overflow:DROP}") RingBufferAuditLog.OverflowPolicy overflowPolicy,
+                             @Value("${audit.log.sampleRate:10}") int sampleRate) throws IOException {
+        return new RingBufferAuditLog(new File(file), capacity, overflowPolicy, sampleRate);
+    }
+
+    @Bean
+    public LogAspect logAspect(AuditLog auditLog) {
+        return new LogAspect(auditLog);
+    }
+}
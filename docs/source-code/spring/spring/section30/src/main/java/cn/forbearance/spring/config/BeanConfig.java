@@ -1,7 +1,11 @@
 package cn.forbearance.spring.config;
 
+import cn.forbearance.spring.aspect.EnablePointcutMatchCache;
 import cn.forbearance.spring.bean.Color;
-import com.mchange.v2.c3p0.ComboPooledDataSource;
+import cn.forbearance.spring.datasource.DataSourcePoolFactory;
+import cn.forbearance.spring.datasource.LazyDataSource;
+import cn.forbearance.spring.datasource.PoolProperties;
+import cn.forbearance.spring.env.MappedPropertySourceFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.*;
 
@@ -12,8 +16,9 @@ import javax.sql.DataSource;
  * @author cristina
  */
 @EnableAspectJAutoProxy
+@EnablePointcutMatchCache
 @Configuration
-@PropertySource("classpath:/application.properties")
+@PropertySource(value = "classpath:/application.properties", factory = MappedPropertySourceFactory.class)
 public class BeanConfig {
 
     @Value("${db.user}")
@@ -25,6 +30,24 @@ public class BeanConfig {
     @Value("${db.driverClass}")
     private String driverClass;
 
+    /**
+     * c3p0、lockfree 或者 {@link DataSourcePoolFactory} 实现类的全类名
+     */
+    @Value("${db.pool.type:c3p0}")
+    private String poolType;
+
+    @Value("${db.pool.maxSize:15}")
+    private int maxSize;
+
+    @Value("${db.pool.borrowTimeoutMillis:0}")
+    private long borrowTimeoutMillis;
+
+    /**
+     * 容器刷新后在后台预先打开的连接数，0表示第一次使用时再连接
+     */
+    @Value("${db.pool.warmUpConnections:0}")
+    private int warmUpConnections;
+
     @Bean
     public Color color() {
         return new Color();
@@ -34,33 +57,36 @@ public class BeanConfig {
 //    @Profile("default")
     @Bean("testDataSource")
     public DataSource dataSourceTest() throws Exception {
-        ComboPooledDataSource dataSource = new ComboPooledDataSource();
-        dataSource.setUser(user);
-        dataSource.setPassword(password);
-        dataSource.setJdbcUrl("jdbc:mysql://localhost:3306/test");
-        dataSource.setDriverClass(driverClass);
-        return dataSource;
+        return dataSource("jdbc:mysql://localhost:3306/test");
     }
 
     @Profile("dev")
     @Bean("devDataSource")
     public DataSource dataSourceDev() throws Exception {
-        ComboPooledDataSource dataSource = new ComboPooledDataSource();
-        dataSource.setUser(user);
-        dataSource.setPassword(password);
-        dataSource.setJdbcUrl("jdbc:mysql://localhost:3306/ssm_crud");
-        dataSource.setDriverClass(driverClass);
-        return dataSource;
+        return dataSource("jdbc:mysql://localhost:3306/ssm_crud");
     }
 
     @Profile("prod")
     @Bean("prodDataSource")
     public DataSource dataSourceProd() throws Exception {
-        ComboPooledDataSource dataSource = new ComboPooledDataSource();
-        dataSource.setUser(user);
-        dataSource.setPassword(password);
-        dataSource.setJdbcUrl("jdbc:mysql://localhost:3306/scw_0515");
-        dataSource.setDriverClass(driverClass);
+        return dataSource("jdbc:mysql://localhost:3306/scw_0515");
+    }
+
+    /**
+     * 只创建包装，连接池在第一次获取连接或预热时创建，启动时不访问数据库
+     */
+    private DataSource dataSource(String jdbcUrl) {
+        PoolProperties properties = new PoolProperties();
+        properties.setUser(user);
+        properties.setPassword(password);
+        properties.setJdbcUrl(jdbcUrl);
+        properties.setDriverClass(driverClass);
+        properties.setMaxSize(maxSize);
+        properties.setBorrowTimeoutMillis(borrowTimeoutMillis);
+        DataSourcePoolFactory factory = DataSourcePoolFactory.forType(poolType);
+        LazyDataSource dataSource = new LazyDataSource(() -> factory.create(properties));
+        // 预热时同时持有所有连接，超过最大连接数会一直等待其他连接归还
+        dataSource.setWarmUpConnections(Math.min(warmUpConnections, properties.getMaxSize()));
         return dataSource;
     }
 
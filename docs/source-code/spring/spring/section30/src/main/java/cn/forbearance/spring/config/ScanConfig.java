@@ -0,0 +1,17 @@
+package cn.forbearance.spring.config;
+
+import cn.forbearance.spring.scan.ParallelComponentScan;
+import org.springframework.context.annotation.ComponentScan.Filter;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.FilterType;
+
+/**
+ * @author cristina
+ */
+@ParallelComponentScan(value = {"cn.forbearance.spring.controller", "cn.forbearance.spring.service", "cn.forbearance.spring.mapper"},
+        includeFilters = {
+                @Filter(type = FilterType.CUSTOM, classes = {CustomFilterType.class})
+        }, useDefaultFilters = false)
+@Configuration
+public class ScanConfig {
+}
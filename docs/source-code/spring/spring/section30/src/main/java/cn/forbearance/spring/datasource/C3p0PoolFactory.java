@@ -0,0 +1,23 @@
+package cn.forbearance.spring.datasource;
+
+import com.mchange.v2.c3p0.ComboPooledDataSource;
+
+import javax.sql.DataSource;
+
+/**
+ * @author cristina
+ */
+public class C3p0PoolFactory implements DataSourcePoolFactory {
+
+    @Override
+    public DataSource create(PoolProperties properties) throws Exception {
+        ComboPooledDataSource dataSource = new ComboPooledDataSource();
+        dataSource.setUser(properties.getUser());
+        dataSource.setPassword(properties.getPassword());
+        dataSource.setJdbcUrl(properties.getJdbcUrl());
+        dataSource.setDriverClass(properties.getDriverClass());
+        dataSource.setMaxPoolSize(properties.getMaxSize());
+        dataSource.setCheckoutTimeout((int) Math.min(properties.getBorrowTimeoutMillis(), Integer.MAX_VALUE));
+        return dataSource;
+    }
+}
@@ -0,0 +1,30 @@
+package cn.forbearance.spring.datasource;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.util.ClassUtils;
+
+import javax.sql.DataSource;
+
+/**
+ * 根据 {@link PoolProperties} 创建连接池
+ *
+ * @author cristina
+ */
+public interface DataSourcePoolFactory {
+
+    DataSource create(PoolProperties properties) throws Exception;
+
+    /**
+     * @param type {@code c3p0}、{@code lockfree} 或者实现类的全类名
+     */
+    static DataSourcePoolFactory forType(String type) {
+        if ("c3p0".equalsIgnoreCase(type)) {
+            return new C3p0PoolFactory();
+        }
+        if ("lockfree".equalsIgnoreCase(type)) {
+            return new LockFreePoolFactory();
+        }
+        Class<?> factoryClass = ClassUtils.resolveClassName(type, ClassUtils.getDefaultClassLoader());
+        return BeanUtils.instantiateClass(factoryClass, DataSourcePoolFactory.class);
+    }
+}
@@ -0,0 +1,231 @@
+package cn.forbearance.spring.datasource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.BeanNameAware;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.util.Assert;
+import org.springframework.util.ReflectionUtils;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.PrintWriter;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+/**
+ * 第一次获取连接时才创建连接池
+ * <p>
+ * 容器启动时不访问数据库。设置了 {@link #setWarmUpConnections(int)} 时，容器刷新完成后在后台线程上创建连接池并打开连接，
+ * 通过 {@link #isReady()} 或 {@link #readiness()} 查询是否已经就绪；没有预热时创建连接池后即为就绪
+ *
+ * @author cristina
+ */
+public class LazyDataSource implements DataSource, Closeable, ApplicationListener<ContextRefreshedEvent>, BeanNameAware {
+
+    private static final Log logger = LogFactory.getLog(LazyDataSource.class);
+
+    private final Callable<? extends DataSource> creator;
+
+    private final Object monitor = new Object();
+
+    private final CompletableFuture<DataSource> readiness = new CompletableFuture<>();
+
+    private volatile DataSource target;
+
+    private int warmUpConnections;
+
+    private String beanName = "dataSource";
+
+    private volatile boolean closed;
+
+    private final AtomicBoolean warmUpStarted = new AtomicBoolean();
+
+    /**
+     * @param creator 创建连接池，不应在这里打开连接
+     */
+    public LazyDataSource(Callable<? extends DataSource> creator) {
+        Assert.notNull(creator, "Creator must not be null");
+        this.creator = creator;
+    }
+
+    /**
+     * @param warmUpConnections 容器刷新后在后台打开的连接数，0表示不预热。预热时同时持有这些连接，不能超过连接池的最大连接数
+     */
+    public void setWarmUpConnections(int warmUpConnections) {
+        this.warmUpConnections = warmUpConnections;
+    }
+
+    @Override
+    public void setBeanName(String name) {
+        this.beanName = name;
+    }
+
+    @Override
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        // 连接池可能在刷新期间已经被创建，仍然需要预热，readiness才会完成；多次刷新只预热一次
+        if (warmUpConnections <= 0 || !warmUpStarted.compareAndSet(false, true)) {
+            return;
+        }
+        Thread thread = new Thread(this::warmUp, "datasource-warmup-" + beanName);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public boolean isReady() {
+        return readiness.isDone() && !readiness.isCompletedExceptionally();
+    }
+
+    /**
+     * @return 连接池创建(和预热)完成时完成，失败时异常完成
+     */
+    public CompletableFuture<DataSource> readiness() {
+        return readiness;
+    }
+
+    /**
+     * @return 连接池是否已经创建
+     */
+    public boolean isInitialized() {
+        return target != null;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return target().getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return target().getConnection(username, password);
+    }
+
+    private void warmUp() {
+        try {
+            DataSource dataSource = target();
+            // 同时持有连接，连接池才会打开足够多的物理连接
+            List<Connection> connections = new ArrayList<>(warmUpConnections);
+            try {
+                for (int i = 0; i < warmUpConnections; i++) {
+                    connections.add(dataSource.getConnection());
+                }
+            } finally {
+                for (Connection connection : connections) {
+                    connection.close();
+                }
+            }
+            readiness.complete(dataSource);
+        } catch (SQLException | RuntimeException ex) {
+            logger.warn("Failed to warm up data source '" + beanName + "'", ex);
+            readiness.completeExceptionally(ex);
+        }
+    }
+
+    private DataSource target() throws SQLException {
+        DataSource dataSource = this.target;
+        if (dataSource != null) {
+            return dataSource;
+        }
+        synchronized (monitor) {
+            if (closed) {
+                throw new SQLException("数据源已关闭");
+            }
+            if (this.target == null) {
+                try {
+                    this.target = creator.call();
+                } catch (SQLException ex) {
+                    throw ex;
+                } catch (Exception ex) {
+                    throw new SQLException("创建连接池失败：" + beanName, ex);
+                }
+                if (warmUpConnections <= 0) {
+                    readiness.complete(this.target);
+                }
+            }
+            return this.target;
+        }
+    }
+
+    /**
+     * 关闭已经创建的连接池，连接池没有实现Closeable时调用它的close方法(比如c3p0)
+     */
+    @Override
+    public void close() {
+        DataSource dataSource;
+        synchronized (monitor) {
+            closed = true;
+            dataSource = this.target;
+        }
+        if (dataSource instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) dataSource).close();
+            } catch (Exception ex) {
+                logger.warn("Failed to close data source '" + beanName + "'", ex);
+            }
+        } else if (dataSource != null) {
+            Method close = ReflectionUtils.findMethod(dataSource.getClass(), "close");
+            if (close != null) {
+                ReflectionUtils.invokeMethod(close, dataSource);
+            }
+        }
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return target().getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        target().setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        target().setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return target().getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    /**
+     * 可以取出连接池本身，这时会创建连接池，但不会打开连接
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return (T) this;
+        }
+        DataSource dataSource = target();
+        if (iface.isInstance(dataSource)) {
+            return (T) dataSource;
+        }
+        return dataSource.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return true;
+        }
+        DataSource dataSource = target();
+        return iface.isInstance(dataSource) || dataSource.isWrapperFor(iface);
+    }
+}
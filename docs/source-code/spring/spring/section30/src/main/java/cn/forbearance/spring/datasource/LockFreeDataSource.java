@@ -0,0 +1,589 @@
+package cn.forbearance.spring.datasource;
+
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ObjectUtils;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.PrintWriter;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Logger;
+
+/**
+ * 不加锁的连接池
+ * <p>
+ * 每个连接的状态用CAS切换，获取连接时先尝试当前线程上一次归还的连接，再从线程对应的位置开始扫描空闲连接，
+ * 都没有并且未达到上限时新建连接。归还连接时只修改状态，有线程在等待时通过 {@link SynchronousQueue} 唤醒其中一个，
+ * 被唤醒的线程与其他线程一样用CAS竞争连接；有线程等待超过一个扫描周期时，归还的连接直接交给它，避免一直抢不到。
+ * 连接在第一次需要时才创建
+ * <p>
+ * 归还时把被修改过的autoCommit、readOnly、事务隔离级别和catalog恢复为创建时的值；
+ * 连接以及它创建的Statement、ResultSet上出现SQLState以08开头(连接异常)的错误时，归还的连接直接关闭，不再放回连接池
+ *
+ * @author cristina
+ */
+public class LockFreeDataSource implements DataSource, Closeable {
+
+    private static final int IDLE = 0;
+
+    private static final int IN_USE = 1;
+
+    private static final int REMOVED = 2;
+
+    private static final int DIRTY_AUTO_COMMIT = 1;
+
+    private static final int DIRTY_READ_ONLY = 1 << 1;
+
+    private static final int DIRTY_TRANSACTION_ISOLATION = 1 << 2;
+
+    private static final int DIRTY_CATALOG = 1 << 3;
+
+    /**
+     * 连接已经不可用的SQLState分类
+     */
+    private static final String CONNECTION_EXCEPTION_CLASS = "08";
+
+    /**
+     * 等待时定期重新扫描，避免错过在登记等待之前归还的连接
+     */
+    private static final long RESCAN_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /**
+     * 只唤醒等待的线程，连接需要自己竞争
+     */
+    private static final Object WAKE_UP = new Object();
+
+    private static final Constructor<?> PROXY_CONSTRUCTOR;
+
+    static {
+        try {
+            PROXY_CONSTRUCTOR = Proxy.getProxyClass(LockFreeDataSource.class.getClassLoader(), Connection.class)
+                    .getConstructor(InvocationHandler.class);
+        } catch (NoSuchMethodException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private final String jdbcUrl;
+
+    private final String user;
+
+    private final String password;
+
+    private final int maxSize;
+
+    private final long borrowTimeoutNanos;
+
+    private final AtomicReferenceArray<PooledConnection> slots;
+
+    /**
+     * 已创建和正在创建的连接数
+     */
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final AtomicInteger waiters = new AtomicInteger();
+
+    /**
+     * 等待超过一个扫描周期的线程数，不为0时归还的连接直接交给它们
+     */
+    private final AtomicInteger starving = new AtomicInteger();
+
+    /**
+     * 传递 {@link #WAKE_UP} 或者已经替等待的线程占用的连接
+     */
+    private final SynchronousQueue<Object> handoff = new SynchronousQueue<>();
+
+    private final ThreadLocal<PooledConnection> lastReturned = new ThreadLocal<>();
+
+    private volatile boolean closed;
+
+    private volatile PrintWriter logWriter;
+
+    public LockFreeDataSource(PoolProperties properties) throws ClassNotFoundException {
+        Assert.hasText(properties.getJdbcUrl(), "jdbcUrl must not be empty");
+        Assert.isTrue(properties.getMaxSize() > 0, "maxSize must be positive");
+        if (StringUtils.hasText(properties.getDriverClass())) {
+            // 旧驱动需要加载类才会注册到DriverManager
+            ClassUtils.forName(properties.getDriverClass(), ClassUtils.getDefaultClassLoader());
+        }
+        this.jdbcUrl = properties.getJdbcUrl();
+        this.user = properties.getUser();
+        this.password = properties.getPassword();
+        this.maxSize = properties.getMaxSize();
+        this.borrowTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(properties.getBorrowTimeoutMillis());
+        this.slots = new AtomicReferenceArray<>(maxSize);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("连接池已关闭");
+        }
+        PooledConnection pooled = lastReturned.get();
+        if (pooled != null && !pooled.state.compareAndSet(IDLE, IN_USE)) {
+            // 已经被其他线程关闭的连接不再保留引用
+            if (pooled.state.get() == REMOVED) {
+                lastReturned.remove();
+            }
+            pooled = null;
+        }
+        if (pooled == null) {
+            pooled = acquireIdle();
+        }
+        if (pooled == null) {
+            pooled = tryCreate();
+        }
+        if (pooled == null) {
+            pooled = await();
+        }
+        return wrap(pooled);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("连接池只使用配置的用户");
+    }
+
+    /**
+     * @return 当前的物理连接数
+     */
+    public int getTotalConnections() {
+        return size.get();
+    }
+
+    public int getIdleConnections() {
+        int idle = 0;
+        for (int i = 0; i < maxSize; i++) {
+            PooledConnection pooled = slots.get(i);
+            if (pooled != null && pooled.state.get() == IDLE) {
+                idle++;
+            }
+        }
+        return idle;
+    }
+
+    /**
+     * 关闭空闲连接，使用中的连接在归还时关闭
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (int i = 0; i < maxSize; i++) {
+            PooledConnection pooled = slots.get(i);
+            if (pooled != null && pooled.state.compareAndSet(IDLE, REMOVED)) {
+                remove(pooled);
+            }
+        }
+    }
+
+    private PooledConnection acquireIdle() {
+        int start = (int) (Thread.currentThread().getId() % maxSize);
+        for (int i = 0; i < maxSize; i++) {
+            PooledConnection pooled = slots.get((start + i) % maxSize);
+            if (pooled != null && pooled.state.get() == IDLE && pooled.state.compareAndSet(IDLE, IN_USE)) {
+                return pooled;
+            }
+        }
+        return null;
+    }
+
+    private PooledConnection tryCreate() throws SQLException {
+        int current;
+        do {
+            current = size.get();
+            if (current >= maxSize) {
+                return null;
+            }
+        } while (!size.compareAndSet(current, current + 1));
+        Connection connection;
+        try {
+            connection = DriverManager.getConnection(jdbcUrl, user, password);
+        } catch (SQLException | RuntimeException ex) {
+            size.decrementAndGet();
+            throw ex;
+        }
+        PooledConnection pooled;
+        try {
+            pooled = new PooledConnection(connection);
+        } catch (SQLException | RuntimeException ex) {
+            size.decrementAndGet();
+            closeQuietly(connection);
+            throw ex;
+        }
+        // 已预留名额，空位一定存在
+        for (int i = 0; ; i = (i + 1) % maxSize) {
+            pooled.index = i;
+            if (slots.compareAndSet(i, null, pooled)) {
+                return pooled;
+            }
+        }
+    }
+
+    private PooledConnection await() throws SQLException {
+        long deadline = System.nanoTime() + borrowTimeoutNanos;
+        boolean starved = false;
+        waiters.incrementAndGet();
+        try {
+            while (true) {
+                PooledConnection pooled = acquireIdle();
+                if (pooled == null) {
+                    pooled = tryCreate();
+                }
+                if (pooled != null) {
+                    return pooled;
+                }
+                long wait = RESCAN_NANOS;
+                if (borrowTimeoutNanos > 0) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        throw new SQLTimeoutException("获取连接超时，连接池已满：" + maxSize);
+                    }
+                    wait = Math.min(wait, remaining);
+                }
+                Object signal = handoff.poll(wait, TimeUnit.NANOSECONDS);
+                if (signal instanceof PooledConnection) {
+                    return (PooledConnection) signal;
+                }
+                if (closed) {
+                    throw new SQLException("连接池已关闭");
+                }
+                if (!starved) {
+                    starved = true;
+                    starving.incrementAndGet();
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("等待连接时被中断", ex);
+        } finally {
+            waiters.decrementAndGet();
+            if (starved) {
+                starving.decrementAndGet();
+            }
+        }
+    }
+
+    private Connection wrap(PooledConnection pooled) {
+        try {
+            return (Connection) PROXY_CONSTRUCTOR.newInstance(new ConnectionHandle(pooled));
+        } catch (ReflectiveOperationException ex) {
+            release(pooled, 0, false);
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * @param dirty 使用过程中被修改过的属性
+     * @param broken 是否出现过连接异常
+     */
+    private void release(PooledConnection pooled, int dirty, boolean broken) {
+        if (closed || broken || !reset(pooled, dirty)) {
+            pooled.state.set(REMOVED);
+            remove(pooled);
+            return;
+        }
+        if (starving.get() > 0 && handOff(pooled)) {
+            return;
+        }
+        pooled.state.set(IDLE);
+        if (closed) {
+            // close()可能在设置为IDLE之前扫描过这个连接
+            if (pooled.state.compareAndSet(IDLE, REMOVED)) {
+                remove(pooled);
+            }
+            return;
+        }
+        lastReturned.set(pooled);
+        if (waiters.get() > 0) {
+            // 不替等待的线程占用连接，归还的线程马上再次获取时不会因为连接已经交出而阻塞
+            handoff.offer(WAKE_UP);
+        }
+    }
+
+    /**
+     * 连接保持使用中直接交给等待过久的线程，它最多一个扫描周期后就会回来取，
+     * 短暂阻塞归还的线程，避免其他线程一直先抢到连接
+     * @return 没有线程接收时返回false
+     */
+    private boolean handOff(PooledConnection pooled) {
+        try {
+            return handoff.offer(pooled, RESCAN_NANOS, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * 只恢复被修改过的属性，回滚未提交的事务之后再修改其他属性
+     * @return 恢复失败时返回false
+     */
+    private static boolean reset(PooledConnection pooled, int dirty) {
+        if (dirty == 0) {
+            return true;
+        }
+        Connection connection = pooled.connection;
+        try {
+            if ((dirty & DIRTY_AUTO_COMMIT) != 0 && connection.getAutoCommit() != pooled.autoCommit) {
+                if (!connection.getAutoCommit()) {
+                    connection.rollback();
+                }
+                connection.setAutoCommit(pooled.autoCommit);
+            }
+            if ((dirty & DIRTY_READ_ONLY) != 0 && connection.isReadOnly() != pooled.readOnly) {
+                connection.setReadOnly(pooled.readOnly);
+            }
+            if ((dirty & DIRTY_TRANSACTION_ISOLATION) != 0 && connection.getTransactionIsolation() != pooled.transactionIsolation) {
+                connection.setTransactionIsolation(pooled.transactionIsolation);
+            }
+            if ((dirty & DIRTY_CATALOG) != 0 && !ObjectUtils.nullSafeEquals(connection.getCatalog(), pooled.catalog)) {
+                connection.setCatalog(pooled.catalog);
+            }
+            return true;
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    private static boolean isConnectionException(SQLException ex) {
+        for (SQLException current = ex; current != null; current = current.getNextException()) {
+            String sqlState = current.getSQLState();
+            if (sqlState != null && sqlState.startsWith(CONNECTION_EXCEPTION_CLASS)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void remove(PooledConnection pooled) {
+        if (lastReturned.get() == pooled) {
+            lastReturned.remove();
+        }
+        closeQuietly(pooled.connection);
+        if (slots.compareAndSet(pooled.index, pooled, null)) {
+            size.decrementAndGet();
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException ex) {
+            // 连接已经不可用
+        }
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return logWriter;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+        this.logWriter = out;
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+        DriverManager.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return DriverManager.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return (T) this;
+        }
+        throw new SQLException("DataSource of type [" + getClass().getName() + "] cannot be unwrapped as [" + iface.getName() + "]");
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    private static final class PooledConnection {
+
+        private final Connection connection;
+
+        private final AtomicInteger state = new AtomicInteger(IN_USE);
+
+        /**
+         * 创建时的属性，归还时恢复
+         */
+        private final boolean autoCommit;
+
+        private final boolean readOnly;
+
+        private final int transactionIsolation;
+
+        private final String catalog;
+
+        /**
+         * 在slots中的位置，放入slots之前确定
+         */
+        private int index;
+
+        private PooledConnection(Connection connection) throws SQLException {
+            this.connection = connection;
+            this.autoCommit = connection.getAutoCommit();
+            this.readOnly = connection.isReadOnly();
+            this.transactionIsolation = connection.getTransactionIsolation();
+            this.catalog = connection.getCatalog();
+        }
+    }
+
+    /**
+     * 交给调用方的连接，close时归还到连接池
+     */
+    private final class ConnectionHandle implements InvocationHandler {
+
+        private final PooledConnection pooled;
+
+        private boolean returned;
+
+        private int dirty;
+
+        private boolean broken;
+
+        private ConnectionHandle(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        release(pooled, dirty, broken);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled connection [" + pooled.connection + "]";
+                case "setAutoCommit":
+                    dirty |= DIRTY_AUTO_COMMIT;
+                    break;
+                case "setReadOnly":
+                    dirty |= DIRTY_READ_ONLY;
+                    break;
+                case "setTransactionIsolation":
+                    dirty |= DIRTY_TRANSACTION_ISOLATION;
+                    break;
+                case "setCatalog":
+                    dirty |= DIRTY_CATALOG;
+                    break;
+                default:
+                    break;
+            }
+            if (returned) {
+                throw new SQLException("连接已关闭");
+            }
+            return wrapResult(invokeTarget(pooled.connection, method, args), method, proxy, proxy);
+        }
+
+        /**
+         * 调用真正的对象，记录连接异常
+         */
+        private Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException ex) {
+                Throwable cause = ex.getTargetException();
+                if (cause instanceof SQLException && isConnectionException((SQLException) cause)) {
+                    broken = true;
+                }
+                throw cause;
+            }
+        }
+
+        /**
+         * Statement和ResultSet同样需要记录连接异常，返回前包装一层
+         * @param parent 包装后的getConnection或getStatement的返回值
+         */
+        private Object wrapResult(Object result, Method method, Object connectionProxy, Object parent) {
+            Class<?> type = method.getReturnType();
+            if (result == null || !(Statement.class.isAssignableFrom(type) || type == ResultSet.class)) {
+                return result;
+            }
+            return Proxy.newProxyInstance(LockFreeDataSource.class.getClassLoader(), new Class<?>[]{type},
+                    new ChildHandle(this, result, connectionProxy, parent));
+        }
+    }
+
+    /**
+     * 连接创建的Statement或ResultSet
+     */
+    private static final class ChildHandle implements InvocationHandler {
+
+        private final ConnectionHandle connectionHandle;
+
+        private final Object target;
+
+        private final Object connectionProxy;
+
+        private final Object parent;
+
+        private ChildHandle(ConnectionHandle connectionHandle, Object target, Object connectionProxy, Object parent) {
+            this.connectionHandle = connectionHandle;
+            this.target = target;
+            this.connectionProxy = connectionProxy;
+            this.parent = parent;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return target.toString();
+                case "getConnection":
+                    if (args == null) {
+                        return connectionProxy;
+                    }
+                    break;
+                case "getStatement":
+                    return parent instanceof Statement ? parent : connectionHandle.invokeTarget(target, method, args);
+                default:
+                    break;
+            }
+            return connectionHandle.wrapResult(connectionHandle.invokeTarget(target, method, args), method, connectionProxy, proxy);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package cn.forbearance.spring.datasource;
+
+import javax.sql.DataSource;
+
+/**
+ * @author cristina
+ */
+public class LockFreePoolFactory implements DataSourcePoolFactory {
+
+    @Override
+    public DataSource create(PoolProperties properties) throws Exception {
+        return new LockFreeDataSource(properties);
+    }
+}
@@ -0,0 +1,75 @@
+package cn.forbearance.spring.datasource;
+
+/**
+ * 连接池配置，对应 {@code application.properties} 中的 {@code db.*}
+ *
+ * @author cristina
+ */
+public class PoolProperties {
+
+    private String jdbcUrl;
+
+    private String user;
+
+    private String password;
+
+    private String driverClass;
+
+    /**
+     * 默认值与c3p0的maxPoolSize一致
+     */
+    private int maxSize = 15;
+
+    /**
+     * 获取连接的最长等待时间，0表示一直等待
+     */
+    private long borrowTimeoutMillis;
+
+    public String getJdbcUrl() {
+        return jdbcUrl;
+    }
+
+    public void setJdbcUrl(String jdbcUrl) {
+        this.jdbcUrl = jdbcUrl;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public void setUser(String user) {
+        this.user = user;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public String getDriverClass() {
+        return driverClass;
+    }
+
+    public void setDriverClass(String driverClass) {
+        this.driverClass = driverClass;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public long getBorrowTimeoutMillis() {
+        return borrowTimeoutMillis;
+    }
+
+    public void setBorrowTimeoutMillis(long borrowTimeoutMillis) {
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+    }
+}
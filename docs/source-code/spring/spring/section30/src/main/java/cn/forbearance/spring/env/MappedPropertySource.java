@@ -0,0 +1,423 @@
+package cn.forbearance.spring.env;
+
+import org.springframework.core.env.EnumerablePropertySource;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * 内存映射的properties文件
+ * <p>
+ * 第一次加载时扫描整个文件，按key排序生成索引并保存在同目录的 {@code 文件名.idx} 中，之后文件的长度和内容校验和
+ * 与索引一致时直接映射索引，修改时间不可靠(精度、被还原)，不作为依据。
+ * 查找时在索引中二分查找key，命中后才从映射的文件中解码value，不会把所有的key和value都读到堆上。
+ * 语法与 {@link java.util.Properties#load} 一致(注释、续行、转义)，编码需要兼容ASCII，比如ISO-8859-1和UTF-8。
+ * 创建之后文件不能被原地修改，需要更新时写入新文件再替换，并重新创建
+ *
+ * @author cristina
+ */
+public class MappedPropertySource extends EnumerablePropertySource<ByteBuffer> {
+
+    static final String INDEX_SUFFIX = ".idx";
+
+    private static final int MAGIC = 0x50494458;
+
+    private static final int VERSION = 2;
+
+    /**
+     * magic、version、文件内容的CRC32、文件长度、条目数、编码名称的长度，之后是编码名称
+     */
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4 + 4;
+
+    /**
+     * key在keys区的偏移、key长度、value在文件中的偏移、value长度
+     */
+    private static final int ENTRY_SIZE = 16;
+
+    private final Charset charset;
+
+    private final ByteBuffer index;
+
+    private final int count;
+
+    private final int entriesStart;
+
+    private final int keysStart;
+
+    public MappedPropertySource(String name, File file) throws IOException {
+        this(name, file, StandardCharsets.ISO_8859_1);
+    }
+
+    public MappedPropertySource(String name, File file, Charset charset) throws IOException {
+        super(name, map(file));
+        this.charset = charset;
+        this.index = loadIndex(file, getSource(), charset);
+        this.count = index.getInt(HEADER_SIZE - 8);
+        this.entriesStart = HEADER_SIZE + index.getInt(HEADER_SIZE - 4);
+        this.keysStart = entriesStart + count * ENTRY_SIZE;
+    }
+
+    @Override
+    public Object getProperty(String name) {
+        int entry = find(name);
+        return entry != -1 ? valueOf(entry) : null;
+    }
+
+    @Override
+    public boolean containsProperty(String name) {
+        return find(name) != -1;
+    }
+
+    /**
+     * 按key的UTF-8字节排序
+     */
+    @Override
+    public String[] getPropertyNames() {
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            int position = entriesStart + i * ENTRY_SIZE;
+            byte[] key = new byte[index.getInt(position + 4)];
+            read(index, keysStart + index.getInt(position), key);
+            names[i] = new String(key, StandardCharsets.UTF_8);
+        }
+        return names;
+    }
+
+    /**
+     * @return 条目的序号，没有时返回-1
+     */
+    private int find(String name) {
+        byte[] key = name.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int position = entriesStart + mid * ENTRY_SIZE;
+            int cmp = compare(index, keysStart + index.getInt(position), index.getInt(position + 4), key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private String valueOf(int entry) {
+        int position = entriesStart + entry * ENTRY_SIZE;
+        byte[] raw = new byte[index.getInt(position + 12)];
+        read(getSource(), index.getInt(position + 8), raw);
+        return unescape(new String(raw, charset));
+    }
+
+    private static ByteBuffer map(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * 索引与映射的内容(长度、校验和)和编码一致时直接映射，否则重新生成；索引无法写入时只保存在内存中
+     */
+    private static ByteBuffer loadIndex(File file, ByteBuffer data, Charset charset) throws IOException {
+        File indexFile = new File(file.getPath() + INDEX_SUFFIX);
+        // 按映射的内容计算，与索引中的偏移对应的是这份内容
+        long length = data.limit();
+        CRC32 crc = new CRC32();
+        crc.update(data.duplicate());
+        long checksum = crc.getValue();
+        byte[] charsetName = charset.name().getBytes(StandardCharsets.US_ASCII);
+        if (indexFile.isFile()) {
+            ByteBuffer existing = map(indexFile);
+            if (isValid(existing, checksum, length, charsetName)) {
+                return existing;
+            }
+        }
+        ByteBuffer built = buildIndex(data, charset, checksum, length, charsetName);
+        try {
+            File temp = File.createTempFile(file.getName(), INDEX_SUFFIX, indexFile.getAbsoluteFile().getParentFile());
+            try {
+                Files.write(temp.toPath(), built.array());
+                Files.move(temp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp.toPath());
+            }
+        } catch (IOException | SecurityException ex) {
+            // 只读目录下每次启动重新生成
+        }
+        return built;
+    }
+
+    private static boolean isValid(ByteBuffer index, long checksum, long length, byte[] charsetName) {
+        if (index.limit() < HEADER_SIZE || index.getInt(0) != MAGIC || index.getInt(4) != VERSION
+                || index.getLong(8) != checksum || index.getLong(16) != length
+                || index.getInt(HEADER_SIZE - 4) != charsetName.length || index.limit() < HEADER_SIZE + charsetName.length) {
+            return false;
+        }
+        return compare(index, HEADER_SIZE, charsetName.length, charsetName) == 0;
+    }
+
+    private static ByteBuffer buildIndex(ByteBuffer data, Charset charset, long checksum, long length, byte[] charsetName) {
+        List<byte[]> keys = new ArrayList<>();
+        List<int[]> values = new ArrayList<>();
+        new Scanner(data).scan((keyStart, keyEnd, valueStart, valueEnd) -> {
+            byte[] raw = new byte[keyEnd - keyStart];
+            read(data, keyStart, raw);
+            keys.add(unescape(new String(raw, charset)).getBytes(StandardCharsets.UTF_8));
+            values.add(new int[]{valueStart, valueEnd - valueStart});
+        });
+
+        // 稳定排序，相同的key保留最后一个，与Properties一致
+        Integer[] order = new Integer[keys.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> compare(keys.get(a), keys.get(b)));
+        List<Integer> entries = new ArrayList<>(order.length);
+        int keysLength = 0;
+        for (int i = 0; i < order.length; i++) {
+            if (i + 1 < order.length && compare(keys.get(order[i]), keys.get(order[i + 1])) == 0) {
+                continue;
+            }
+            entries.add(order[i]);
+            keysLength += keys.get(order[i]).length;
+        }
+
+        ByteBuffer index = ByteBuffer.allocate(HEADER_SIZE + charsetName.length + entries.size() * ENTRY_SIZE + keysLength);
+        index.putInt(MAGIC).putInt(VERSION).putLong(checksum).putLong(length).putInt(entries.size()).putInt(charsetName.length)
+                .put(charsetName);
+        int keyOffset = 0;
+        for (int entry : entries) {
+            int[] value = values.get(entry);
+            index.putInt(keyOffset).putInt(keys.get(entry).length).putInt(value[0]).putInt(value[1]);
+            keyOffset += keys.get(entry).length;
+        }
+        for (int entry : entries) {
+            index.put(keys.get(entry));
+        }
+        return index;
+    }
+
+    private static void read(ByteBuffer buffer, int offset, byte[] target) {
+        for (int i = 0; i < target.length; i++) {
+            target[i] = buffer.get(offset + i);
+        }
+    }
+
+    private static int compare(ByteBuffer buffer, int offset, int length, byte[] key) {
+        int n = Math.min(length, key.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = (buffer.get(offset + i) & 0xff) - (key[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return length - key.length;
+    }
+
+    private static int compare(byte[] a, byte[] b) {
+        return -compare(ByteBuffer.wrap(b), 0, b.length, a);
+    }
+
+    /**
+     * 与 {@code Properties#loadConvert} 一致，另外处理续行：反斜杠加换行以及下一行开头的空白被去掉
+     */
+    static String unescape(String raw) {
+        if (raw.indexOf('\\') == -1) {
+            return raw;
+        }
+        StringBuilder sb = new StringBuilder(raw.length());
+        int i = 0;
+        while (i < raw.length()) {
+            char c = raw.charAt(i++);
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (i == raw.length()) {
+                // 文件末尾的续行符
+                break;
+            }
+            c = raw.charAt(i++);
+            if (c == '\r' || c == '\n') {
+                if (c == '\r' && i < raw.length() && raw.charAt(i) == '\n') {
+                    i++;
+                }
+                while (i < raw.length() && isWhitespace(raw.charAt(i))) {
+                    i++;
+                }
+            } else if (c == 'u') {
+                if (i + 4 > raw.length()) {
+                    throw new IllegalArgumentException("Malformed \\uxxxx encoding.");
+                }
+                try {
+                    sb.append((char) Integer.parseInt(raw.substring(i, i + 4), 16));
+                } catch (NumberFormatException ex) {
+                    throw new IllegalArgumentException("Malformed \\uxxxx encoding.");
+                }
+                i += 4;
+            } else if (c == 't') {
+                sb.append('\t');
+            } else if (c == 'r') {
+                sb.append('\r');
+            } else if (c == 'n') {
+                sb.append('\n');
+            } else if (c == 'f') {
+                sb.append('\f');
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\t' || c == '\f';
+    }
+
+    /**
+     * 按 {@code Properties.LineReader} 的规则在字节上找出每个条目的key和value的范围，
+     * 这些分隔字符都是ASCII，在兼容ASCII的编码中不会出现在多字节字符里
+     */
+    private static final class Scanner {
+
+        private final ByteBuffer data;
+
+        private final int limit;
+
+        private Scanner(ByteBuffer data) {
+            this.data = data;
+            this.limit = data.limit();
+        }
+
+        void scan(EntryCallback callback) {
+            int pos = 0;
+            while (pos < limit) {
+                while (pos < limit && isWhitespace(data.get(pos))) {
+                    pos++;
+                }
+                if (pos >= limit) {
+                    break;
+                }
+                int c = data.get(pos);
+                if (c == '\r' || c == '\n') {
+                    pos++;
+                    continue;
+                }
+                if (c == '#' || c == '!') {
+                    pos = endOfNaturalLine(pos);
+                    continue;
+                }
+                int keyStart = pos;
+                int keyEnd = -1;
+                boolean separator = false;
+                boolean backslash = false;
+                while (pos < limit) {
+                    c = data.get(pos);
+                    if (c == '\r' || c == '\n') {
+                        if (!backslash) {
+                            break;
+                        }
+                        pos = skipContinuation(pos);
+                        backslash = false;
+                        continue;
+                    }
+                    if (!backslash && (c == '=' || c == ':')) {
+                        keyEnd = pos++;
+                        separator = true;
+                        break;
+                    }
+                    if (!backslash && isWhitespace(c)) {
+                        keyEnd = pos++;
+                        break;
+                    }
+                    backslash = c == '\\' && !backslash;
+                    pos++;
+                }
+                if (keyEnd == -1) {
+                    // 只有key的行，value为空
+                    callback.entry(keyStart, pos, pos, pos);
+                    continue;
+                }
+                pos = skipSeparatorWhitespace(pos, separator);
+                int valueStart = pos;
+                backslash = false;
+                while (pos < limit) {
+                    c = data.get(pos);
+                    if (c == '\r' || c == '\n') {
+                        if (!backslash) {
+                            break;
+                        }
+                        pos = skipContinuation(pos);
+                        backslash = false;
+                        continue;
+                    }
+                    backslash = c == '\\' && !backslash;
+                    pos++;
+                }
+                callback.entry(keyStart, keyEnd, valueStart, pos);
+            }
+        }
+
+        /**
+         * key和value之间的空白，最多一个 {@code =} 或 {@code :}，可以跨续行
+         */
+        private int skipSeparatorWhitespace(int pos, boolean separator) {
+            while (pos < limit) {
+                int c = data.get(pos);
+                if (isWhitespace(c)) {
+                    pos++;
+                } else if (!separator && (c == '=' || c == ':')) {
+                    separator = true;
+                    pos++;
+                } else if (c == '\\' && pos + 1 < limit && (data.get(pos + 1) == '\r' || data.get(pos + 1) == '\n')) {
+                    pos = skipContinuation(pos + 1);
+                } else {
+                    break;
+                }
+            }
+            return pos;
+        }
+
+        /**
+         * @param pos 续行的换行符
+         * @return 下一行第一个非空白字符
+         */
+        private int skipContinuation(int pos) {
+            if (data.get(pos) == '\r' && pos + 1 < limit && data.get(pos + 1) == '\n') {
+                pos++;
+            }
+            pos++;
+            while (pos < limit && isWhitespace(data.get(pos))) {
+                pos++;
+            }
+            return pos;
+        }
+
+        private int endOfNaturalLine(int pos) {
+            while (pos < limit && data.get(pos) != '\r' && data.get(pos) != '\n') {
+                pos++;
+            }
+            return pos;
+        }
+    }
+
+    @FunctionalInterface
+    private interface EntryCallback {
+
+        void entry(int keyStart, int keyEnd, int valueStart, int valueEnd);
+    }
+}
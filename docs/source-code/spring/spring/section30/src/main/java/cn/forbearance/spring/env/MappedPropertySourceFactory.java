@@ -0,0 +1,49 @@
+package cn.forbearance.spring.env;
+
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.DefaultPropertySourceFactory;
+import org.springframework.core.io.support.EncodedResource;
+import org.springframework.core.io.support.PropertySourceFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 在 {@code @PropertySource(factory = MappedPropertySourceFactory.class)} 中使用，
+ * 文件系统中的properties文件使用 {@link MappedPropertySource}，jar包中的资源、xml格式和不兼容ASCII的编码仍按Spring原来的方式加载
+ *
+ * @author cristina
+ */
+public class MappedPropertySourceFactory implements PropertySourceFactory {
+
+    private final PropertySourceFactory fallback = new DefaultPropertySourceFactory();
+
+    @Override
+    public PropertySource<?> createPropertySource(String name, EncodedResource resource) throws IOException {
+        Resource source = resource.getResource();
+        Charset charset = resource.getCharset() != null ? resource.getCharset()
+                : resource.getEncoding() != null ? Charset.forName(resource.getEncoding()) : StandardCharsets.ISO_8859_1;
+        String filename = source.getFilename();
+        if (filename == null || filename.endsWith(".xml") || !isAsciiCompatible(charset) || !isFile(source)) {
+            return fallback.createPropertySource(name, resource);
+        }
+        return new MappedPropertySource(name != null ? name : source.getDescription(), source.getFile(), charset);
+    }
+
+    private static boolean isFile(Resource resource) {
+        try {
+            File file = resource.getFile();
+            return file.isFile();
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    private static boolean isAsciiCompatible(Charset charset) {
+        return charset.equals(StandardCharsets.ISO_8859_1) || charset.equals(StandardCharsets.UTF_8)
+                || charset.equals(StandardCharsets.US_ASCII);
+    }
+}
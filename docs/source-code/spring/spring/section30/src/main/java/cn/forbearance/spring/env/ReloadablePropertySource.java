@@ -0,0 +1,181 @@
+package cn.forbearance.spring.env;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.core.env.EnumerablePropertySource;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 可以重新加载的properties文件
+ * <p>
+ * {@link #reload()} 重新读取文件，与上一次的内容比较后把变化的key(新增、删除、修改)通知给监听器；
+ * {@link #watch()} 之后通过 {@link WatchService} 监听文件所在目录，文件变化时自动重新加载。
+ * 加载时直接替换整个快照，读取的线程不会看到只更新了一半的内容
+ *
+ * @author cristina
+ */
+public class ReloadablePropertySource extends EnumerablePropertySource<File> implements Closeable {
+
+    private static final Log logger = LogFactory.getLog(ReloadablePropertySource.class);
+
+    /**
+     * 编辑器保存文件时可能产生多个事件，等这段时间内的事件都到达后再加载
+     */
+    private static final long SETTLE_MILLIS = 50;
+
+    private volatile Map<String, String> properties;
+
+    private final List<Consumer<Set<String>>> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile WatchService watchService;
+
+    public ReloadablePropertySource(String name, File file) throws IOException {
+        super(name, file);
+        this.properties = load(file);
+    }
+
+    @Override
+    public Object getProperty(String name) {
+        return properties.get(name);
+    }
+
+    @Override
+    public boolean containsProperty(String name) {
+        return properties.containsKey(name);
+    }
+
+    @Override
+    public String[] getPropertyNames() {
+        return properties.keySet().toArray(new String[0]);
+    }
+
+    /**
+     * @param listener 接收变化的key，在重新加载的线程上调用
+     */
+    public void addListener(Consumer<Set<String>> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<Set<String>> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return 变化的key，没有变化时不通知监听器
+     */
+    public synchronized Set<String> reload() throws IOException {
+        Map<String, String> previous = this.properties;
+        Map<String, String> current = load(getSource());
+        Set<String> changed = new HashSet<>();
+        for (Map.Entry<String, String> entry : current.entrySet()) {
+            if (!entry.getValue().equals(previous.get(entry.getKey()))) {
+                changed.add(entry.getKey());
+            }
+        }
+        for (String key : previous.keySet()) {
+            if (!current.containsKey(key)) {
+                changed.add(key);
+            }
+        }
+        this.properties = current;
+        if (!changed.isEmpty()) {
+            Set<String> keys = Collections.unmodifiableSet(changed);
+            for (Consumer<Set<String>> listener : listeners) {
+                listener.accept(keys);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * 在后台线程上监听文件变化，{@link #close()} 时停止
+     */
+    public synchronized void watch() throws IOException {
+        if (watchService != null) {
+            return;
+        }
+        Path file = getSource().getAbsoluteFile().toPath();
+        WatchService watchService = FileSystems.getDefault().newWatchService();
+        file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        this.watchService = watchService;
+        Thread thread = new Thread(() -> watchLoop(watchService, file.getFileName()), "property-watcher-" + getName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+            watchService = null;
+        }
+    }
+
+    private void watchLoop(WatchService watchService, Path fileName) {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = affects(key, fileName);
+                // 合并短时间内的后续事件
+                WatchKey next;
+                while ((next = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    changed |= affects(next, fileName);
+                }
+                if (changed && getSource().isFile()) {
+                    try {
+                        reload();
+                    } catch (IOException | RuntimeException ex) {
+                        logger.warn("Failed to reload property source '" + getName() + "'", ex);
+                    }
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException ex) {
+            // close()
+        }
+    }
+
+    private static boolean affects(WatchKey key, Path fileName) {
+        boolean affected = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            affected |= event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context());
+        }
+        key.reset();
+        return affected;
+    }
+
+    private static Map<String, String> load(File file) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            properties.load(in);
+        }
+        Map<String, String> map = new HashMap<>(properties.size() * 2);
+        for (String name : properties.stringPropertyNames()) {
+            map.put(name, properties.getProperty(name));
+        }
+        return map;
+    }
+}
@@ -0,0 +1,320 @@
+package cn.forbearance.spring.env;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.config.DependencyDescriptor;
+import org.springframework.beans.factory.config.DestructionAwareBeanPostProcessor;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.PropertySource;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ObjectUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * {@link ReloadablePropertySource} 变化时重新注入单例中受影响的 {@code @Value}
+ * <p>
+ * 单例初始化前记录它的 {@code @Value} 字段和方法用到了哪些占位符，得到 key -> 注入点 的映射；
+ * 属性变化时只重新解析这些注入点，其他bean不会被访问。注意：
+ * <ul>
+ *     <li>只更新注入点本身，bean根据旧值创建的对象(比如连接池)不会重建</li>
+ *     <li>key由其他占位符拼出来的注入点，任何属性变化都会重新解析</li>
+ *     <li>SpEL中通过 {@code environment['key']} 读取的属性无法识别</li>
+ *     <li>字段在重新加载的线程上直接赋值，需要立即可见时字段应声明为volatile</li>
+ * </ul>
+ *
+ * @author cristina
+ */
+public class ValueRebinder implements DestructionAwareBeanPostProcessor, BeanFactoryAware, EnvironmentAware, DisposableBean {
+
+    private static final Log logger = LogFactory.getLog(ValueRebinder.class);
+
+    private static final String PLACEHOLDER_PREFIX = "${";
+
+    private static final String PLACEHOLDER_SUFFIX = "}";
+
+    private static final String VALUE_SEPARATOR = ":";
+
+    private ConfigurableListableBeanFactory beanFactory;
+
+    private final Map<Class<?>, List<ValueMember>> valueMembers = new ConcurrentHashMap<>(64);
+
+    /**
+     * 属性key -> 用到它的注入点
+     */
+    private final Map<String, Set<InjectionSite>> sitesByKey = new ConcurrentHashMap<>(64);
+
+    /**
+     * key无法预先确定的注入点
+     */
+    private final Set<InjectionSite> dynamicSites = ConcurrentHashMap.newKeySet();
+
+    private final Map<String, List<InjectionSite>> sitesByBean = new ConcurrentHashMap<>(64);
+
+    private final List<ReloadablePropertySource> sources = new ArrayList<>();
+
+    private final Consumer<Set<String>> listener = this::rebind;
+
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
+        Assert.isInstanceOf(ConfigurableListableBeanFactory.class, beanFactory);
+        this.beanFactory = (ConfigurableListableBeanFactory) beanFactory;
+    }
+
+    /**
+     * 订阅Environment中所有的 {@link ReloadablePropertySource}
+     */
+    @Override
+    public void setEnvironment(Environment environment) {
+        if (environment instanceof ConfigurableEnvironment) {
+            for (PropertySource<?> source : ((ConfigurableEnvironment) environment).getPropertySources()) {
+                if (source instanceof ReloadablePropertySource) {
+                    ((ReloadablePropertySource) source).addListener(listener);
+                    sources.add((ReloadablePropertySource) source);
+                }
+            }
+        }
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+        if (!beanFactory.containsBeanDefinition(beanName) || !beanFactory.getMergedBeanDefinition(beanName).isSingleton()) {
+            return bean;
+        }
+        List<ValueMember> members = valueMembers.computeIfAbsent(ClassUtils.getUserClass(bean.getClass()), ValueRebinder::findValueMembers);
+        if (members.isEmpty()) {
+            return bean;
+        }
+        List<InjectionSite> sites = new ArrayList<>(members.size());
+        for (ValueMember member : members) {
+            InjectionSite site = new InjectionSite(beanName, bean, member);
+            sites.add(site);
+            if (member.dynamic) {
+                dynamicSites.add(site);
+            }
+            for (String key : member.keys) {
+                sitesByKey.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(site);
+            }
+        }
+        sitesByBean.put(beanName, sites);
+        return bean;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        return bean;
+    }
+
+    @Override
+    public boolean requiresDestruction(Object bean) {
+        return !valueMembers.getOrDefault(ClassUtils.getUserClass(bean.getClass()), Collections.emptyList()).isEmpty();
+    }
+
+    @Override
+    public void postProcessBeforeDestruction(Object bean, String beanName) throws BeansException {
+        List<InjectionSite> sites = sitesByBean.remove(beanName);
+        if (sites == null) {
+            return;
+        }
+        for (InjectionSite site : sites) {
+            dynamicSites.remove(site);
+            for (String key : site.member.keys) {
+                Set<InjectionSite> keySites = sitesByKey.get(key);
+                if (keySites != null) {
+                    keySites.remove(site);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        for (ReloadablePropertySource source : sources) {
+            source.removeListener(listener);
+        }
+    }
+
+    /**
+     * @param changedKeys 变化的属性
+     * @return 值发生变化的注入点数量，解析失败的注入点保持原值
+     */
+    public int rebind(Set<String> changedKeys) {
+        Set<InjectionSite> affected = new LinkedHashSet<>();
+        for (String key : changedKeys) {
+            affected.addAll(sitesByKey.getOrDefault(key, Collections.emptySet()));
+        }
+        if (!changedKeys.isEmpty()) {
+            affected.addAll(dynamicSites);
+        }
+        int rebound = 0;
+        for (InjectionSite site : affected) {
+            try {
+                if (site.rebind(beanFactory)) {
+                    rebound++;
+                }
+            } catch (RuntimeException ex) {
+                logger.warn("Failed to rebind @Value on bean '" + site.beanName + "': " + site.member, ex);
+            }
+        }
+        return rebound;
+    }
+
+    /**
+     * @return 用到该属性的注入点数量
+     */
+    public int getInjectionSiteCount(String key) {
+        return sitesByKey.getOrDefault(key, Collections.emptySet()).size();
+    }
+
+    private static List<ValueMember> findValueMembers(Class<?> beanClass) {
+        List<ValueMember> members = new ArrayList<>();
+        ReflectionUtils.doWithFields(beanClass, field -> {
+            Value value = AnnotationUtils.getAnnotation(field, Value.class);
+            if (value != null && !Modifier.isStatic(field.getModifiers())) {
+                ReflectionUtils.makeAccessible(field);
+                members.add(new ValueMember(field, null, value.value()));
+            }
+        });
+        ReflectionUtils.doWithMethods(beanClass, method -> {
+            Value value = AnnotationUtils.findAnnotation(method, Value.class);
+            if (value == null && method.getParameterCount() == 1) {
+                value = new MethodParameter(method, 0).getParameterAnnotation(Value.class);
+            }
+            if (value != null && method.getParameterCount() == 1 && !Modifier.isStatic(method.getModifiers())) {
+                ReflectionUtils.makeAccessible(method);
+                members.add(new ValueMember(null, method, value.value()));
+            }
+        }, method -> method.getDeclaringClass() != Object.class && !method.isBridge());
+        return members.isEmpty() ? Collections.emptyList() : members;
+    }
+
+    /**
+     * 与 {@code PropertyPlaceholderHelper} 一样匹配嵌套的占位符，默认值中的占位符也算
+     * @return key中含有占位符时返回false
+     */
+    static boolean collectKeys(String value, Set<String> keys) {
+        boolean determined = true;
+        int start = value.indexOf(PLACEHOLDER_PREFIX);
+        while (start != -1) {
+            int end = findPlaceholderEnd(value, start);
+            if (end == -1) {
+                break;
+            }
+            String content = value.substring(start + PLACEHOLDER_PREFIX.length(), end);
+            int separator = content.indexOf(VALUE_SEPARATOR);
+            String key = separator != -1 ? content.substring(0, separator) : content;
+            if (key.contains(PLACEHOLDER_PREFIX)) {
+                collectKeys(content, keys);
+                determined = false;
+            } else {
+                keys.add(key);
+                if (separator != -1) {
+                    determined &= collectKeys(content.substring(separator + VALUE_SEPARATOR.length()), keys);
+                }
+            }
+            start = value.indexOf(PLACEHOLDER_PREFIX, end + PLACEHOLDER_SUFFIX.length());
+        }
+        return determined;
+    }
+
+    private static int findPlaceholderEnd(String value, int start) {
+        int index = start + PLACEHOLDER_PREFIX.length();
+        int nested = 0;
+        while (index < value.length()) {
+            char c = value.charAt(index);
+            if (c == '}') {
+                if (nested == 0) {
+                    return index;
+                }
+                nested--;
+            } else if (c == '{') {
+                nested++;
+            }
+            index++;
+        }
+        return -1;
+    }
+
+    /**
+     * 某个类中的一个 {@code @Value} 字段或单参数方法
+     */
+    private static final class ValueMember {
+
+        private final Field field;
+
+        private final Method method;
+
+        private final Set<String> keys = new LinkedHashSet<>();
+
+        private final boolean dynamic;
+
+        private ValueMember(Field field, Method method, String value) {
+            this.field = field;
+            this.method = method;
+            this.dynamic = !collectKeys(value, keys);
+        }
+
+        private DependencyDescriptor descriptor() {
+            return field != null ? new DependencyDescriptor(field, true) : new DependencyDescriptor(new MethodParameter(method, 0), true);
+        }
+
+        @Override
+        public String toString() {
+            return field != null ? field.toString() : method.toString();
+        }
+    }
+
+    private static final class InjectionSite {
+
+        private final String beanName;
+
+        private final Object bean;
+
+        private final ValueMember member;
+
+        private InjectionSite(String beanName, Object bean, ValueMember member) {
+            this.beanName = beanName;
+            this.bean = bean;
+            this.member = member;
+        }
+
+        /**
+         * 与 {@code @Value} 注入一样通过 {@code resolveDependency} 解析和类型转换
+         * @return 值是否变化，方法注入点无法读取旧值，总是重新调用
+         */
+        private boolean rebind(ConfigurableListableBeanFactory beanFactory) {
+            Object value = beanFactory.resolveDependency(member.descriptor(), beanName);
+            if (member.field != null) {
+                if (ObjectUtils.nullSafeEquals(ReflectionUtils.getField(member.field, bean), value)) {
+                    return false;
+                }
+                ReflectionUtils.setField(member.field, bean, value);
+            } else {
+                ReflectionUtils.invokeMethod(member.method, bean, value);
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package cn.forbearance.spring.factory;
+
+import org.springframework.beans.factory.FactoryBean;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 异步创建产品的FactoryBean
+ * <p>
+ * {@link AsyncFactoryBeanFactory} 在预实例化开始时先调用所有非延迟单例的 {@link #getObjectAsync()}，
+ * 然后继续创建其他bean，直到第一次获取产品时才等待结果
+ *
+ * @author cristina
+ */
+public interface AsyncFactoryBean<T> extends FactoryBean<T> {
+
+    /**
+     * @return 产品，不应在调用线程上完成耗时的创建
+     */
+    CompletableFuture<T> getObjectAsync() throws Exception;
+
+    /**
+     * 不经过 {@link AsyncFactoryBeanFactory} 时同步等待
+     */
+    @Override
+    default T getObject() throws Exception {
+        return AsyncFactoryBeanFactory.await(getObjectAsync());
+    }
+}
@@ -0,0 +1,122 @@
+package cn.forbearance.spring.factory;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanCreationException;
+import org.springframework.beans.factory.FactoryBean;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * 预实例化开始时先启动所有非延迟单例 {@link AsyncFactoryBean} 的产品，第一次获取时才等待结果的BeanFactory
+ * <p>
+ * 用法：{@code new AnnotationConfigApplicationContext(new AsyncFactoryBeanFactory())}
+ *
+ * @author cristina
+ */
+public class AsyncFactoryBeanFactory extends DefaultListableBeanFactory {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * {@link AsyncFactoryBean} 的名称 -> 预实例化时启动、还没有被获取的产品
+     */
+    private final Map<String, CompletableFuture<?>> asyncFactoryBeanObjects = new ConcurrentHashMap<>(16);
+
+    @Override
+    public void preInstantiateSingletons() throws BeansException {
+        startAsyncFactoryBeans();
+        super.preInstantiateSingletons();
+    }
+
+    /**
+     * 先创建所有非延迟的单例 {@link AsyncFactoryBean} 并启动产品的创建，产品在后续创建其他bean的同时完成
+     */
+    private void startAsyncFactoryBeans() {
+        for (String factoryName : getBeanNamesForType(AsyncFactoryBean.class, false, false)) {
+            String beanName = transformedBeanName(factoryName);
+            RootBeanDefinition bd = getMergedLocalBeanDefinition(beanName);
+            if (bd.isAbstract() || !bd.isSingleton() || bd.isLazyInit() || asyncFactoryBeanObjects.containsKey(beanName)) {
+                continue;
+            }
+            AsyncFactoryBean<?> factory = (AsyncFactoryBean<?>) getBean(FACTORY_BEAN_PREFIX + beanName);
+            if (!factory.isSingleton() || getCachedObjectForFactoryBean(beanName) != null) {
+                continue;
+            }
+            try {
+                asyncFactoryBeanObjects.put(beanName, factory.getObjectAsync());
+            } catch (Exception ex) {
+                throw new BeanCreationException(beanName, "AsyncFactoryBean failed to start object creation", ex);
+            }
+        }
+    }
+
+    /**
+     * 已经启动的产品交给父类按原来的方式缓存和后置处理，getObject只是等待结果
+     */
+    @Override
+    protected Object getObjectFromFactoryBean(FactoryBean<?> factory, String beanName, boolean shouldPostProcess) {
+        CompletableFuture<?> future = factory instanceof AsyncFactoryBean ? asyncFactoryBeanObjects.get(beanName) : null;
+        if (future == null) {
+            return super.getObjectFromFactoryBean(factory, beanName, shouldPostProcess);
+        }
+        try {
+            return super.getObjectFromFactoryBean(new StartedFactoryBean(factory, future), beanName, shouldPostProcess);
+        } finally {
+            // 失败时也移除，与Spring一样下一次获取时重新调用getObject
+            asyncFactoryBeanObjects.remove(beanName, future);
+        }
+    }
+
+    /**
+     * 等待产品创建完成，抛出创建时的原始异常
+     */
+    static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            throw cause instanceof Exception ? (Exception) cause : ex;
+        }
+    }
+
+    @Override
+    public void destroySingletons() {
+        super.destroySingletons();
+        for (CompletableFuture<?> future : asyncFactoryBeanObjects.values()) {
+            future.cancel(false);
+        }
+        asyncFactoryBeanObjects.clear();
+    }
+
+    private static class StartedFactoryBean implements FactoryBean<Object> {
+
+        private final FactoryBean<?> factory;
+
+        private final CompletableFuture<?> future;
+
+        StartedFactoryBean(FactoryBean<?> factory, CompletableFuture<?> future) {
+            this.factory = factory;
+            this.future = future;
+        }
+
+        @Override
+        public Object getObject() throws Exception {
+            return await(future);
+        }
+
+        @Override
+        public Class<?> getObjectType() {
+            return factory.getObjectType();
+        }
+
+        @Override
+        public boolean isSingleton() {
+            return factory.isSingleton();
+        }
+    }
+}
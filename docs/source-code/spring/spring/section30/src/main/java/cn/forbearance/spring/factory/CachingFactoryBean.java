@@ -0,0 +1,19 @@
+package cn.forbearance.spring.factory;
+
+import org.springframework.beans.factory.FactoryBean;
+
+/**
+ * 产品可以在一段时间内复用的多实例FactoryBean
+ * <p>
+ * {@link #isSingleton()} 返回false时，{@link SingleFlightBeanFactory} 在过期前返回同一个产品，
+ * 过期后只有一个线程重新调用 {@link #getObject()}，其他线程等待它的结果
+ *
+ * @author cristina
+ */
+public interface CachingFactoryBean<T> extends FactoryBean<T> {
+
+    /**
+     * @return 产品的缓存时间(毫秒)，小于等于0表示不缓存
+     */
+    long getObjectTtlMillis();
+}
@@ -0,0 +1,61 @@
+package cn.forbearance.spring.factory;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.TypeConverter;
+import org.springframework.beans.factory.config.DependencyDescriptor;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.core.MethodParameter;
+
+import java.lang.reflect.Field;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@code @Value} 按注入点缓存 {@link CompiledValueResolver} 拆分结果的BeanFactory，每个注入点的字符串只拆分一次，
+ * 不再每次查找注解、扫描整个字符串
+ * <p>
+ * 用法：{@code new AnnotationConfigApplicationContext(new CompiledValueBeanFactory())}
+ *
+ * @author cristina
+ */
+public class CompiledValueBeanFactory extends DefaultListableBeanFactory {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Object NOT_VALUE = new Object();
+
+    private final CompiledValueResolver compiledValueResolver = new CompiledValueResolver(this);
+
+    /**
+     * 注入点(字段或方法参数) -> 预先拆分的 {@code @Value}，不是 {@code @Value} 的注入点为 {@link #NOT_VALUE}
+     */
+    private final Map<Object, Object> valueTemplates = new ConcurrentHashMap<>(64);
+
+    /**
+     * 与父类处理 {@code @Value} 的方式一致：先替换占位符再计算表达式，最后按注入点的类型转换
+     */
+    @Override
+    public Object doResolveDependency(DependencyDescriptor descriptor, String beanName,
+                                      Set<String> autowiredBeanNames, TypeConverter typeConverter) throws BeansException {
+        Field field = descriptor.getField();
+        Object injectionPoint = field != null ? field : descriptor.getMethodParameter();
+        Object template = valueTemplates.get(injectionPoint);
+        if (template == null) {
+            Object value = getAutowireCandidateResolver().getSuggestedValue(descriptor);
+            template = value instanceof String ? compiledValueResolver.templateFor((String) value) : NOT_VALUE;
+            // MethodParameter的嵌套层级会被修改，保存副本
+            valueTemplates.put(field != null ? field : new MethodParameter(descriptor.getMethodParameter()), template);
+        }
+        if (template == NOT_VALUE) {
+            return super.doResolveDependency(descriptor, beanName, autowiredBeanNames, typeConverter);
+        }
+        CompiledValueResolver.Template valueTemplate = (CompiledValueResolver.Template) template;
+        String scope = valueTemplate.hasExpressions() && beanName != null && containsBean(beanName)
+                ? getMergedBeanDefinition(beanName).getScope() : null;
+        Object value = valueTemplate.resolve(scope);
+        TypeConverter converter = typeConverter != null ? typeConverter : getTypeConverter();
+        return field != null ? converter.convertIfNecessary(value, descriptor.getDependencyType(), field)
+                : converter.convertIfNecessary(value, descriptor.getDependencyType(), descriptor.getMethodParameter());
+    }
+}
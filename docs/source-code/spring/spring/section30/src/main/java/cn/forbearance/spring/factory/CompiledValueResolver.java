@@ -0,0 +1,367 @@
+package cn.forbearance.spring.factory;
+
+import org.springframework.beans.factory.config.BeanExpressionContext;
+import org.springframework.beans.factory.config.BeanExpressionResolver;
+import org.springframework.beans.factory.config.ConfigurableBeanFactory;
+import org.springframework.beans.factory.config.EmbeddedValueResolver;
+import org.springframework.beans.factory.config.Scope;
+import org.springframework.beans.factory.support.AbstractBeanFactory;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.expression.BeanExpressionContextAccessor;
+import org.springframework.context.expression.BeanFactoryAccessor;
+import org.springframework.context.expression.BeanFactoryResolver;
+import org.springframework.context.expression.EnvironmentAccessor;
+import org.springframework.context.expression.MapAccessor;
+import org.springframework.context.expression.StandardBeanExpressionResolver;
+import org.springframework.context.support.AbstractApplicationContext;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.env.PropertySources;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.ParseException;
+import org.springframework.expression.ParserContext;
+import org.springframework.expression.common.LiteralExpression;
+import org.springframework.expression.common.TemplateParserContext;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.expression.spel.support.StandardTypeConverter;
+import org.springframework.expression.spel.support.StandardTypeLocator;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.util.StringValueResolver;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 预先编译的 {@code @Value} 字符串解析器，结果与 {@link EmbeddedValueResolver} 一致
+ * <p>
+ * {@link EmbeddedValueResolver} 每次都要重新扫描整个字符串替换占位符，再把替换后的字符串交给SpEL解析，
+ * 占位符的值不同时SpEL的缓存也用不上。这里每个字符串只拆分一次：字面量原样保留，{@code ${...}} 单独交给
+ * {@link ConfigurableBeanFactory#resolveEmbeddedValue}(只有默认解析器时直接查找属性源)，{@code #{...}} 预先解析成开启了编译的SpEL表达式。
+ * 表达式里含有占位符、占位符的值里含有 {@code #{} 这类无法预先拆分的情况，按Spring原来的方式解析
+ *
+ * @author cristina
+ */
+public class CompiledValueResolver implements StringValueResolver {
+
+    private static final String PLACEHOLDER_PREFIX = "${";
+
+    private static final String EXPRESSION_PREFIX = "#{";
+
+    private static final String SUFFIX = "}";
+
+    private static final String VALUE_SEPARATOR = ":";
+
+    private static final ParserContext TEMPLATE = new TemplateParserContext(EXPRESSION_PREFIX, SUFFIX);
+
+    private static final Field EMBEDDED_VALUE_RESOLVERS = embeddedValueResolversField();
+
+    private final ConfigurableBeanFactory beanFactory;
+
+    private final Map<String, Template> templates = new ConcurrentHashMap<>(64);
+
+    private volatile SpelExpressionParser parser;
+
+    private volatile EvaluationContext evaluationContext;
+
+    /**
+     * 上一次确认过的ApplicationContext默认解析器及其Environment的属性源
+     */
+    private volatile Object environmentResolver;
+
+    private volatile PropertySources propertySources;
+
+    public CompiledValueResolver(ConfigurableBeanFactory beanFactory) {
+        this.beanFactory = beanFactory;
+    }
+
+    @Override
+    public String resolveStringValue(String value) {
+        Object resolved = templateFor(value).resolve(null);
+        return resolved != null ? resolved.toString() : null;
+    }
+
+    Template templateFor(String value) {
+        Template template = templates.get(value);
+        if (template == null) {
+            template = compile(value);
+            Template existing = templates.putIfAbsent(value, template);
+            if (existing != null) {
+                template = existing;
+            }
+        }
+        return template;
+    }
+
+    private Template compile(String value) {
+        List<Object> parts = new ArrayList<>();
+        int index = 0;
+        while (index < value.length()) {
+            int start = value.indexOf(PLACEHOLDER_PREFIX, index);
+            int end = start != -1 ? findPlaceholderEnd(value, start) : -1;
+            if (end == -1) {
+                parts.add(value.substring(index));
+                break;
+            }
+            if (start > index) {
+                parts.add(value.substring(index, start));
+            }
+            parts.add(new Placeholder(value.substring(start, end + SUFFIX.length()), value.substring(start + PLACEHOLDER_PREFIX.length(), end)));
+            index = end + SUFFIX.length();
+        }
+        BeanExpressionResolver expressionResolver = beanFactory.getBeanExpressionResolver();
+        if (expressionResolver == null) {
+            // 没有表达式解析器时 #{...} 原样保留
+            return new Template(value, parts, false);
+        }
+        for (int i = 0; i < parts.size(); i++) {
+            Object part = parts.get(i);
+            if (!(part instanceof String) || !((String) part).contains(EXPRESSION_PREFIX)) {
+                continue;
+            }
+            if (expressionResolver.getClass() != StandardBeanExpressionResolver.class) {
+                // 自定义的解析器可能有不同的前后缀和计算方式
+                return new Template(value, null, true);
+            }
+            try {
+                Expression expression = parser().parseExpression((String) part, TEMPLATE);
+                parts.set(i, expression instanceof LiteralExpression ? ((LiteralExpression) expression).getExpressionString() : expression);
+            } catch (ParseException ex) {
+                // 表达式被占位符分开了，比如 #{'${name}'.toUpperCase()}
+                return new Template(value, null, true);
+            }
+        }
+        return new Template(value, parts, true);
+    }
+
+    /**
+     * 容器中只有ApplicationContext默认的解析器时，它的行为就是 {@code Environment#resolvePlaceholders}，
+     * 简单的 {@code ${key:default}} 可以直接在属性源中查找，不需要再解析占位符
+     * @return 不能直接查找时返回null
+     */
+    private PropertySources propertySources() {
+        if (EMBEDDED_VALUE_RESOLVERS == null) {
+            return null;
+        }
+        List<?> resolvers = (List<?>) ReflectionUtils.getField(EMBEDDED_VALUE_RESOLVERS, beanFactory);
+        if (resolvers.size() != 1) {
+            return null;
+        }
+        Object resolver = resolvers.get(0);
+        if (resolver != environmentResolver) {
+            if (resolver.getClass().getEnclosingClass() != AbstractApplicationContext.class
+                    || !beanFactory.containsBean(ConfigurableApplicationContext.ENVIRONMENT_BEAN_NAME)) {
+                return null;
+            }
+            Object environment = beanFactory.getBean(ConfigurableApplicationContext.ENVIRONMENT_BEAN_NAME);
+            if (!(environment instanceof ConfigurableEnvironment)) {
+                return null;
+            }
+            propertySources = ((ConfigurableEnvironment) environment).getPropertySources();
+            environmentResolver = resolver;
+        }
+        return propertySources;
+    }
+
+    /**
+     * 与 {@code PropertyPlaceholderHelper} 一样匹配嵌套的 {@code ${}} 和 {@code {}}
+     */
+    private static int findPlaceholderEnd(String value, int start) {
+        int index = start + PLACEHOLDER_PREFIX.length();
+        int nested = 0;
+        while (index < value.length()) {
+            if (value.startsWith(SUFFIX, index)) {
+                if (nested == 0) {
+                    return index;
+                }
+                nested--;
+                index += SUFFIX.length();
+            } else if (value.startsWith("{", index)) {
+                nested++;
+                index++;
+            } else {
+                index++;
+            }
+        }
+        return -1;
+    }
+
+    private SpelExpressionParser parser() {
+        SpelExpressionParser parser = this.parser;
+        if (parser == null) {
+            parser = new SpelExpressionParser(new SpelParserConfiguration(SpelCompilerMode.MIXED, beanFactory.getBeanClassLoader()));
+            this.parser = parser;
+        }
+        return parser;
+    }
+
+    /**
+     * 与 {@link StandardBeanExpressionResolver} 为单例和原型bean创建的上下文一致
+     */
+    private EvaluationContext evaluationContext() {
+        EvaluationContext context = this.evaluationContext;
+        if (context == null) {
+            StandardEvaluationContext sec = new StandardEvaluationContext(new BeanExpressionContext(beanFactory, null));
+            sec.addPropertyAccessor(new BeanExpressionContextAccessor());
+            sec.addPropertyAccessor(new BeanFactoryAccessor());
+            sec.addPropertyAccessor(new MapAccessor());
+            sec.addPropertyAccessor(new EnvironmentAccessor());
+            sec.setBeanResolver(new BeanFactoryResolver(beanFactory));
+            sec.setTypeLocator(new StandardTypeLocator(beanFactory.getBeanClassLoader()));
+            ConversionService conversionService = beanFactory.getConversionService();
+            if (conversionService != null) {
+                sec.setTypeConverter(new StandardTypeConverter(conversionService));
+            }
+            context = sec;
+            this.evaluationContext = context;
+        }
+        return context;
+    }
+
+    /**
+     * 一个 {@code @Value} 字符串拆分后的结果
+     */
+    final class Template {
+
+        private final String value;
+
+        /**
+         * 字面量、{@link Placeholder} 或 {@link Expression}，为null时表示无法拆分
+         */
+        private final List<Object> parts;
+
+        private final boolean expressions;
+
+        private final boolean singleExpression;
+
+        /**
+         * 占位符的值中出现 #{ 时是否还要作为表达式计算
+         */
+        private final boolean evaluatePlaceholders;
+
+        private Template(String value, List<Object> parts, boolean evaluatePlaceholders) {
+            this.value = value;
+            this.parts = parts;
+            boolean expressions = parts == null;
+            if (parts != null) {
+                for (Object part : parts) {
+                    expressions |= part instanceof Expression;
+                }
+            }
+            this.expressions = expressions;
+            this.singleExpression = parts != null && parts.size() == 1 && parts.get(0) instanceof Expression;
+            this.evaluatePlaceholders = evaluatePlaceholders;
+        }
+
+        /**
+         * @return 是否需要bean的作用域，只有含有表达式时才需要
+         */
+        boolean hasExpressions() {
+            return expressions;
+        }
+
+        /**
+         * @param scopeName bean的作用域，不在bean定义中解析时为null
+         */
+        Object resolve(String scopeName) {
+            if (parts == null || expressions && scopeName != null && beanFactory.getRegisteredScope(scopeName) != null) {
+                return resolveAsSpring(scopeName);
+            }
+            if (singleExpression) {
+                return ((Expression) parts.get(0)).getValue(evaluationContext());
+            }
+            StringBuilder sb = new StringBuilder(value.length());
+            for (Object part : parts) {
+                if (part instanceof String) {
+                    sb.append((String) part);
+                } else if (part instanceof Placeholder) {
+                    String resolved = resolvePlaceholder((Placeholder) part);
+                    if (resolved == null) {
+                        return null;
+                    }
+                    if (evaluatePlaceholders && resolved.contains(EXPRESSION_PREFIX)) {
+                        return resolveAsSpring(scopeName);
+                    }
+                    sb.append(resolved);
+                } else {
+                    String evaluated = ((Expression) part).getValue(evaluationContext(), String.class);
+                    if (evaluated != null) {
+                        sb.append(evaluated);
+                    }
+                }
+            }
+            return sb.toString();
+        }
+
+        /**
+         * 与非严格模式的 {@code PropertyPlaceholderHelper} 一致：按顺序查找属性源，找不到时使用默认值，没有默认值时保留原样
+         */
+        private String resolvePlaceholder(Placeholder placeholder) {
+            PropertySources sources = placeholder.key != null ? propertySources() : null;
+            if (sources == null) {
+                return beanFactory.resolveEmbeddedValue(placeholder.text);
+            }
+            for (PropertySource<?> source : sources) {
+                Object property = source.getProperty(placeholder.key);
+                if (property != null) {
+                    // 非字符串的值需要类型转换，值中的占位符需要递归解析
+                    return property instanceof String && !((String) property).contains(PLACEHOLDER_PREFIX)
+                            ? (String) property : beanFactory.resolveEmbeddedValue(placeholder.text);
+                }
+            }
+            return placeholder.defaultValue != null ? placeholder.defaultValue : placeholder.text;
+        }
+
+        /**
+         * 与 {@code AbstractBeanFactory#evaluateBeanDefinitionString} 一致
+         */
+        private Object resolveAsSpring(String scopeName) {
+            String resolved = beanFactory.resolveEmbeddedValue(value);
+            BeanExpressionResolver expressionResolver = beanFactory.getBeanExpressionResolver();
+            if (expressionResolver == null) {
+                return resolved;
+            }
+            Scope scope = scopeName != null ? beanFactory.getRegisteredScope(scopeName) : null;
+            return expressionResolver.evaluate(resolved, new BeanExpressionContext(beanFactory, scope));
+        }
+    }
+
+    private static final class Placeholder {
+
+        private final String text;
+
+        /**
+         * 含有嵌套的占位符时为null，只能交给 {@link ConfigurableBeanFactory#resolveEmbeddedValue}
+         */
+        private final String key;
+
+        private final String defaultValue;
+
+        private Placeholder(String text, String content) {
+            this.text = text;
+            if (content.contains("{")) {
+                this.key = null;
+                this.defaultValue = null;
+                return;
+            }
+            int separator = content.indexOf(VALUE_SEPARATOR);
+            this.key = separator != -1 ? content.substring(0, separator) : content;
+            this.defaultValue = separator != -1 ? content.substring(separator + VALUE_SEPARATOR.length()) : null;
+        }
+    }
+
+    private static Field embeddedValueResolversField() {
+        Field field = ReflectionUtils.findField(AbstractBeanFactory.class, "embeddedValueResolvers");
+        if (field != null) {
+            ReflectionUtils.makeAccessible(field);
+        }
+        return field;
+    }
+}
@@ -0,0 +1,86 @@
+package cn.forbearance.spring.factory;
+
+import org.springframework.beans.factory.BeanCreationException;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * 正在由某个线程创建的对象，其他线程可以等待它完成。等待之前检查跨线程的循环等待，会形成环时不等待
+ *
+ * @author cristina
+ */
+class InFlightCreations {
+
+    /**
+     * 名称 -> 正在创建它的线程
+     */
+    private final Map<String, Creation> creations = new ConcurrentHashMap<>();
+
+    /**
+     * 正在等待的线程 -> 等待的名称
+     */
+    private final Map<Thread, String> awaited = new HashMap<>();
+
+    /**
+     * @return 当前线程开始创建时返回null，之后必须调用 {@link #finish(String)}；已经有线程在创建时返回它的记录
+     */
+    Creation start(String name) {
+        return creations.putIfAbsent(name, new Creation());
+    }
+
+    Creation get(String name) {
+        return creations.get(name);
+    }
+
+    void finish(String name) {
+        Creation creation = creations.remove(name);
+        if (creation != null) {
+            creation.done.countDown();
+        }
+    }
+
+    /**
+     * @return false表示等待会形成环，调用方需要用其他方式继续
+     */
+    boolean await(String name, Creation creation) {
+        Thread current = Thread.currentThread();
+        synchronized (awaited) {
+            // 沿着 创建线程 -> 它等待的名称 -> 该名称的创建线程 查找，回到当前线程说明形成了环
+            Thread thread = creation.thread;
+            while (thread != null) {
+                if (thread == current) {
+                    return false;
+                }
+                String next = awaited.get(thread);
+                Creation nextCreation = next != null ? creations.get(next) : null;
+                thread = nextCreation != null ? nextCreation.thread : null;
+            }
+            awaited.put(current, name);
+        }
+        try {
+            creation.done.await();
+            return true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new BeanCreationException(name, "Interrupted while waiting for creation by another thread", ex);
+        } finally {
+            synchronized (awaited) {
+                awaited.remove(current);
+            }
+        }
+    }
+
+    static class Creation {
+
+        private final Thread thread = Thread.currentThread();
+
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        boolean isCurrentThread() {
+            return thread == Thread.currentThread();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package cn.forbearance.spring.factory;
+
+import cn.forbearance.spring.condition.LazyImportRegistrar;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.core.type.classreading.CachingMetadataReaderFactory;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+import org.springframework.core.type.filter.AssignableTypeFilter;
+
+import java.io.IOException;
+
+/**
+ * 配合 {@link cn.forbearance.spring.condition.LazyImport} 使用的BeanFactory：
+ * {@link LazyImportRegistrar} 注册的bean在类型匹配时先读取class文件判断，匹配上才加载类
+ * <p>
+ * 用法：{@code new AnnotationConfigApplicationContext(new LazyImportBeanFactory())}
+ *
+ * @author cristina
+ */
+public class LazyImportBeanFactory extends DefaultListableBeanFactory {
+
+    private static final long serialVersionUID = 1L;
+
+    private volatile MetadataReaderFactory metadataReaderFactory;
+
+    /**
+     * 延迟导入的bean在类加载之前：
+     * <ul>
+     *     <li>不指定类型时({@code getType})返回null，表示类型未知</li>
+     *     <li>按类型匹配时读取class文件判断继承关系，匹配上才加载类</li>
+     *     <li>按Object匹配时直接返回Object，所有bean都满足</li>
+     * </ul>
+     */
+    @Override
+    protected Class<?> predictBeanType(String beanName, RootBeanDefinition mbd, Class<?>... typesToMatch) {
+        if (mbd.hasBeanClass() || mbd.getAttribute(LazyImportRegistrar.LAZY_IMPORT_ATTRIBUTE) == null) {
+            return super.predictBeanType(beanName, mbd, typesToMatch);
+        }
+        boolean matchObject = false;
+        for (Class<?> typeToMatch : typesToMatch) {
+            if (typeToMatch == Object.class) {
+                matchObject = true;
+            } else if (isAssignable(mbd.getBeanClassName(), typeToMatch)) {
+                return super.predictBeanType(beanName, mbd, typesToMatch);
+            }
+        }
+        return matchObject ? Object.class : null;
+    }
+
+    private boolean isAssignable(String className, Class<?> type) {
+        MetadataReaderFactory readerFactory = this.metadataReaderFactory;
+        if (readerFactory == null) {
+            readerFactory = new CachingMetadataReaderFactory(getBeanClassLoader());
+            this.metadataReaderFactory = readerFactory;
+        }
+        try {
+            return new AssignableTypeFilter(type).match(readerFactory.getMetadataReader(className), readerFactory);
+        } catch (IOException e) {
+            // 读取不到class文件时交给父类按原来的方式加载
+            return true;
+        }
+    }
+}
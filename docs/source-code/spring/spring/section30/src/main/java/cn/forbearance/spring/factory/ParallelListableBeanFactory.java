@@ -0,0 +1,359 @@
+package cn.forbearance.spring.factory;
+
+import org.springframework.aop.Advisor;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanCreationException;
+import org.springframework.beans.factory.BeanCurrentlyInCreationException;
+import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.beans.factory.SmartFactoryBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 并行预实例化的BeanFactory
+ * <p>
+ * 设置 {@link #setPreInstantiationParallelism(int)} 或 {@link #setPreInstantiationExecutor(Executor)} 后，
+ * 互不依赖的单例在多个线程上同时创建，完成后可通过 {@link #getPreInstantiationReport()} 查看关键路径。
+ * <p>
+ * 用法：{@code new AnnotationConfigApplicationContext(new ParallelListableBeanFactory())}
+ *
+ * @author cristina
+ */
+public class ParallelListableBeanFactory extends DefaultListableBeanFactory {
+
+    private static final long serialVersionUID = 1L;
+
+    private Executor preInstantiationExecutor;
+
+    private int preInstantiationParallelism;
+
+    /**
+     * 只在并行预实例化期间为true，其余时间单例的创建完全交给父类
+     */
+    private volatile boolean parallelPreInstantiation;
+
+    private final InFlightCreations singletonCreations = new InFlightCreations();
+
+    /**
+     * 预实例化期间每个单例的 开始时间、结束时间、线程id
+     */
+    private volatile Map<String, long[]> creationTimes;
+
+    private volatile PreInstantiationReport preInstantiationReport;
+
+    /**
+     * 用固定大小的线程池并行预实例化，线程池在预实例化结束后关闭。小于等于1时按Spring原来的方式顺序创建
+     */
+    public void setPreInstantiationParallelism(int preInstantiationParallelism) {
+        this.preInstantiationParallelism = preInstantiationParallelism;
+    }
+
+    /**
+     * 使用外部的线程池并行预实例化，优先于 {@link #setPreInstantiationParallelism(int)}，线程池由调用方管理
+     */
+    public void setPreInstantiationExecutor(Executor preInstantiationExecutor) {
+        this.preInstantiationExecutor = preInstantiationExecutor;
+    }
+
+    /**
+     * @return 最近一次并行预实例化的报告，没有开启并行时为null
+     */
+    public PreInstantiationReport getPreInstantiationReport() {
+        return preInstantiationReport;
+    }
+
+    /**
+     * 并行预实例化：
+     * <ul>
+     *     <li>{@code @DependsOn} 和 {@code @Bean} 所在的配置类作为静态依赖，依赖的任务完成后才提交</li>
+     *     <li>注入时才发现的依赖如果正由其他线程创建，等待它完成初始化({@code afterPropertiesSet}、{@code @PostConstruct})，
+     *     其他线程永远拿不到初始化一半的bean</li>
+     *     <li>跨线程的循环依赖无法等待，这些bean在并行阶段结束后按原来的顺序重新创建</li>
+     *     <li>{@link SmartInitializingSingleton} 回调仍在当前线程按注册顺序执行</li>
+     * </ul>
+     */
+    @Override
+    public void preInstantiateSingletons() throws BeansException {
+        if (preInstantiationExecutor == null && preInstantiationParallelism <= 1) {
+            super.preInstantiateSingletons();
+            return;
+        }
+        List<String> beanNames = Arrays.asList(getBeanDefinitionNames());
+        // AOP在创建代理时会持有单例锁获取Advisor，此时无法等待其他线程，所以Advisor先顺序创建
+        for (String advisorName : getBeanNamesForType(Advisor.class, true, false)) {
+            if (isEagerSingleton(getMergedLocalBeanDefinition(advisorName))) {
+                getBean(advisorName);
+            }
+        }
+
+        ExecutorService ownExecutor = null;
+        Executor executor = preInstantiationExecutor;
+        if (executor == null) {
+            ownExecutor = Executors.newFixedThreadPool(preInstantiationParallelism, new PreInstantiationThreadFactory());
+            executor = ownExecutor;
+        }
+        long start = System.nanoTime();
+        Map<String, long[]> times = new ConcurrentHashMap<>();
+        List<String> retryNames = new ArrayList<>();
+        this.creationTimes = times;
+        try {
+            this.parallelPreInstantiation = true;
+            try {
+                submitAndAwait(beanNames, executor, retryNames);
+            } finally {
+                this.parallelPreInstantiation = false;
+                if (ownExecutor != null) {
+                    ownExecutor.shutdown();
+                }
+            }
+            for (String beanName : retryNames) {
+                instantiateSingleton(beanName);
+            }
+        } finally {
+            this.creationTimes = null;
+        }
+        this.preInstantiationReport = buildReport(System.nanoTime() - start, times);
+        if (logger.isInfoEnabled()) {
+            logger.info(preInstantiationReport);
+        }
+
+        for (String beanName : beanNames) {
+            Object singletonInstance = getSingleton(beanName);
+            if (singletonInstance instanceof SmartInitializingSingleton) {
+                ((SmartInitializingSingleton) singletonInstance).afterSingletonsInstantiated();
+            }
+        }
+    }
+
+    private void submitAndAwait(List<String> beanNames, Executor executor, List<String> retryNames) {
+        Map<String, CompletableFuture<Void>> futures = new LinkedHashMap<>();
+        for (String beanName : beanNames) {
+            RootBeanDefinition bd = getMergedLocalBeanDefinition(beanName);
+            if (!isEagerSingleton(bd)) {
+                continue;
+            }
+            // 只依赖已经提交的任务，依赖图中不会出现环；排在后面的依赖在创建时由getBean顺带创建
+            List<CompletableFuture<Void>> dependencies = new ArrayList<>();
+            for (String dependency : staticDependenciesOf(bd)) {
+                CompletableFuture<Void> future = futures.get(dependency);
+                if (future != null) {
+                    dependencies.add(future);
+                }
+            }
+            futures.put(beanName, CompletableFuture.allOf(dependencies.toArray(new CompletableFuture<?>[0]))
+                    // 依赖创建失败时由依赖自己的任务报告，这里照常执行
+                    .handle((result, ex) -> null)
+                    .thenRunAsync(() -> instantiateSingleton(beanName), executor));
+        }
+
+        BeansException failure = null;
+        for (Map.Entry<String, CompletableFuture<Void>> entry : futures.entrySet()) {
+            try {
+                entry.getValue().join();
+            } catch (CompletionException ex) {
+                Throwable cause = ex.getCause();
+                if (cause instanceof BeansException && ((BeansException) cause).contains(BeanCurrentlyInCreationException.class)) {
+                    retryNames.add(entry.getKey());
+                } else if (failure == null) {
+                    failure = cause instanceof BeansException ? (BeansException) cause :
+                            new BeanCreationException(entry.getKey(), "Parallel pre-instantiation failed", cause);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * 与 {@link DefaultListableBeanFactory#preInstantiateSingletons()} 中单个bean的处理相同
+     */
+    private void instantiateSingleton(String beanName) {
+        if (isFactoryBean(beanName)) {
+            Object factory = getBean(FACTORY_BEAN_PREFIX + beanName);
+            if (factory instanceof SmartFactoryBean && ((SmartFactoryBean<?>) factory).isEagerInit()) {
+                getBean(beanName);
+            }
+        } else {
+            getBean(beanName);
+        }
+    }
+
+    private static boolean isEagerSingleton(RootBeanDefinition bd) {
+        return !bd.isAbstract() && bd.isSingleton() && !bd.isLazyInit();
+    }
+
+    /**
+     * 不需要创建bean就能从定义中得到的依赖
+     */
+    private static List<String> staticDependenciesOf(RootBeanDefinition bd) {
+        List<String> dependencies = new ArrayList<>();
+        if (bd.getDependsOn() != null) {
+            Collections.addAll(dependencies, bd.getDependsOn());
+        }
+        if (bd.getFactoryBeanName() != null) {
+            dependencies.add(bd.getFactoryBeanName());
+        }
+        return dependencies;
+    }
+
+    /**
+     * 其他线程正在创建的单例，等它完成后再返回，不暴露提前引用。
+     * 等待会形成环时抛出 {@link BeanCurrentlyInCreationException}，由并行阶段结束后的顺序创建处理
+     */
+    @Override
+    protected Object getSingleton(String beanName, boolean allowEarlyReference) {
+        if (parallelPreInstantiation && allowEarlyReference) {
+            InFlightCreations.Creation creation = singletonCreations.get(beanName);
+            if (creation != null && !creation.isCurrentThread()) {
+                if (!awaitCreation(beanName, creation)) {
+                    throw new BeanCurrentlyInCreationException(beanName,
+                            "Singleton is being created by another thread that is waiting for the current thread");
+                }
+                return super.getSingleton(beanName, false);
+            }
+        }
+        return super.getSingleton(beanName, allowEarlyReference);
+    }
+
+    /**
+     * 父类在整个创建过程中都持有单例锁，多个线程实际上仍是顺序创建。
+     * 并行预实例化期间改为按bean名称加锁，注册单例等短操作仍由父类在单例锁内完成
+     */
+    @Override
+    public Object getSingleton(String beanName, ObjectFactory<?> singletonFactory) {
+        ObjectFactory<?> timedFactory = timed(beanName, singletonFactory);
+        if (!parallelPreInstantiation) {
+            return super.getSingleton(beanName, timedFactory);
+        }
+        while (true) {
+            if (containsSingleton(beanName)) {
+                return super.getSingleton(beanName, false);
+            }
+            InFlightCreations.Creation existing = singletonCreations.start(beanName);
+            if (existing == null) {
+                break;
+            }
+            if (existing.isCurrentThread() || !awaitCreation(beanName, existing)) {
+                throw new BeanCurrentlyInCreationException(beanName);
+            }
+        }
+        try {
+            if (containsSingleton(beanName)) {
+                return super.getSingleton(beanName, false);
+            }
+            beforeSingletonCreation(beanName);
+            Object singletonObject;
+            try {
+                singletonObject = timedFactory.getObject();
+            } catch (IllegalStateException ex) {
+                // 与父类一致：单例可能已经被隐式注册
+                if (!containsSingleton(beanName)) {
+                    throw ex;
+                }
+                return super.getSingleton(beanName, false);
+            } finally {
+                afterSingletonCreation(beanName);
+            }
+            addSingleton(beanName, singletonObject);
+            return singletonObject;
+        } finally {
+            singletonCreations.finish(beanName);
+        }
+    }
+
+    /**
+     * @return false表示等待会形成环
+     */
+    private boolean awaitCreation(String beanName, InFlightCreations.Creation creation) {
+        if (Thread.holdsLock(getSingletonMutex())) {
+            // 创建线程注册单例时需要这把锁，持有它等待必然死锁
+            throw new BeanCurrentlyInCreationException(beanName,
+                    "Singleton is being created by another thread while the singleton lock is held");
+        }
+        return singletonCreations.await(beanName, creation);
+    }
+
+    private ObjectFactory<?> timed(String beanName, ObjectFactory<?> singletonFactory) {
+        Map<String, long[]> times = this.creationTimes;
+        if (times == null) {
+            return singletonFactory;
+        }
+        return () -> {
+            long start = System.nanoTime();
+            try {
+                return singletonFactory.getObject();
+            } finally {
+                times.put(beanName, new long[]{start, System.nanoTime(), Thread.currentThread().getId()});
+            }
+        };
+    }
+
+    /**
+     * 从最后完成的bean开始，每次回溯到依赖中最晚完成的那个
+     */
+    private PreInstantiationReport buildReport(long wallTimeNanos, Map<String, long[]> times) {
+        Map<String, Long> durations = new LinkedHashMap<>();
+        Set<Long> threads = new HashSet<>();
+        String last = null;
+        for (Map.Entry<String, long[]> entry : times.entrySet()) {
+            long[] time = entry.getValue();
+            durations.put(entry.getKey(), time[1] - time[0]);
+            threads.add(time[2]);
+            if (last == null || time[1] > times.get(last)[1]) {
+                last = entry.getKey();
+            }
+        }
+        LinkedList<String> criticalPath = new LinkedList<>();
+        Set<String> visited = new HashSet<>();
+        String current = last;
+        while (current != null && visited.add(current)) {
+            criticalPath.addFirst(current);
+            long end = times.get(current)[1];
+            List<String> dependencies = new ArrayList<>(Arrays.asList(getDependenciesForBean(current)));
+            if (containsBeanDefinition(current)) {
+                dependencies.addAll(staticDependenciesOf(getMergedLocalBeanDefinition(current)));
+            }
+            String gate = null;
+            for (String dependency : dependencies) {
+                long[] time = times.get(dependency);
+                if (time != null && time[1] <= end && (gate == null || time[1] > times.get(gate)[1])) {
+                    gate = dependency;
+                }
+            }
+            current = gate;
+        }
+        return new PreInstantiationReport(wallTimeNanos, threads.size(), durations, criticalPath);
+    }
+
+    private static class PreInstantiationThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "pre-instantiation-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
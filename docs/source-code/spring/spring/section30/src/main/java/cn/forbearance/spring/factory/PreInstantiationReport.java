@@ -0,0 +1,74 @@
+package cn.forbearance.spring.factory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一次并行预实例化的结果：总耗时、每个单例的创建耗时以及关键路径
+ * <p>
+ * 关键路径从最后完成的bean开始，每一步回溯到它的依赖中最晚完成的那个，
+ * 这条链上的bean决定了refresh的最短耗时，优化其他bean的初始化不会缩短启动时间
+ *
+ * @author cristina
+ */
+public class PreInstantiationReport {
+
+    private final long wallTimeNanos;
+
+    private final int threadCount;
+
+    private final Map<String, Long> durations;
+
+    private final List<String> criticalPath;
+
+    PreInstantiationReport(long wallTimeNanos, int threadCount, Map<String, Long> durations, List<String> criticalPath) {
+        this.wallTimeNanos = wallTimeNanos;
+        this.threadCount = threadCount;
+        this.durations = Collections.unmodifiableMap(new LinkedHashMap<>(durations));
+        this.criticalPath = Collections.unmodifiableList(new ArrayList<>(criticalPath));
+    }
+
+    public long getWallTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(wallTimeNanos);
+    }
+
+    /**
+     * @return 实际参与创建单例的线程数
+     */
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * @return bean名称 -> 创建耗时(纳秒)，包含在同一线程中顺带创建的依赖
+     */
+    public Map<String, Long> getDurations() {
+        return durations;
+    }
+
+    /**
+     * @return 关键路径，依赖在前
+     */
+    public List<String> getCriticalPath() {
+        return criticalPath;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Pre-instantiated ").append(durations.size()).append(" singletons in ")
+                .append(getWallTimeMillis()).append(" ms on ").append(threadCount).append(" threads, critical path: ");
+        for (int i = 0; i < criticalPath.size(); i++) {
+            String beanName = criticalPath.get(i);
+            if (i > 0) {
+                sb.append(" -> ");
+            }
+            sb.append(beanName).append('(').append(TimeUnit.NANOSECONDS.toMillis(durations.get(beanName))).append(" ms)");
+        }
+        return sb.toString();
+    }
+}
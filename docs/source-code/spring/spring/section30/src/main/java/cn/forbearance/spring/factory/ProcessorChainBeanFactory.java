@@ -0,0 +1,166 @@
+package cn.forbearance.spring.factory;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按bean类型缓存需要调用的后置处理器的BeanFactory，跳过 {@link SelectiveBeanPostProcessor} 不关心的类型和直接返回bean的方法
+ * <p>
+ * 用法：{@code new AnnotationConfigApplicationContext(new ProcessorChainBeanFactory())}
+ *
+ * @author cristina
+ */
+public class ProcessorChainBeanFactory extends DefaultListableBeanFactory {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String BEFORE_INITIALIZATION_METHOD = "postProcessBeforeInitialization";
+
+    private static final String AFTER_INITIALIZATION_METHOD = "postProcessAfterInitialization";
+
+    /**
+     * Spring自带的处理器中直接返回bean的方法，子类重写后不再视为空操作
+     */
+    private static final Set<String> IDENTITY_METHODS = new HashSet<>(Arrays.asList(
+            "org.springframework.beans.factory.config.InstantiationAwareBeanPostProcessorAdapter#" + BEFORE_INITIALIZATION_METHOD,
+            "org.springframework.beans.factory.config.InstantiationAwareBeanPostProcessorAdapter#" + AFTER_INITIALIZATION_METHOD,
+            "org.springframework.beans.factory.annotation.InitDestroyAnnotationBeanPostProcessor#" + AFTER_INITIALIZATION_METHOD,
+            "org.springframework.context.support.ApplicationContextAwareProcessor#" + AFTER_INITIALIZATION_METHOD,
+            "org.springframework.context.support.ApplicationListenerDetector#" + BEFORE_INITIALIZATION_METHOD,
+            "org.springframework.aop.framework.AbstractAdvisingBeanPostProcessor#" + BEFORE_INITIALIZATION_METHOD,
+            "org.springframework.aop.framework.autoproxy.AbstractAutoProxyCreator#" + BEFORE_INITIALIZATION_METHOD));
+
+    /**
+     * 处理器类型 -> 初始化前、初始化后的方法是否直接返回bean
+     */
+    private static final ClassValue<boolean[]> IDENTITY_CALLBACKS = new ClassValue<boolean[]>() {
+        @Override
+        protected boolean[] computeValue(Class<?> processorType) {
+            return new boolean[]{isIdentityMethod(processorType, BEFORE_INITIALIZATION_METHOD),
+                    isIdentityMethod(processorType, AFTER_INITIALIZATION_METHOD)};
+        }
+    };
+
+    /**
+     * bean类型 -> 需要调用的后置处理器，添加处理器时清空
+     */
+    private final Map<Class<?>, ProcessorChain> processorChains = new ConcurrentHashMap<>(64);
+
+    @Override
+    public void addBeanPostProcessor(BeanPostProcessor beanPostProcessor) {
+        super.addBeanPostProcessor(beanPostProcessor);
+        processorChains.clear();
+    }
+
+    @Override
+    public Object applyBeanPostProcessorsBeforeInitialization(Object existingBean, String beanName) throws BeansException {
+        return applyProcessorChain(existingBean, beanName, true);
+    }
+
+    @Override
+    public Object applyBeanPostProcessorsAfterInitialization(Object existingBean, String beanName) throws BeansException {
+        return applyProcessorChain(existingBean, beanName, false);
+    }
+
+    /**
+     * 与父类相同地依次调用后置处理器，但只调用按bean类型预先筛选出来的那些
+     */
+    private Object applyProcessorChain(Object existingBean, String beanName, boolean before) {
+        Class<?> beanType = existingBean.getClass();
+        ProcessorChain chain = processorChainOf(beanType);
+        int[] indexes = before ? chain.before : chain.after;
+        Object result = existingBean;
+        for (int index : indexes) {
+            result = invokeProcessor(chain.processors[index], result, beanName, before);
+            if (result == null) {
+                return null;
+            }
+            if (result.getClass() != beanType) {
+                // bean被替换成了其他类型(比如代理)，剩下的处理器按新类型逐个判断
+                for (int next = index + 1; next < chain.processors.length; next++) {
+                    BeanPostProcessor processor = chain.processors[next];
+                    if (isInterested(processor, result.getClass(), before)) {
+                        result = invokeProcessor(processor, result, beanName, before);
+                        if (result == null) {
+                            return null;
+                        }
+                    }
+                }
+                return result;
+            }
+        }
+        return result;
+    }
+
+    private static Object invokeProcessor(BeanPostProcessor processor, Object bean, String beanName, boolean before) {
+        return before ? processor.postProcessBeforeInitialization(bean, beanName)
+                : processor.postProcessAfterInitialization(bean, beanName);
+    }
+
+    private ProcessorChain processorChainOf(Class<?> beanType) {
+        ProcessorChain chain = processorChains.get(beanType);
+        // 处理器列表没有经过addBeanPostProcessor被修改时，用数量兜底判断
+        if (chain == null || chain.processors.length != getBeanPostProcessorCount()) {
+            chain = new ProcessorChain(getBeanPostProcessors().toArray(new BeanPostProcessor[0]), beanType);
+            processorChains.put(beanType, chain);
+        }
+        return chain;
+    }
+
+    /**
+     * {@link SelectiveBeanPostProcessor} 按声明判断，其他处理器只排除直接返回bean的方法
+     */
+    private static boolean isInterested(BeanPostProcessor processor, Class<?> beanType, boolean before) {
+        if (processor instanceof SelectiveBeanPostProcessor) {
+            SelectiveBeanPostProcessor selective = (SelectiveBeanPostProcessor) processor;
+            boolean required = before ? selective.requiresBeforeInitialization() : selective.requiresAfterInitialization();
+            if (!required || !selective.supportsBeanType(beanType)) {
+                return false;
+            }
+        }
+        return !IDENTITY_CALLBACKS.get(processor.getClass())[before ? 0 : 1];
+    }
+
+    private static boolean isIdentityMethod(Class<?> processorType, String methodName) {
+        Method method = ReflectionUtils.findMethod(processorType, methodName, Object.class, String.class);
+        return method != null && IDENTITY_METHODS.contains(method.getDeclaringClass().getName() + "#" + methodName);
+    }
+
+    /**
+     * 某个bean类型在初始化前后需要调用的处理器，保存的是处理器快照中的下标
+     */
+    private static class ProcessorChain {
+
+        private final BeanPostProcessor[] processors;
+
+        private final int[] before;
+
+        private final int[] after;
+
+        ProcessorChain(BeanPostProcessor[] processors, Class<?> beanType) {
+            this.processors = processors;
+            this.before = indexesOf(processors, beanType, true);
+            this.after = indexesOf(processors, beanType, false);
+        }
+
+        private static int[] indexesOf(BeanPostProcessor[] processors, Class<?> beanType, boolean before) {
+            int[] indexes = new int[processors.length];
+            int count = 0;
+            for (int i = 0; i < processors.length; i++) {
+                if (isInterested(processors[i], beanType, before)) {
+                    indexes[count++] = i;
+                }
+            }
+            return Arrays.copyOf(indexes, count);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package cn.forbearance.spring.factory;
+
+import org.springframework.aop.framework.autoproxy.AbstractAutoProxyCreator;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.Aware;
+import org.springframework.beans.factory.BeanClassLoaderAware;
+import org.springframework.beans.factory.BeanCreationException;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.BeanNameAware;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.config.InstantiationAwareBeanPostProcessor;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 原型bean从第二次创建开始使用 {@link PrototypeInstantiator} 的BeanFactory：直接调用构造函数或工厂方法，
+ * 按预先计算好的步骤初始化，不再经过反射和构造函数解析
+ * <p>
+ * 用法：{@code new AnnotationConfigApplicationContext(new PrototypeInstantiatingBeanFactory())}
+ *
+ * @author cristina
+ */
+public class PrototypeInstantiatingBeanFactory extends DefaultListableBeanFactory {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Set<String> KNOWN_INSTANTIATION_AWARE_PROCESSORS = new HashSet<>(Arrays.asList(
+            "org.springframework.beans.factory.annotation.AutowiredAnnotationBeanPostProcessor",
+            "org.springframework.beans.factory.annotation.RequiredAnnotationBeanPostProcessor",
+            "org.springframework.context.annotation.CommonAnnotationBeanPostProcessor",
+            "org.springframework.context.annotation.ConfigurationClassPostProcessor$ImportAwareBeanPostProcessor"));
+
+    /**
+     * 原型bean名称 -> 预编译的创建方式，bean定义被重置或添加处理器时移除
+     */
+    private final Map<String, PrototypeInstantiator> prototypeInstantiators = new ConcurrentHashMap<>(64);
+
+    /**
+     * 原型bean第一次按Spring原来的方式创建，之后交给预编译的 {@link PrototypeInstantiator}
+     */
+    @Override
+    protected Object createBean(String beanName, RootBeanDefinition mbd, Object[] args) throws BeanCreationException {
+        if (args != null || !mbd.isPrototype()) {
+            return super.createBean(beanName, mbd, args);
+        }
+        PrototypeInstantiator instantiator = prototypeInstantiators.get(beanName);
+        if (instantiator == null) {
+            Object bean = super.createBean(beanName, mbd, args);
+            prototypeInstantiators.put(beanName, compileInstantiator(beanName, mbd));
+            return bean;
+        }
+        if (instantiator == PrototypeInstantiator.UNSUPPORTED) {
+            return super.createBean(beanName, mbd, args);
+        }
+        return createWithInstantiator(beanName, mbd, instantiator);
+    }
+
+    /**
+     * 只预编译Spring在创建时不需要额外判断的bean：无参构造函数或无参工厂方法、没有属性值和方法覆盖、
+     * 实例化前后只有Spring自带的处理器参与
+     */
+    private PrototypeInstantiator compileInstantiator(String beanName, RootBeanDefinition mbd) {
+        // 工厂方法的构造函数自动装配只影响参数解析，无参时与不装配相同；@Bean定义默认就是这种模式
+        int autowireMode = mbd.getResolvedAutowireMode();
+        if (mbd.isSynthetic() || !mbd.getMethodOverrides().isEmpty() || !mbd.getPropertyValues().isEmpty()
+                || mbd.hasConstructorArgumentValues() || autowireMode == AUTOWIRE_BY_NAME || autowireMode == AUTOWIRE_BY_TYPE
+                || !onlyKnownInstantiationAwareProcessors()) {
+            return PrototypeInstantiator.UNSUPPORTED;
+        }
+        try {
+            if (mbd.getFactoryMethodName() != null) {
+                Method factoryMethod = mbd.getResolvedFactoryMethod();
+                if (factoryMethod == null || factoryMethod.getParameterCount() > 0) {
+                    return PrototypeInstantiator.UNSUPPORTED;
+                }
+                return PrototypeInstantiator.forFactoryMethod(factoryMethod, mbd.getFactoryBeanName());
+            }
+            Class<?> beanClass = mbd.getBeanClass();
+            if (autowireMode == AUTOWIRE_CONSTRUCTOR || determineConstructorsFromBeanPostProcessors(beanClass, beanName) != null) {
+                return PrototypeInstantiator.UNSUPPORTED;
+            }
+            return PrototypeInstantiator.forConstructor(beanClass.getDeclaredConstructor());
+        } catch (NoSuchMethodException | IllegalAccessException | IllegalStateException ex) {
+            return PrototypeInstantiator.UNSUPPORTED;
+        }
+    }
+
+    /**
+     * 这些处理器在实例化之前都返回null、不会推断构造函数以外的东西，跳过它们不影响结果
+     */
+    private boolean onlyKnownInstantiationAwareProcessors() {
+        for (BeanPostProcessor processor : getBeanPostProcessors()) {
+            if (processor instanceof InstantiationAwareBeanPostProcessor
+                    && !(processor instanceof AbstractAutoProxyCreator)
+                    && !KNOWN_INSTANTIATION_AWARE_PROCESSORS.contains(processor.getClass().getName())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 与 {@code doCreateBean} 的顺序相同：实例化、属性填充(只有存在注入点时)、Aware、初始化前处理、init方法、初始化后处理
+     */
+    private Object createWithInstantiator(String beanName, RootBeanDefinition mbd, PrototypeInstantiator instantiator) {
+        Object bean;
+        try {
+            bean = instantiator.instantiate(this);
+        } catch (BeansException ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new BeanCreationException(mbd.getResourceDescription(), beanName, "Instantiation of bean failed", ex);
+        }
+        if (bean == null) {
+            return null;
+        }
+        try {
+            PrototypeInstantiator.InitSequence sequence = instantiator.initSequenceFor(bean.getClass(), mbd);
+            if (sequence == null || sequence.isPopulate()) {
+                BeanWrapper bw = new BeanWrapperImpl(bean);
+                initBeanWrapper(bw);
+                populateBean(beanName, mbd, bw);
+            }
+            if (sequence == null) {
+                return initializeBean(beanName, bean, mbd);
+            }
+            invokeAwareMethods(beanName, bean);
+            Object wrappedBean = applyBeanPostProcessorsBeforeInitialization(bean, beanName);
+            if (wrappedBean.getClass() == sequence.getBeanClass()) {
+                sequence.invokeInitMethods(wrappedBean);
+            } else {
+                invokeInitMethods(beanName, wrappedBean, mbd);
+            }
+            return applyBeanPostProcessorsAfterInitialization(wrappedBean, beanName);
+        } catch (BeanCreationException ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new BeanCreationException(mbd.getResourceDescription(), beanName, "Initialization of bean failed", ex);
+        }
+    }
+
+    /**
+     * 与父类私有的同名方法相同
+     */
+    private void invokeAwareMethods(String beanName, Object bean) {
+        if (bean instanceof Aware) {
+            if (bean instanceof BeanNameAware) {
+                ((BeanNameAware) bean).setBeanName(beanName);
+            }
+            if (bean instanceof BeanClassLoaderAware) {
+                ((BeanClassLoaderAware) bean).setBeanClassLoader(getBeanClassLoader());
+            }
+            if (bean instanceof BeanFactoryAware) {
+                ((BeanFactoryAware) bean).setBeanFactory(this);
+            }
+        }
+    }
+
+    @Override
+    public void addBeanPostProcessor(BeanPostProcessor beanPostProcessor) {
+        super.addBeanPostProcessor(beanPostProcessor);
+        prototypeInstantiators.clear();
+    }
+
+    @Override
+    protected void resetBeanDefinition(String beanName) {
+        super.resetBeanDefinition(beanName);
+        prototypeInstantiators.remove(beanName);
+    }
+}
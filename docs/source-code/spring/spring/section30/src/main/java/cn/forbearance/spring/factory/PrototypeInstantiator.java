@@ -0,0 +1,266 @@
+package cn.forbearance.spring.factory;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.beans.factory.support.SimpleInstantiationStrategy;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.util.StringUtils;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * 原型bean预先编译好的创建方式：构造函数通过 {@link LambdaMetafactory} 生成直接调用，
+ * 工厂方法和init方法通过 {@link MethodHandle} 调用，不再每次解析构造函数、反射调用和按名称查找init方法
+ * <p>
+ * 由 {@link PrototypeInstantiatingBeanFactory} 在第一次按Spring原来的方式创建bean之后生成
+ *
+ * @author cristina
+ */
+final class PrototypeInstantiator {
+
+    /**
+     * 不支持预编译的bean，始终按Spring原来的方式创建
+     */
+    static final PrototypeInstantiator UNSUPPORTED = new PrototypeInstantiator(null, null, null, null);
+
+    private static final String AFTER_PROPERTIES_SET = "afterPropertiesSet";
+
+    /**
+     * 会在属性填充阶段处理的注解，bean上没有这些注解时跳过populateBean
+     */
+    private static final List<String> INJECTION_ANNOTATIONS = Arrays.asList(
+            "org.springframework.beans.factory.annotation.Autowired",
+            "org.springframework.beans.factory.annotation.Value",
+            "org.springframework.beans.factory.annotation.Required",
+            "javax.inject.Inject",
+            "javax.annotation.Resource",
+            "javax.xml.ws.WebServiceRef",
+            "javax.ejb.EJB");
+
+    /**
+     * {@code @Configuration} 类被CGLIB增强后，只有当前正在调用的工厂方法才会执行方法体，其他调用会转成getBean
+     */
+    private static final ThreadLocal<Method> CURRENTLY_INVOKED_FACTORY_METHOD = currentlyInvokedFactoryMethod();
+
+    private final Supplier<?> constructor;
+
+    private final MethodHandle factoryMethodHandle;
+
+    private final Method factoryMethod;
+
+    private final String factoryBeanName;
+
+    private volatile InitSequence initSequence;
+
+    private PrototypeInstantiator(Supplier<?> constructor, MethodHandle factoryMethodHandle,
+                                  Method factoryMethod, String factoryBeanName) {
+        this.constructor = constructor;
+        this.factoryMethodHandle = factoryMethodHandle;
+        this.factoryMethod = factoryMethod;
+        this.factoryBeanName = factoryBeanName;
+    }
+
+    /**
+     * 通过无参构造函数创建的bean
+     */
+    static PrototypeInstantiator forConstructor(Constructor<?> constructor) throws IllegalAccessException {
+        return new PrototypeInstantiator(constructorSupplier(constructor), null, null, null);
+    }
+
+    /**
+     * 通过无参工厂方法创建的bean，包括 {@code @Bean} 方法
+     * @return 实例工厂方法所在的配置类被增强过而又无法设置当前调用的工厂方法时返回 {@link #UNSUPPORTED}
+     */
+    static PrototypeInstantiator forFactoryMethod(Method factoryMethod, String factoryBeanName) throws IllegalAccessException {
+        boolean isStatic = Modifier.isStatic(factoryMethod.getModifiers());
+        if (!isStatic && CURRENTLY_INVOKED_FACTORY_METHOD == null) {
+            return UNSUPPORTED;
+        }
+        ReflectionUtils.makeAccessible(factoryMethod);
+        MethodHandle handle = MethodHandles.lookup().unreflect(factoryMethod);
+        handle = isStatic ? handle.asType(MethodType.methodType(Object.class))
+                : handle.asType(MethodType.methodType(Object.class, Object.class));
+        return new PrototypeInstantiator(null, handle, factoryMethod, isStatic ? null : factoryBeanName);
+    }
+
+    Object instantiate(BeanFactory beanFactory) throws Throwable {
+        if (constructor != null) {
+            return constructor.get();
+        }
+        Object factoryBean = factoryBeanName != null ? beanFactory.getBean(factoryBeanName) : null;
+        Method prior = CURRENTLY_INVOKED_FACTORY_METHOD != null ? CURRENTLY_INVOKED_FACTORY_METHOD.get() : null;
+        if (CURRENTLY_INVOKED_FACTORY_METHOD != null) {
+            CURRENTLY_INVOKED_FACTORY_METHOD.set(factoryMethod);
+        }
+        try {
+            return factoryBean != null ? (Object) factoryMethodHandle.invokeExact(factoryBean)
+                    : (Object) factoryMethodHandle.invokeExact();
+        } finally {
+            if (CURRENTLY_INVOKED_FACTORY_METHOD != null) {
+                if (prior != null) {
+                    CURRENTLY_INVOKED_FACTORY_METHOD.set(prior);
+                } else {
+                    CURRENTLY_INVOKED_FACTORY_METHOD.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * 工厂方法每次返回的类型可能不同，只缓存最近一个类型的初始化步骤
+     * @return 无法预编译时返回null
+     */
+    InitSequence initSequenceFor(Class<?> beanClass, RootBeanDefinition mbd) throws IllegalAccessException {
+        InitSequence sequence = this.initSequence;
+        if (sequence == null || sequence.beanClass != beanClass) {
+            sequence = InitSequence.of(beanClass, mbd);
+            if (sequence == null) {
+                return null;
+            }
+            this.initSequence = sequence;
+        }
+        return sequence;
+    }
+
+    /**
+     * 某个bean类型的属性填充与初始化步骤
+     */
+    static final class InitSequence {
+
+        private final Class<?> beanClass;
+
+        private final boolean populate;
+
+        private final boolean initializingBean;
+
+        private final MethodHandle initMethod;
+
+        private InitSequence(Class<?> beanClass, boolean populate, boolean initializingBean, MethodHandle initMethod) {
+            this.beanClass = beanClass;
+            this.populate = populate;
+            this.initializingBean = initializingBean;
+            this.initMethod = initMethod;
+        }
+
+        /**
+         * 与 {@code AbstractAutowireCapableBeanFactory#invokeInitMethods} 的判断一致
+         */
+        static InitSequence of(Class<?> beanClass, RootBeanDefinition mbd) throws IllegalAccessException {
+            boolean initializingBean = InitializingBean.class.isAssignableFrom(beanClass)
+                    && !mbd.isExternallyManagedInitMethod(AFTER_PROPERTIES_SET);
+            MethodHandle initMethod = null;
+            String initMethodName = mbd.getInitMethodName();
+            if (StringUtils.hasLength(initMethodName) && !(initializingBean && AFTER_PROPERTIES_SET.equals(initMethodName))
+                    && !mbd.isExternallyManagedInitMethod(initMethodName)) {
+                Method method = mbd.isNonPublicAccessAllowed() ? BeanUtils.findMethod(beanClass, initMethodName)
+                        : ClassUtils.getMethodIfAvailable(beanClass, initMethodName);
+                if (method == null) {
+                    // 交给Spring按 enforceInitMethod 决定是否报错
+                    return null;
+                }
+                ReflectionUtils.makeAccessible(method);
+                initMethod = MethodHandles.lookup().unreflect(method).asType(MethodType.methodType(void.class, Object.class));
+            }
+            return new InitSequence(beanClass, hasInjectionPoints(beanClass), initializingBean, initMethod);
+        }
+
+        Class<?> getBeanClass() {
+            return beanClass;
+        }
+
+        boolean isPopulate() {
+            return populate;
+        }
+
+        void invokeInitMethods(Object bean) throws Throwable {
+            if (initializingBean) {
+                ((InitializingBean) bean).afterPropertiesSet();
+            }
+            if (initMethod != null) {
+                initMethod.invokeExact(bean);
+            }
+        }
+
+        private static boolean hasInjectionPoints(Class<?> beanClass) {
+            for (Class<?> type = beanClass; type != null && type != Object.class; type = type.getSuperclass()) {
+                for (Field field : type.getDeclaredFields()) {
+                    if (hasInjectionAnnotation(field)) {
+                        return true;
+                    }
+                }
+                for (Method method : type.getDeclaredMethods()) {
+                    if (hasInjectionAnnotation(method)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private static boolean hasInjectionAnnotation(AnnotatedElement element) {
+            if (element.getAnnotations().length == 0) {
+                return false;
+            }
+            for (String annotation : INJECTION_ANNOTATIONS) {
+                if (AnnotatedElementUtils.isAnnotated(element, annotation)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static Supplier<?> constructorSupplier(Constructor<?> constructor) throws IllegalAccessException {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        Class<?> beanClass = constructor.getDeclaringClass();
+        if (Modifier.isPublic(constructor.getModifiers()) && Modifier.isPublic(beanClass.getModifiers())
+                && ClassUtils.isVisible(beanClass, PrototypeInstantiator.class.getClassLoader())) {
+            try {
+                MethodHandle handle = lookup.unreflectConstructor(constructor);
+                CallSite site = LambdaMetafactory.metafactory(lookup, "get", MethodType.methodType(Supplier.class),
+                        MethodType.methodType(Object.class), handle, handle.type());
+                return (Supplier<?>) site.getTarget().invokeExact();
+            } catch (Throwable ex) {
+                // 生成失败时退回MethodHandle
+            }
+        }
+        ReflectionUtils.makeAccessible(constructor);
+        MethodHandle handle = lookup.unreflectConstructor(constructor).asType(MethodType.methodType(Object.class));
+        return () -> {
+            try {
+                return (Object) handle.invokeExact();
+            } catch (RuntimeException | Error ex) {
+                throw ex;
+            } catch (Throwable ex) {
+                throw new UndeclaredThrowableException(ex);
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ThreadLocal<Method> currentlyInvokedFactoryMethod() {
+        Field field = ReflectionUtils.findField(SimpleInstantiationStrategy.class, "currentlyInvokedFactoryMethod");
+        if (field == null) {
+            return null;
+        }
+        ReflectionUtils.makeAccessible(field);
+        return (ThreadLocal<Method>) ReflectionUtils.getField(field, null);
+    }
+}
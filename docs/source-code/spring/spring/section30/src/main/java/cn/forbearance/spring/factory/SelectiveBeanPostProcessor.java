@@ -0,0 +1,33 @@
+package cn.forbearance.spring.factory;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+/**
+ * 只关心部分bean类型的后置处理器
+ * <p>
+ * {@link ProcessorChainBeanFactory} 按bean的类型预先计算出需要调用的处理器，不感兴趣的处理器不会被调用
+ *
+ * @author cristina
+ */
+public interface SelectiveBeanPostProcessor extends BeanPostProcessor {
+
+    /**
+     * @param beanType bean的实际类型
+     * @return 是否需要处理该类型的bean，同一类型的结果会被缓存
+     */
+    boolean supportsBeanType(Class<?> beanType);
+
+    /**
+     * @return false表示 {@link #postProcessBeforeInitialization} 直接返回bean，不需要调用
+     */
+    default boolean requiresBeforeInitialization() {
+        return true;
+    }
+
+    /**
+     * @return false表示 {@link #postProcessAfterInitialization} 直接返回bean，不需要调用
+     */
+    default boolean requiresAfterInitialization() {
+        return true;
+    }
+}
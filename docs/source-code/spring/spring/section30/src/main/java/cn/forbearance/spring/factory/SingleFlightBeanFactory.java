@@ -0,0 +1,228 @@
+package cn.forbearance.spring.factory;
+
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.BeanCreationException;
+import org.springframework.beans.factory.BeanCurrentlyInCreationException;
+import org.springframework.beans.factory.FactoryBean;
+import org.springframework.beans.factory.FactoryBeanNotInitializedException;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 同一个FactoryBean同时只有一个线程调用getObject的BeanFactory，{@link CachingFactoryBean} 的产品按过期时间复用
+ * <p>
+ * 用法：{@code new AnnotationConfigApplicationContext(new SingleFlightBeanFactory())}
+ *
+ * @author cristina
+ */
+public class SingleFlightBeanFactory extends DefaultListableBeanFactory {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 父类的产品缓存，Spring版本不匹配时为null，单例FactoryBean按父类的方式创建
+     */
+    private static final Field FACTORY_BEAN_OBJECT_CACHE = field("factoryBeanObjectCache", Map.class);
+
+    static {
+        if (FACTORY_BEAN_OBJECT_CACHE == null) {
+            LogFactory.getLog(SingleFlightBeanFactory.class).warn("FactoryBeanRegistrySupport.factoryBeanObjectCache not found, singleton FactoryBean objects will be created under the singleton lock");
+        }
+    }
+
+    /**
+     * FactoryBean的名称 -> 正在调用getObject的线程
+     */
+    private final InFlightCreations objectCreations = new InFlightCreations();
+
+    /**
+     * {@link CachingFactoryBean} 的名称 -> 未过期的产品
+     */
+    private final Map<String, CachedObject> cachedFactoryBeanObjects = new ConcurrentHashMap<>(16);
+
+    /**
+     * 父类在单例锁内调用单例FactoryBean的getObject，一个慢的FactoryBean会阻塞所有bean的创建，多实例FactoryBean则每次都调用。
+     * 这里同一个FactoryBean同时只有一个线程调用getObject，其他线程等待它放入缓存：
+     * <ul>
+     *     <li>单例FactoryBean：在单例锁外创建，只在放入缓存时加锁</li>
+     *     <li>{@link CachingFactoryBean}：产品在过期前复用</li>
+     *     <li>当前线程持有单例锁、重入或等待会形成环时，按父类的方式创建，可能多调用一次getObject</li>
+     * </ul>
+     */
+    @Override
+    protected Object getObjectFromFactoryBean(FactoryBean<?> factory, String beanName, boolean shouldPostProcess) {
+        if (FACTORY_BEAN_OBJECT_CACHE != null && factory.isSingleton() && containsSingleton(beanName)) {
+            return getFactoryBeanObjectOnce(beanName, () -> factoryBeanObjectCache().get(beanName),
+                    () -> createSingletonFactoryBeanObject(factory, beanName, shouldPostProcess),
+                    () -> super.getObjectFromFactoryBean(factory, beanName, shouldPostProcess));
+        }
+        if (!factory.isSingleton() && factory instanceof CachingFactoryBean) {
+            long ttlMillis = ((CachingFactoryBean<?>) factory).getObjectTtlMillis();
+            if (ttlMillis > 0) {
+                return getFactoryBeanObjectOnce(beanName, () -> cachedFactoryBeanObject(beanName),
+                        () -> createCachedFactoryBeanObject(factory, beanName, shouldPostProcess, ttlMillis),
+                        () -> super.getObjectFromFactoryBean(factory, beanName, shouldPostProcess));
+            }
+        }
+        return super.getObjectFromFactoryBean(factory, beanName, shouldPostProcess);
+    }
+
+    /**
+     * @param lookup   读取缓存，没有缓存时返回null，缓存的null产品用 {@link #NULL_OBJECT} 表示
+     * @param creator  创建产品并放入缓存
+     * @param fallback 无法等待时的创建方式
+     */
+    private Object getFactoryBeanObjectOnce(String beanName, Supplier<Object> lookup, Supplier<Object> creator, Supplier<Object> fallback) {
+        while (true) {
+            Object object = lookup.get();
+            if (object != null) {
+                return object != NULL_OBJECT ? object : null;
+            }
+            InFlightCreations.Creation existing = objectCreations.start(beanName);
+            if (existing == null) {
+                break;
+            }
+            // 持有单例锁时不能等待，创建线程放入缓存需要这把锁
+            if (existing.isCurrentThread() || Thread.holdsLock(getSingletonMutex()) || !objectCreations.await(beanName, existing)) {
+                return fallback.get();
+            }
+            // 创建失败时缓存仍为空，由当前线程重新创建
+        }
+        try {
+            Object object = lookup.get();
+            if (object != null) {
+                return object != NULL_OBJECT ? object : null;
+            }
+            return creator.get();
+        } finally {
+            objectCreations.finish(beanName);
+        }
+    }
+
+    /**
+     * 与父类 {@code getObjectFromFactoryBean} 中单例的处理一致，只是getObject和后置处理不持有单例锁
+     */
+    private Object createSingletonFactoryBeanObject(FactoryBean<?> factory, String beanName, boolean shouldPostProcess) {
+        Object object = doGetObjectFromFactoryBean(factory, beanName);
+        if (object != null && shouldPostProcess) {
+            if (isSingletonCurrentlyInCreation(beanName)) {
+                // 循环引用中的FactoryBean，暂时返回未处理的产品，不放入缓存
+                return object;
+            }
+            object = postProcessFactoryBeanObject(object, beanName, true);
+        }
+        synchronized (getSingletonMutex()) {
+            Map<String, Object> cache = factoryBeanObjectCache();
+            Object alreadyThere = cache.get(beanName);
+            if (alreadyThere != null) {
+                return alreadyThere != NULL_OBJECT ? alreadyThere : null;
+            }
+            if (containsSingleton(beanName)) {
+                cache.put(beanName, object != null ? object : NULL_OBJECT);
+            }
+        }
+        return object;
+    }
+
+    private Object createCachedFactoryBeanObject(FactoryBean<?> factory, String beanName, boolean shouldPostProcess, long ttlMillis) {
+        Object object = doGetObjectFromFactoryBean(factory, beanName);
+        if (object != null && shouldPostProcess) {
+            object = postProcessFactoryBeanObject(object, beanName, false);
+        }
+        cachedFactoryBeanObjects.put(beanName, new CachedObject(object != null ? object : NULL_OBJECT,
+                System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttlMillis)));
+        return object;
+    }
+
+    private Object cachedFactoryBeanObject(String beanName) {
+        CachedObject cached = cachedFactoryBeanObjects.get(beanName);
+        if (cached == null) {
+            return null;
+        }
+        if (System.nanoTime() - cached.expiresAt >= 0) {
+            cachedFactoryBeanObjects.remove(beanName, cached);
+            return null;
+        }
+        return cached.object;
+    }
+
+    /**
+     * 与父类私有的 {@code doGetObjectFromFactoryBean} 一致
+     */
+    private Object doGetObjectFromFactoryBean(FactoryBean<?> factory, String beanName) {
+        Object object;
+        try {
+            object = factory.getObject();
+        } catch (FactoryBeanNotInitializedException ex) {
+            throw new BeanCurrentlyInCreationException(beanName, ex.toString());
+        } catch (Throwable ex) {
+            throw new BeanCreationException(beanName, "FactoryBean threw exception on object creation", ex);
+        }
+        if (object == null && isSingletonCurrentlyInCreation(beanName)) {
+            throw new BeanCurrentlyInCreationException(
+                    beanName, "FactoryBean which is currently in creation returned null from getObject");
+        }
+        return object;
+    }
+
+    private Object postProcessFactoryBeanObject(Object object, String beanName, boolean singleton) {
+        if (singleton) {
+            beforeSingletonCreation(beanName);
+        }
+        try {
+            return postProcessObjectFromFactoryBean(object, beanName);
+        } catch (Throwable ex) {
+            throw new BeanCreationException(beanName, singleton ? "Post-processing of FactoryBean's singleton object failed"
+                    : "Post-processing of FactoryBean's object failed", ex);
+        } finally {
+            if (singleton) {
+                afterSingletonCreation(beanName);
+            }
+        }
+    }
+
+    @Override
+    protected void resetBeanDefinition(String beanName) {
+        super.resetBeanDefinition(beanName);
+        cachedFactoryBeanObjects.remove(beanName);
+    }
+
+    @Override
+    public void destroySingletons() {
+        super.destroySingletons();
+        cachedFactoryBeanObjects.clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> factoryBeanObjectCache() {
+        return (Map<String, Object>) ReflectionUtils.getField(FACTORY_BEAN_OBJECT_CACHE, this);
+    }
+
+    private static Field field(String name, Class<?> type) {
+        Field field = ReflectionUtils.findField(DefaultListableBeanFactory.class, name, type);
+        if (field == null || Modifier.isStatic(field.getModifiers())) {
+            return null;
+        }
+        ReflectionUtils.makeAccessible(field);
+        return field;
+    }
+
+    private static class CachedObject {
+
+        private final Object object;
+
+        private final long expiresAt;
+
+        CachedObject(Object object, long expiresAt) {
+            this.object = object;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package cn.forbearance.spring.factory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 记录每个bean各个创建阶段的起止时间，交给 {@link StartupRecordingBeanFactory} 使用
+ * <p>
+ * 事件保存在按容量预先分配的数组中，记录时只有一次CAS和两次 {@link System#nanoTime()}，不创建对象；
+ * 容量用完后新的事件直接丢弃并计数，所以可以在生产环境常开。
+ * 导出需要在refresh完成之后进行：
+ * <ul>
+ *     <li>{@link #toFoldedStacks()}：火焰图工具(flamegraph.pl、speedscope)使用的折叠栈格式，数值为自身耗时(微秒)</li>
+ *     <li>{@link #toJson()}：Chrome Trace Event格式的时间线，可以直接在 chrome://tracing 或 Perfetto 中打开</li>
+ * </ul>
+ *
+ * @author cristina
+ */
+public class StartupRecorder {
+
+    public static final String CREATE = "createBean";
+
+    public static final String INSTANTIATE = "createBeanInstance";
+
+    public static final String POPULATE = "populateBean";
+
+    public static final String BEFORE_INITIALIZATION = "postProcessBeforeInitialization";
+
+    public static final String POST_CONSTRUCT = "@PostConstruct";
+
+    public static final String INIT_METHODS = "invokeInitMethods";
+
+    public static final String CUSTOM_INIT_METHOD = "invokeCustomInitMethod";
+
+    public static final String AFTER_INITIALIZATION = "postProcessAfterInitialization";
+
+    public static final String FACTORY_BEAN_OBJECT = "FactoryBean.getObject";
+
+    private static final int NO_EVENT = -1;
+
+    private final int capacity;
+
+    private final String[] beanNames;
+
+    private final String[] phases;
+
+    /**
+     * 阶段的补充说明，目前是后置处理器的类型，导出时才转成字符串
+     */
+    private final Class<?>[] details;
+
+    private final long[] starts;
+
+    private final long[] ends;
+
+    private final int[] parents;
+
+    private final long[] threadIds;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * 当前线程正在记录的事件，嵌套创建的bean以它为父事件
+     */
+    private final ThreadLocal<int[]> current = ThreadLocal.withInitial(() -> new int[]{NO_EVENT});
+
+    public StartupRecorder(int capacity) {
+        this.capacity = capacity;
+        this.beanNames = new String[capacity];
+        this.phases = new String[capacity];
+        this.details = new Class<?>[capacity];
+        this.starts = new long[capacity];
+        this.ends = new long[capacity];
+        this.parents = new int[capacity];
+        this.threadIds = new long[capacity];
+    }
+
+    /**
+     * @return 事件id，交给 {@link #end(int)}；容量用完时返回-1
+     */
+    public int begin(String beanName, String phase, Class<?> detail) {
+        int id;
+        do {
+            // 容量用完后不再自增，常开时计数器也不会溢出
+            id = next.get();
+            if (id >= capacity) {
+                dropped.incrementAndGet();
+                return NO_EVENT;
+            }
+        } while (!next.compareAndSet(id, id + 1));
+        int[] stack = current.get();
+        beanNames[id] = beanName;
+        phases[id] = phase;
+        details[id] = detail;
+        parents[id] = stack[0];
+        threadIds[id] = Thread.currentThread().getId();
+        stack[0] = id;
+        starts[id] = System.nanoTime();
+        return id;
+    }
+
+    public void end(int id) {
+        if (id == NO_EVENT) {
+            return;
+        }
+        ends[id] = System.nanoTime();
+        current.get()[0] = parents[id];
+    }
+
+    /**
+     * @return 已记录的事件数
+     */
+    public int size() {
+        return next.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * 每行一个调用栈，栈帧之间用 {@code ;} 分隔，最后是自身耗时(微秒)：
+     * {@code blue;populateBean;white;createBeanInstance 120}
+     */
+    public String toFoldedStacks() {
+        int size = size();
+        long[] selfTimes = new long[size];
+        for (int id = 0; id < size; id++) {
+            if (ends[id] != 0) {
+                selfTimes[id] += ends[id] - starts[id];
+                int parent = parents[id];
+                if (parent != NO_EVENT) {
+                    selfTimes[parent] -= ends[id] - starts[id];
+                }
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        List<String> frames = new ArrayList<>();
+        for (int id = 0; id < size; id++) {
+            if (ends[id] == 0) {
+                continue;
+            }
+            frames.clear();
+            int root = id;
+            for (int frame = id; frame != NO_EVENT; frame = parents[frame]) {
+                frames.add(frameOf(frame));
+                root = frame;
+            }
+            if (!CREATE.equals(phases[root])) {
+                // 不在bean创建过程中的阶段(比如refresh之后的getObject)，以bean名称作为根栈帧
+                frames.add(beanNames[root].replace(';', '_').replace(' ', '_'));
+            }
+            for (int i = frames.size() - 1; i >= 0; i--) {
+                sb.append(frames.get(i));
+                sb.append(i > 0 ? ';' : ' ');
+            }
+            sb.append(Math.max(selfTimes[id], 0) / 1000).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Chrome Trace Event格式，时间为相对第一个事件的微秒数
+     */
+    public String toJson() {
+        int size = size();
+        long origin = Long.MAX_VALUE;
+        for (int id = 0; id < size; id++) {
+            origin = Math.min(origin, starts[id]);
+        }
+        StringBuilder sb = new StringBuilder("{\"traceEvents\":[");
+        boolean first = true;
+        for (int id = 0; id < size; id++) {
+            if (ends[id] == 0) {
+                continue;
+            }
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            sb.append("{\"name\":\"").append(escape(labelOf(id)))
+                    .append("\",\"cat\":\"").append(escape(phases[id]))
+                    .append("\",\"ph\":\"X\",\"ts\":").append((starts[id] - origin) / 1000)
+                    .append(",\"dur\":").append((ends[id] - starts[id]) / 1000)
+                    .append(",\"pid\":1,\"tid\":").append(threadIds[id])
+                    .append(",\"args\":{\"bean\":\"").append(escape(beanNames[id])).append("\"}}");
+        }
+        sb.append("],\"otherData\":{\"dropped\":").append(dropped.get()).append("}}");
+        return sb.toString();
+    }
+
+    private String frameOf(int id) {
+        return labelOf(id).replace(';', '_').replace(' ', '_');
+    }
+
+    /**
+     * 整个bean的创建用bean名称表示，各阶段用阶段名
+     */
+    private String labelOf(int id) {
+        if (CREATE.equals(phases[id])) {
+            return beanNames[id];
+        }
+        return details[id] == null ? phases[id] : phases[id] + "(" + details[id].getSimpleName() + ")";
+    }
+
+    private static String escape(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
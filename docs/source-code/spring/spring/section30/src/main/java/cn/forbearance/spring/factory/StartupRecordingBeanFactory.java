@@ -0,0 +1,142 @@
+package cn.forbearance.spring.factory;
+
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanCreationException;
+import org.springframework.beans.factory.FactoryBean;
+import org.springframework.beans.factory.annotation.InitDestroyAnnotationBeanPostProcessor;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.util.Assert;
+
+/**
+ * 把每个bean各个创建阶段的耗时记录到 {@link StartupRecorder} 的BeanFactory
+ * <p>
+ * 用法：{@code new AnnotationConfigApplicationContext(new StartupRecordingBeanFactory(recorder))}
+ *
+ * @author cristina
+ */
+public class StartupRecordingBeanFactory extends DefaultListableBeanFactory {
+
+    private static final long serialVersionUID = 1L;
+
+    private final StartupRecorder startupRecorder;
+
+    public StartupRecordingBeanFactory(StartupRecorder startupRecorder) {
+        Assert.notNull(startupRecorder, "StartupRecorder must not be null");
+        this.startupRecorder = startupRecorder;
+    }
+
+    public StartupRecorder getStartupRecorder() {
+        return startupRecorder;
+    }
+
+    @Override
+    protected Object createBean(String beanName, RootBeanDefinition mbd, Object[] args) throws BeanCreationException {
+        int event = startupRecorder.begin(beanName, StartupRecorder.CREATE, null);
+        try {
+            return super.createBean(beanName, mbd, args);
+        } finally {
+            startupRecorder.end(event);
+        }
+    }
+
+    @Override
+    protected BeanWrapper createBeanInstance(String beanName, RootBeanDefinition mbd, Object[] args) {
+        int event = startupRecorder.begin(beanName, StartupRecorder.INSTANTIATE, null);
+        try {
+            return super.createBeanInstance(beanName, mbd, args);
+        } finally {
+            startupRecorder.end(event);
+        }
+    }
+
+    @Override
+    protected void populateBean(String beanName, RootBeanDefinition mbd, BeanWrapper bw) {
+        int event = startupRecorder.begin(beanName, StartupRecorder.POPULATE, null);
+        try {
+            super.populateBean(beanName, mbd, bw);
+        } finally {
+            startupRecorder.end(event);
+        }
+    }
+
+    /**
+     * 每个处理器单独计时，{@code @PostConstruct} 单独作为一个阶段
+     */
+    @Override
+    public Object applyBeanPostProcessorsBeforeInitialization(Object existingBean, String beanName) throws BeansException {
+        Object result = existingBean;
+        for (BeanPostProcessor processor : getBeanPostProcessors()) {
+            int event = processor instanceof InitDestroyAnnotationBeanPostProcessor
+                    ? startupRecorder.begin(beanName, StartupRecorder.POST_CONSTRUCT, null)
+                    : startupRecorder.begin(beanName, StartupRecorder.BEFORE_INITIALIZATION, processor.getClass());
+            try {
+                result = processor.postProcessBeforeInitialization(result, beanName);
+            } finally {
+                startupRecorder.end(event);
+            }
+            if (result == null) {
+                return null;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Object applyBeanPostProcessorsAfterInitialization(Object existingBean, String beanName) throws BeansException {
+        Object result = existingBean;
+        for (BeanPostProcessor processor : getBeanPostProcessors()) {
+            int event = startupRecorder.begin(beanName, StartupRecorder.AFTER_INITIALIZATION, processor.getClass());
+            try {
+                result = processor.postProcessAfterInitialization(result, beanName);
+            } finally {
+                startupRecorder.end(event);
+            }
+            if (result == null) {
+                return null;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 包含 {@code afterPropertiesSet} 和自定义的init方法，后者作为子阶段单独记录
+     */
+    @Override
+    protected void invokeInitMethods(String beanName, Object bean, RootBeanDefinition mbd) throws Throwable {
+        int event = startupRecorder.begin(beanName, StartupRecorder.INIT_METHODS, null);
+        try {
+            super.invokeInitMethods(beanName, bean, mbd);
+        } finally {
+            startupRecorder.end(event);
+        }
+    }
+
+    @Override
+    protected void invokeCustomInitMethod(String beanName, Object bean, RootBeanDefinition mbd) throws Throwable {
+        int event = startupRecorder.begin(beanName, StartupRecorder.CUSTOM_INIT_METHOD, null);
+        try {
+            super.invokeCustomInitMethod(beanName, bean, mbd);
+        } finally {
+            startupRecorder.end(event);
+        }
+    }
+
+    /**
+     * 单例FactoryBean的产品已经缓存时不记录
+     */
+    @Override
+    protected Object getObjectFromFactoryBean(FactoryBean<?> factory, String beanName, boolean shouldPostProcess) {
+        if (factory.isSingleton() && getCachedObjectForFactoryBean(beanName) != null) {
+            return super.getObjectFromFactoryBean(factory, beanName, shouldPostProcess);
+        }
+        int event = startupRecorder.begin(beanName, StartupRecorder.FACTORY_BEAN_OBJECT, null);
+        try {
+            return super.getObjectFromFactoryBean(factory, beanName, shouldPostProcess);
+        } finally {
+            startupRecorder.end(event);
+        }
+    }
+}
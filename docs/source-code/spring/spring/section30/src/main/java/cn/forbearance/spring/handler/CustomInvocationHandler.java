@@ -24,14 +24,30 @@ public class CustomInvocationHandler implements InvocationHandler {
      */
     @Override
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-        System.out.println("********** before **********");
+        before(method);
 
         // 执行目标对象的方法
-        Object result = method.invoke(target, args);
-        System.out.println("********** after **********");
+        Object result = invokeTarget(method, args);
+        after(method);
         return result;
     }
 
+    protected void before(Method method) {
+        System.out.println("********** before **********");
+    }
+
+    protected void after(Method method) {
+        System.out.println("********** after **********");
+    }
+
+    protected Object invokeTarget(Method method, Object[] args) throws Throwable {
+        return method.invoke(target, args);
+    }
+
+    protected Object getTarget() {
+        return target;
+    }
+
     /**
      * 获取目标对象的代理对象
      * @return 代理对象
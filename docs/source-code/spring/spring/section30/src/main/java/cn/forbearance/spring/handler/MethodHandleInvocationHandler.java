@@ -0,0 +1,282 @@
+package cn.forbearance.spring.handler;
+
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 为每个方法生成调用类的 {@link CustomInvocationHandler}
+ * <p>
+ * 每个接口方法第一次调用时通过 {@link LambdaMetafactory} 生成一个直接调用该方法的类并缓存，参数按个数直接传入，
+ * 不再经过 {@link Method#invoke} 的访问检查和参数数组。参数超过 {@value #MAX_DIRECT_ARGS} 个，或者方法涉及的类型
+ * 不是public、对本类的类加载器不可见时，退回到 {@link MethodHandle} 调用。目标方法抛出的异常原样抛出，
+ * 不包装为 {@link InvocationTargetException}。
+ * 代理类按目标类(即它实现的接口集合)缓存，用目标类的类加载器生成，创建代理时只调用缓存的构造器
+ *
+ * @author cristina
+ */
+public class MethodHandleInvocationHandler extends CustomInvocationHandler {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    /**
+     * 超过这个参数个数时把参数数组展开后调用
+     */
+    private static final int MAX_DIRECT_ARGS = 3;
+
+    /**
+     * 按 [是否void][参数个数] 生成调用类实现的接口
+     */
+    private static final Class<?>[][] CALL_TYPES = {
+            {Call0.class, Call1.class, Call2.class, Call3.class},
+            {VoidCall0.class, VoidCall1.class, VoidCall2.class, VoidCall3.class}};
+
+    private static final int VOID = MAX_DIRECT_ARGS + 1;
+
+    /**
+     * 没有生成调用类，通过 {@link MethodHandle} 调用
+     */
+    private static final int HANDLE = -1;
+
+    private static final ClassValue<Constructor<?>> PROXY_CONSTRUCTORS = new ClassValue<Constructor<?>>() {
+        @Override
+        protected Constructor<?> computeValue(Class<?> targetClass) {
+            Class<?> proxyClass = Proxy.getProxyClass(targetClass.getClassLoader(), targetClass.getInterfaces());
+            try {
+                // 非public接口的代理类也不是public的
+                Constructor<?> constructor = proxyClass.getConstructor(InvocationHandler.class);
+                ReflectionUtils.makeAccessible(constructor);
+                return constructor;
+            } catch (NoSuchMethodException ex) {
+                throw new IllegalStateException("代理类缺少构造器：" + proxyClass, ex);
+            }
+        }
+    };
+
+    private final Map<Method, ResolvedMethod> handles = new ConcurrentHashMap<>();
+
+    /**
+     * 最近一次调用的方法。代理类把 {@link Method} 保存在静态字段中，同一个方法连续调用时按引用比较即可命中，
+     * 不需要计算 {@link Method#equals}
+     */
+    private ResolvedMethod last;
+
+    public MethodHandleInvocationHandler(Object target) {
+        super(target);
+    }
+
+    @Override
+    protected Object invokeTarget(Method method, Object[] args) throws Throwable {
+        ResolvedMethod resolved = last;
+        if (resolved == null || resolved.method != method) {
+            resolved = handles.get(method);
+            if (resolved == null) {
+                resolved = handles.computeIfAbsent(method, this::resolve);
+            }
+            last = resolved;
+        }
+        Object target = getTarget();
+        Object call = resolved.call;
+        switch (resolved.kind) {
+            case 0:
+                return ((Call0) call).call(target);
+            case 1:
+                return ((Call1) call).call(target, args[0]);
+            case 2:
+                return ((Call2) call).call(target, args[0], args[1]);
+            case 3:
+                return ((Call3) call).call(target, args[0], args[1], args[2]);
+            case VOID:
+                ((VoidCall0) call).call(target);
+                return null;
+            case VOID + 1:
+                ((VoidCall1) call).call(target, args[0]);
+                return null;
+            case VOID + 2:
+                ((VoidCall2) call).call(target, args[0], args[1]);
+                return null;
+            case VOID + 3:
+                ((VoidCall3) call).call(target, args[0], args[1], args[2]);
+                return null;
+            default:
+                return invokeHandle(resolved, target, args);
+        }
+    }
+
+    private static Object invokeHandle(ResolvedMethod resolved, Object target, Object[] args) throws Throwable {
+        MethodHandle handle = resolved.handle;
+        switch (resolved.parameterCount) {
+            case 0:
+                return handle.invokeExact(target);
+            case 1:
+                return handle.invokeExact(target, args[0]);
+            case 2:
+                return handle.invokeExact(target, args[0], args[1]);
+            case 3:
+                return handle.invokeExact(target, args[0], args[1], args[2]);
+            default:
+                return handle.invokeExact(target, args);
+        }
+    }
+
+    private ResolvedMethod resolve(Method method) {
+        MethodHandle handle;
+        try {
+            try {
+                handle = LOOKUP.unreflect(method);
+            } catch (IllegalAccessException ex) {
+                // 非public的接口
+                method.setAccessible(true);
+                handle = LOOKUP.unreflect(method);
+            }
+        } catch (IllegalAccessException ex) {
+            throw new IllegalStateException("无法访问方法：" + method, ex);
+        }
+        int parameterCount = method.getParameterCount();
+        Object call = canGenerate(method) ? generate(method, handle) : null;
+        if (call != null) {
+            int kind = method.getReturnType() == void.class ? VOID + parameterCount : parameterCount;
+            return new ResolvedMethod(method, call, kind, null, parameterCount);
+        }
+        // 统一为 (Object, Object...)Object，void方法返回null
+        handle = handle.asType(MethodType.genericMethodType(parameterCount + 1));
+        if (parameterCount > MAX_DIRECT_ARGS) {
+            handle = handle.asSpreader(Object[].class, parameterCount);
+        }
+        return new ResolvedMethod(method, null, HANDLE, handle, parameterCount);
+    }
+
+    /**
+     * 生成的类与本类在同一个类加载器中，直接引用方法涉及的类型
+     */
+    private static boolean canGenerate(Method method) {
+        if (method.getParameterCount() > MAX_DIRECT_ARGS || !isAccessible(method.getDeclaringClass())
+                || !isAccessible(method.getReturnType())) {
+            return false;
+        }
+        for (Class<?> parameterType : method.getParameterTypes()) {
+            if (!isAccessible(parameterType)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isAccessible(Class<?> type) {
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        return type.isPrimitive() || (Modifier.isPublic(type.getModifiers())
+                && ClassUtils.isVisible(type, MethodHandleInvocationHandler.class.getClassLoader()));
+    }
+
+    /**
+     * @return 调用类的实例，生成失败时返回null
+     */
+    private static Object generate(Method method, MethodHandle handle) {
+        int parameterCount = method.getParameterCount();
+        boolean isVoid = method.getReturnType() == void.class;
+        Class<?> callType = CALL_TYPES[isVoid ? 1 : 0][parameterCount];
+        MethodType samType = MethodType.genericMethodType(parameterCount + 1);
+        // 基本类型由生成的类装箱、拆箱
+        MethodType instantiatedType = handle.type().wrap();
+        if (isVoid) {
+            samType = samType.changeReturnType(void.class);
+            instantiatedType = instantiatedType.changeReturnType(void.class);
+        }
+        try {
+            return LambdaMetafactory.metafactory(LOOKUP, "call", MethodType.methodType(callType),
+                    samType, handle, instantiatedType).getTarget().invoke();
+        } catch (Throwable ex) {
+            return null;
+        }
+    }
+
+    @Override
+    public Object getProxy() {
+        try {
+            return PROXY_CONSTRUCTORS.get(getTarget().getClass()).newInstance(this);
+        } catch (InstantiationException | IllegalAccessException | InvocationTargetException ex) {
+            throw new IllegalStateException("创建代理对象失败", ex);
+        }
+    }
+
+    /**
+     * 字段都是final，不加锁发布给其他线程也是安全的
+     */
+    private static final class ResolvedMethod {
+
+        private final Method method;
+
+        /**
+         * 生成的调用类实例，类型由 {@link #kind} 决定
+         */
+        private final Object call;
+
+        private final int kind;
+
+        private final MethodHandle handle;
+
+        private final int parameterCount;
+
+        private ResolvedMethod(Method method, Object call, int kind, MethodHandle handle, int parameterCount) {
+            this.method = method;
+            this.call = call;
+            this.kind = kind;
+            this.handle = handle;
+            this.parameterCount = parameterCount;
+        }
+    }
+
+    @FunctionalInterface
+    interface Call0 {
+        Object call(Object target) throws Throwable;
+    }
+
+    @FunctionalInterface
+    interface Call1 {
+        Object call(Object target, Object arg0) throws Throwable;
+    }
+
+    @FunctionalInterface
+    interface Call2 {
+        Object call(Object target, Object arg0, Object arg1) throws Throwable;
+    }
+
+    @FunctionalInterface
+    interface Call3 {
+        Object call(Object target, Object arg0, Object arg1, Object arg2) throws Throwable;
+    }
+
+    @FunctionalInterface
+    interface VoidCall0 {
+        void call(Object target) throws Throwable;
+    }
+
+    @FunctionalInterface
+    interface VoidCall1 {
+        void call(Object target, Object arg0) throws Throwable;
+    }
+
+    @FunctionalInterface
+    interface VoidCall2 {
+        void call(Object target, Object arg0, Object arg1) throws Throwable;
+    }
+
+    @FunctionalInterface
+    interface VoidCall3 {
+        void call(Object target, Object arg0, Object arg1, Object arg2) throws Throwable;
+    }
+}
@@ -0,0 +1,153 @@
+package cn.forbearance.spring.proxy;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.cglib.core.AbstractClassGenerator;
+import org.springframework.cglib.core.ClassGenerator;
+import org.springframework.cglib.core.DefaultGeneratorStrategy;
+import org.springframework.cglib.core.NamingPolicy;
+import org.springframework.cglib.core.Predicate;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ConcurrentReferenceHashMap;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Properties;
+import java.util.zip.CRC32;
+
+/**
+ * 优先使用构建期生成的CGLIB类
+ * <p>
+ * 同时作为命名策略和生成策略：类名由目标类和CGLIB的缓存key决定，构建期和运行时对同一个目标得到同一个类名；
+ * 生成时如果 {@link #INDEX_LOCATION} 索引中有这个类名且目标类没有变化，直接返回 {@link ProxyClassGenerator}
+ * 保存的字节码，否则交给CGLIB生成。代理类的 {@code MethodProxy} 沿用代理类的策略，调用父类方法时用到的FastClass也会优先使用构建期生成的
+ *
+ * @author cristina
+ */
+public class PregeneratedClassStrategy extends DefaultGeneratorStrategy implements NamingPolicy {
+
+    public static final PregeneratedClassStrategy INSTANCE = new PregeneratedClassStrategy();
+
+    /**
+     * key是生成的类名，value是 {@code 目标类:目标类指纹}
+     */
+    public static final String INDEX_LOCATION = "META-INF/pregenerated-classes.properties";
+
+    /**
+     * 字节码不放在类的标准路径下，避免被类加载器直接加载或被组件扫描读到
+     */
+    public static final String CLASS_LOCATION = "META-INF/pregenerated-classes/";
+
+    private static final String TAG = "ByPregeneratedCGLIB";
+
+    private static final Log logger = LogFactory.getLog(PregeneratedClassStrategy.class);
+
+    private static final Map<ClassLoader, Properties> INDEXES = new ConcurrentReferenceHashMap<>();
+
+    private static final ClassValue<String> FINGERPRINTS = new ClassValue<String>() {
+        @Override
+        protected String computeValue(Class<?> type) {
+            return fingerprint(type);
+        }
+    };
+
+    /**
+     * CGLIB先命名再生成，生成时需要知道类名
+     */
+    private final ThreadLocal<String> currentClassName = new ThreadLocal<>();
+
+    @Override
+    public String getClassName(String prefix, String source, Object key, Predicate names) {
+        if (prefix == null) {
+            prefix = "org.springframework.cglib.empty.Object";
+        } else if (prefix.startsWith("java")) {
+            prefix = "$" + prefix;
+        }
+        String base = prefix + "$$" + source.substring(source.lastIndexOf('.') + 1) + TAG + "$$"
+                + Integer.toHexString(key.hashCode());
+        String className = base;
+        for (int index = 2; names.evaluate(className); index++) {
+            className = base + "_" + index;
+        }
+        currentClassName.set(className);
+        return className;
+    }
+
+    @Override
+    public byte[] generate(ClassGenerator cg) throws Exception {
+        String className = currentClassName.get();
+        currentClassName.remove();
+        if (className != null && cg instanceof AbstractClassGenerator) {
+            byte[] bytes = findPregenerated(((AbstractClassGenerator) cg).getClassLoader(), className);
+            if (bytes != null) {
+                return bytes;
+            }
+        }
+        return super.generate(cg);
+    }
+
+    /**
+     * @return 没有可用的构建期字节码时返回null
+     */
+    protected byte[] findPregenerated(ClassLoader classLoader, String className) throws IOException {
+        Properties index = INDEXES.get(classLoader);
+        if (index == null) {
+            index = PropertiesLoaderUtils.loadAllProperties(INDEX_LOCATION, classLoader);
+            INDEXES.put(classLoader, index);
+        }
+        String entry = index.getProperty(className);
+        if (entry == null) {
+            return null;
+        }
+        int separator = entry.lastIndexOf(':');
+        String targetClassName = entry.substring(0, separator);
+        Class<?> targetClass;
+        try {
+            targetClass = ClassUtils.forName(targetClassName, classLoader);
+        } catch (ClassNotFoundException ex) {
+            return null;
+        }
+        if (!entry.substring(separator + 1).equals(FINGERPRINTS.get(targetClass))) {
+            logger.warn("Pregenerated class " + className + " is out of date with " + targetClassName + ", generating at runtime");
+            return null;
+        }
+        try (InputStream in = classLoader.getResourceAsStream(CLASS_LOCATION + className + ".class")) {
+            return in != null ? StreamUtils.copyToByteArray(in) : null;
+        }
+    }
+
+    /**
+     * @return 目标类及其父类(不含Object)字节码的CRC32，读取失败时返回空串
+     */
+    static String fingerprint(Class<?> targetClass) {
+        CRC32 crc = new CRC32();
+        for (Class<?> type = targetClass; type != null && type != Object.class; type = type.getSuperclass()) {
+            ClassLoader classLoader = type.getClassLoader();
+            if (classLoader == null) {
+                continue;
+            }
+            try (InputStream in = classLoader.getResourceAsStream(ClassUtils.convertClassNameToResourcePath(type.getName()) + ".class")) {
+                if (in == null) {
+                    return "";
+                }
+                crc.update(StreamUtils.copyToByteArray(in));
+            } catch (IOException ex) {
+                return "";
+            }
+        }
+        return Long.toHexString(crc.getValue());
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof PregeneratedClassStrategy;
+    }
+
+    @Override
+    public int hashCode() {
+        return TAG.hashCode();
+    }
+}
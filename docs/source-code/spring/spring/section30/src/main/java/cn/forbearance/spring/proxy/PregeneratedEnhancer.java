@@ -0,0 +1,23 @@
+package cn.forbearance.spring.proxy;
+
+import org.springframework.cglib.proxy.Enhancer;
+
+/**
+ * 优先使用构建期生成的代理类的 {@link Enhancer}，没有生成或已经过期时在运行时生成
+ * <p>
+ * 构建期按 {@code Enhancer#setCallbackType(MethodInterceptor.class)} 生成，使用方式与之一致时(单个
+ * {@link org.springframework.cglib.proxy.MethodInterceptor}、不设置CallbackFilter)才能命中
+ *
+ * @author cristina
+ */
+public class PregeneratedEnhancer extends Enhancer {
+
+    public PregeneratedEnhancer() {
+        this(PregeneratedClassStrategy.INSTANCE);
+    }
+
+    public PregeneratedEnhancer(PregeneratedClassStrategy strategy) {
+        setNamingPolicy(strategy);
+        setStrategy(strategy);
+    }
+}
@@ -0,0 +1,114 @@
+package cn.forbearance.spring.proxy;
+
+import org.springframework.cglib.proxy.Enhancer;
+import org.springframework.cglib.proxy.MethodInterceptor;
+import org.springframework.cglib.proxy.MethodProxy;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * 在构建期为目标类生成CGLIB代理类，运行时由 {@link PregeneratedEnhancer} 加载
+ * <p>
+ * 由pom中的exec-maven-plugin调用，除了代理类，还会生成调用父类方法用到的FastClass(代理类和被拦截方法的声明类)。每次生成都会覆盖之前的结果
+ *
+ * @author cristina
+ */
+public class ProxyClassGenerator {
+
+    /**
+     * @param args 第一个参数为输出目录，之后是需要生成代理的目标类
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            throw new IllegalArgumentException("用法: ProxyClassGenerator <输出目录> <目标类>...");
+        }
+        ClassLoader classLoader = ClassUtils.getDefaultClassLoader();
+        File classDirectory = new File(args[0], PregeneratedClassStrategy.CLASS_LOCATION);
+        FileSystemUtils.deleteRecursively(classDirectory);
+        Files.createDirectories(classDirectory.toPath());
+        Properties index = new Properties();
+        for (int i = 1; i < args.length; i++) {
+            Class<?> targetClass = ClassUtils.forName(args[i], classLoader);
+            String entry = targetClass.getName() + ":" + PregeneratedClassStrategy.fingerprint(targetClass);
+            for (Map.Entry<String, byte[]> generated : generate(targetClass).entrySet()) {
+                Files.write(new File(classDirectory, generated.getKey() + ".class").toPath(), generated.getValue());
+                index.setProperty(generated.getKey(), entry);
+            }
+        }
+        write(new File(args[0], PregeneratedClassStrategy.INDEX_LOCATION), index);
+    }
+
+    private static Map<String, byte[]> generate(Class<?> targetClass) throws IllegalAccessException {
+        RecordingStrategy strategy = new RecordingStrategy();
+        Enhancer enhancer = new PregeneratedEnhancer(strategy);
+        enhancer.setSuperclass(targetClass);
+        enhancer.setCallbackType(MethodInterceptor.class);
+        enhancer.setClassLoader(targetClass.getClassLoader());
+        Class<?> proxyClass = enhancer.createClass();
+        // 每个被拦截方法的声明类都需要FastClass，初始化所有MethodProxy触发生成
+        for (Field field : proxyClass.getDeclaredFields()) {
+            if (field.getType() == MethodProxy.class) {
+                ReflectionUtils.makeAccessible(field);
+                ((MethodProxy) field.get(null)).getSuperIndex();
+            }
+        }
+        return strategy.classes;
+    }
+
+    /**
+     * 按行排序且不带时间戳，目标类不变时生成的文件也不变
+     */
+    private static void write(File file, Properties index) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        index.store(buffer, null);
+        List<String> lines = new ArrayList<>();
+        for (String line : buffer.toString("ISO-8859-1").split("\\R")) {
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                lines.add(line);
+            }
+        }
+        Collections.sort(lines);
+        StringBuilder content = new StringBuilder("# generated by ").append(ProxyClassGenerator.class.getName()).append('\n');
+        for (String line : lines) {
+            content.append(line).append('\n');
+        }
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), content.toString().getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * 总是重新生成，并记录生成的字节码
+     */
+    private static class RecordingStrategy extends PregeneratedClassStrategy {
+
+        private final Map<String, byte[]> classes = new LinkedHashMap<>();
+
+        private String className;
+
+        @Override
+        protected byte[] findPregenerated(ClassLoader classLoader, String className) {
+            this.className = className;
+            return null;
+        }
+
+        @Override
+        protected byte[] transform(byte[] b) {
+            classes.put(className, b);
+            return b;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package cn.forbearance.spring.registry;
+
+import org.springframework.beans.factory.BeanDefinitionStoreException;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+
+import java.util.Map;
+
+/**
+ * 支持批量注册的BeanDefinition注册中心
+ *
+ * @author cristina
+ */
+public interface BatchBeanDefinitionRegistry extends BeanDefinitionRegistry {
+
+    /**
+     * 一次性注册多个BeanDefinition，语义与逐个调用 {@link #registerBeanDefinition} 相同，
+     * 但只加一次锁、只复制一次bean名称列表
+     * @param beanDefinitions bean名称 -> BeanDefinition，按迭代顺序注册
+     */
+    void registerBeanDefinitions(Map<String, ? extends BeanDefinition> beanDefinitions) throws BeanDefinitionStoreException;
+}
@@ -0,0 +1,142 @@
+package cn.forbearance.spring.registry;
+
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.BeanDefinitionStoreException;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.beans.factory.support.BeanDefinitionValidationException;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.util.Assert;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 支持批量注册的BeanFactory
+ * <p>
+ * {@link DefaultListableBeanFactory#registerBeanDefinition} 在bean开始创建之后，每注册一个bean都要加锁并复制一次
+ * bean名称列表，批量注册时这就是O(n²)。这里直接操作父类的注册表：
+ * 一次加锁、一次按最终大小复制名称列表、新bean通过putAll预先扩容，只有覆盖了已有定义的bean才需要重置合并后的定义。
+ * <p>
+ * 注册表的字段在类加载时按名称和类型逐个检查，任何一个与当前Spring版本不符都不会写入，
+ * 改为逐个调用 {@link #registerBeanDefinition}；bean还没有开始创建时父类本身就不复制，同样逐个注册。
+ * <p>
+ * 用法：{@code new AnnotationConfigApplicationContext(new BatchingListableBeanFactory())}
+ *
+ * @author cristina
+ */
+public class BatchingListableBeanFactory extends DefaultListableBeanFactory implements BatchBeanDefinitionRegistry {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Field BEAN_DEFINITION_MAP = field("beanDefinitionMap", Map.class);
+
+    private static final Field BEAN_DEFINITION_NAMES = field("beanDefinitionNames", List.class);
+
+    private static final Field MANUAL_SINGLETON_NAMES = field("manualSingletonNames", Set.class);
+
+    private static final Field FROZEN_BEAN_DEFINITION_NAMES = field("frozenBeanDefinitionNames", String[].class);
+
+    private static final boolean BULK_REGISTRATION_SUPPORTED = BEAN_DEFINITION_MAP != null && BEAN_DEFINITION_NAMES != null
+            && MANUAL_SINGLETON_NAMES != null && FROZEN_BEAN_DEFINITION_NAMES != null;
+
+    static {
+        if (!BULK_REGISTRATION_SUPPORTED) {
+            LogFactory.getLog(BatchingListableBeanFactory.class).warn("DefaultListableBeanFactory registry fields do not match, bean definitions will be registered one by one");
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void registerBeanDefinitions(Map<String, ? extends BeanDefinition> beanDefinitions) throws BeanDefinitionStoreException {
+        if (beanDefinitions.isEmpty()) {
+            return;
+        }
+        if (!BULK_REGISTRATION_SUPPORTED || !hasBeanCreationStarted()) {
+            for (Map.Entry<String, ? extends BeanDefinition> entry : beanDefinitions.entrySet()) {
+                registerBeanDefinition(entry.getKey(), entry.getValue());
+            }
+            return;
+        }
+        Map<String, BeanDefinition> beanDefinitionMap = (Map<String, BeanDefinition>) ReflectionUtils.getField(BEAN_DEFINITION_MAP, this);
+
+        // 先全部校验，校验失败时注册表保持不变
+        for (Map.Entry<String, ? extends BeanDefinition> entry : beanDefinitions.entrySet()) {
+            String beanName = entry.getKey();
+            BeanDefinition beanDefinition = entry.getValue();
+            Assert.hasText(beanName, "Bean name must not be empty");
+            Assert.notNull(beanDefinition, "BeanDefinition must not be null");
+            if (beanDefinition instanceof AbstractBeanDefinition) {
+                try {
+                    ((AbstractBeanDefinition) beanDefinition).validate();
+                } catch (BeanDefinitionValidationException ex) {
+                    throw new BeanDefinitionStoreException(beanDefinition.getResourceDescription(), beanName,
+                            "Validation of bean definition failed", ex);
+                }
+            }
+            BeanDefinition oldBeanDefinition = beanDefinitionMap.get(beanName);
+            if (oldBeanDefinition != null && !isAllowBeanDefinitionOverriding()) {
+                throw new BeanDefinitionStoreException(beanDefinition.getResourceDescription(), beanName,
+                        "Cannot register bean definition [" + beanDefinition + "] for bean '" + beanName +
+                                "': There is already [" + oldBeanDefinition + "] bound.");
+            }
+        }
+
+        List<String> toReset = new ArrayList<>();
+        synchronized (beanDefinitionMap) {
+            List<String> beanDefinitionNames = (List<String>) ReflectionUtils.getField(BEAN_DEFINITION_NAMES, this);
+            List<String> updatedNames = new ArrayList<>(beanDefinitionNames.size() + beanDefinitions.size());
+            updatedNames.addAll(beanDefinitionNames);
+
+            Map<String, BeanDefinition> newDefinitions = new LinkedHashMap<>((int) (beanDefinitions.size() / 0.75f) + 1);
+            for (Map.Entry<String, ? extends BeanDefinition> entry : beanDefinitions.entrySet()) {
+                String beanName = entry.getKey();
+                if (beanDefinitionMap.containsKey(beanName)) {
+                    beanDefinitionMap.put(beanName, entry.getValue());
+                    toReset.add(beanName);
+                } else {
+                    newDefinitions.put(beanName, entry.getValue());
+                    updatedNames.add(beanName);
+                    if (containsSingleton(beanName)) {
+                        toReset.add(beanName);
+                    }
+                }
+            }
+            // ConcurrentHashMap.putAll会按新增数量预先扩容
+            beanDefinitionMap.putAll(newDefinitions);
+            ReflectionUtils.setField(BEAN_DEFINITION_NAMES, this, updatedNames);
+
+            Set<String> manualSingletonNames = (Set<String>) ReflectionUtils.getField(MANUAL_SINGLETON_NAMES, this);
+            if (!manualSingletonNames.isEmpty()) {
+                Set<String> updatedSingletons = new LinkedHashSet<>(manualSingletonNames);
+                if (updatedSingletons.removeAll(newDefinitions.keySet())) {
+                    ReflectionUtils.setField(MANUAL_SINGLETON_NAMES, this, updatedSingletons);
+                }
+            }
+            ReflectionUtils.setField(FROZEN_BEAN_DEFINITION_NAMES, this, null);
+        }
+
+        for (String beanName : toReset) {
+            resetBeanDefinition(beanName);
+        }
+    }
+
+    /**
+     * @return 名称或类型不符时返回null
+     */
+    private static Field field(String name, Class<?> type) {
+        Field field = ReflectionUtils.findField(DefaultListableBeanFactory.class, name, type);
+        if (field == null || Modifier.isStatic(field.getModifiers())) {
+            return null;
+        }
+        ReflectionUtils.makeAccessible(field);
+        return field;
+    }
+}
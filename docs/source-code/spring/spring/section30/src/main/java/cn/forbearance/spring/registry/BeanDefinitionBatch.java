@@ -0,0 +1,56 @@
+package cn.forbearance.spring.registry;
+
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.util.Assert;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 供 {@code ImportBeanDefinitionRegistrar} 使用的批量注册工具
+ * <p>
+ * 先收集BeanDefinition，最后一次性注册。注册中心实现了 {@link BatchBeanDefinitionRegistry} 时走批量注册，
+ * 否则退化为逐个注册
+ *
+ * @author cristina
+ */
+public class BeanDefinitionBatch {
+
+    private final Map<String, BeanDefinition> beanDefinitions;
+
+    /**
+     * @param expectedSize 预计注册的数量，用于预分配容量
+     */
+    public BeanDefinitionBatch(int expectedSize) {
+        this.beanDefinitions = new LinkedHashMap<>((int) (expectedSize / 0.75f) + 1);
+    }
+
+    public BeanDefinitionBatch add(String beanName, BeanDefinition beanDefinition) {
+        Assert.hasText(beanName, "Bean name must not be empty");
+        Assert.notNull(beanDefinition, "BeanDefinition must not be null");
+        beanDefinitions.put(beanName, beanDefinition);
+        return this;
+    }
+
+    public boolean contains(String beanName) {
+        return beanDefinitions.containsKey(beanName);
+    }
+
+    public int size() {
+        return beanDefinitions.size();
+    }
+
+    public void registerTo(BeanDefinitionRegistry registry) {
+        if (beanDefinitions.isEmpty()) {
+            return;
+        }
+        if (registry instanceof BatchBeanDefinitionRegistry) {
+            ((BatchBeanDefinitionRegistry) registry).registerBeanDefinitions(beanDefinitions);
+            return;
+        }
+        for (Map.Entry<String, BeanDefinition> entry : beanDefinitions.entrySet()) {
+            registry.registerBeanDefinition(entry.getKey(), entry.getValue());
+        }
+    }
+}
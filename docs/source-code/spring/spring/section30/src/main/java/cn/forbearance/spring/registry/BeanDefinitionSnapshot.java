@@ -0,0 +1,571 @@
+package cn.forbearance.spring.registry;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.MutablePropertyValues;
+import org.springframework.beans.PropertyValue;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.config.ConstructorArgumentValues;
+import org.springframework.beans.factory.config.RuntimeBeanReference;
+import org.springframework.beans.factory.config.TypedStringValue;
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.BeanDefinitionRegistryPostProcessor;
+import org.springframework.beans.factory.support.GenericBeanDefinition;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.ImportAware;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.context.annotation.PropertySources;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.env.CompositePropertySource;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.UrlResource;
+import org.springframework.core.io.support.DefaultPropertySourceFactory;
+import org.springframework.core.io.support.EncodedResource;
+import org.springframework.core.io.support.PropertySourceFactory;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.StringUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 按profile保存解析完配置类后的BeanDefinition，下次启动时直接注册，跳过配置类的解析
+ * <p>
+ * 快照在配置类解析之后、CGLIB增强之前生成，保留了配置类上 full/lite 的标记，
+ * 所以 {@code ConfigurationClassPostProcessor} 启动时会把它们当作已经解析过的配置类，只做增强。
+ * 快照按 激活的profile、默认profile、配置类 区分，任一bean类的class文件变化时失效。注意：
+ * <ul>
+ *     <li>{@code @Conditional} 的结果固化在快照中，条件依赖profile以外的环境时需要删除快照</li>
+ *     <li>{@code @PropertySource} 不进快照，启动时根据配置类上的注解重新加载</li>
+ *     <li>只参与解析的类(ImportSelector、ImportBeanDefinitionRegistrar等)变化时需要删除快照</li>
+ *     <li>含有ImportAware bean、限定符、方法覆盖、装饰定义或复杂属性值时不生成快照</li>
+ * </ul>
+ *
+ * @author cristina
+ */
+public final class BeanDefinitionSnapshot {
+
+    private static final Log logger = LogFactory.getLog(BeanDefinitionSnapshot.class);
+
+    static final String SNAPSHOT_SUFFIX = ".snapshot";
+
+    /**
+     * 与 {@code ConfigurationClassUtils} 中的常量一致
+     */
+    private static final String CONFIGURATION_CLASS_ATTRIBUTE =
+            "org.springframework.context.annotation.ConfigurationClassPostProcessor.configurationClass";
+
+    private static final int MAGIC = 0x42445353;
+
+    private static final int VERSION = 1;
+
+    private static final byte NULL = 0;
+
+    private static final byte STRING = 1;
+
+    private static final byte INTEGER = 2;
+
+    private static final byte LONG = 3;
+
+    private static final byte BOOLEAN = 4;
+
+    private static final byte TYPED_STRING = 5;
+
+    private static final byte BEAN_REFERENCE = 6;
+
+    private static final byte CLASS = 7;
+
+    private static final PropertySourceFactory DEFAULT_PROPERTY_SOURCE_FACTORY = new DefaultPropertySourceFactory();
+
+    private BeanDefinitionSnapshot() {
+    }
+
+    /**
+     * 代替 {@link AnnotationConfigApplicationContext#register}，需要在设置好profile之后、refresh之前调用。
+     * 快照有效时注册快照中的BeanDefinition，否则注册配置类，并在refresh时生成快照
+     *
+     * @param directory 快照所在目录
+     * @return 是否使用了快照
+     */
+    public static boolean register(AnnotationConfigApplicationContext context, File directory, Class<?>... annotatedClasses) {
+        Assert.notEmpty(annotatedClasses, "At least one annotated class must be specified");
+        String key = key(context.getEnvironment(), annotatedClasses);
+        File file = new File(directory, DigestUtils.md5DigestAsHex(key.getBytes(StandardCharsets.UTF_8)) + SNAPSHOT_SUFFIX);
+        if (file.isFile()) {
+            try {
+                Snapshot snapshot = read(file, key, context.getClassLoader());
+                if (snapshot != null) {
+                    snapshot.restore(context);
+                    return true;
+                }
+            } catch (IOException | RuntimeException ex) {
+                logger.warn("Ignoring unreadable bean definition snapshot " + file, ex);
+            }
+        }
+        Set<String> infrastructure = new HashSet<>(Arrays.asList(context.getBeanDefinitionNames()));
+        context.register(annotatedClasses);
+        context.addBeanFactoryPostProcessor(new SnapshotWriter(file, key, infrastructure));
+        return false;
+    }
+
+    private static String key(ConfigurableEnvironment environment, Class<?>[] annotatedClasses) {
+        StringBuilder key = new StringBuilder();
+        key.append(new TreeSet<>(Arrays.asList(environment.getActiveProfiles())));
+        key.append(new TreeSet<>(Arrays.asList(environment.getDefaultProfiles())));
+        for (Class<?> annotatedClass : annotatedClasses) {
+            key.append(annotatedClass.getName()).append(';');
+        }
+        return key.toString();
+    }
+
+    private static long lastModified(String className, ClassLoader classLoader) {
+        URL url = classLoader.getResource(ClassUtils.convertClassNameToResourcePath(className) + ClassUtils.CLASS_FILE_SUFFIX);
+        if (url == null) {
+            return -1;
+        }
+        try {
+            return new UrlResource(url).lastModified();
+        } catch (IOException ex) {
+            return -1;
+        }
+    }
+
+    private static Snapshot read(File file, String key, ClassLoader classLoader) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !key.equals(in.readUTF())) {
+                return null;
+            }
+            int classCount = in.readInt();
+            for (int i = 0; i < classCount; i++) {
+                if (lastModified(in.readUTF(), classLoader) != in.readLong()) {
+                    return null;
+                }
+            }
+            int count = in.readInt();
+            Snapshot snapshot = new Snapshot(count);
+            for (int i = 0; i < count; i++) {
+                String beanName = in.readUTF();
+                snapshot.beanDefinitions.put(beanName, readBeanDefinition(in));
+                String[] aliases = new String[in.readInt()];
+                for (int j = 0; j < aliases.length; j++) {
+                    aliases[j] = in.readUTF();
+                }
+                snapshot.aliases.put(beanName, aliases);
+            }
+            return snapshot;
+        }
+    }
+
+    private static AbstractBeanDefinition readBeanDefinition(DataInputStream in) throws IOException {
+        GenericBeanDefinition bd = new GenericBeanDefinition();
+        bd.setParentName(readString(in));
+        bd.setBeanClassName(readString(in));
+        bd.setScope(readString(in));
+        bd.setAbstract(in.readBoolean());
+        bd.setLazyInit(in.readBoolean());
+        bd.setAutowireMode(in.readInt());
+        bd.setDependencyCheck(in.readInt());
+        int dependsOn = in.readInt();
+        if (dependsOn >= 0) {
+            String[] names = new String[dependsOn];
+            for (int i = 0; i < dependsOn; i++) {
+                names[i] = in.readUTF();
+            }
+            bd.setDependsOn(names);
+        }
+        bd.setAutowireCandidate(in.readBoolean());
+        bd.setPrimary(in.readBoolean());
+        bd.setNonPublicAccessAllowed(in.readBoolean());
+        bd.setLenientConstructorResolution(in.readBoolean());
+        bd.setFactoryBeanName(readString(in));
+        bd.setFactoryMethodName(readString(in));
+        bd.setInitMethodName(readString(in));
+        bd.setEnforceInitMethod(in.readBoolean());
+        bd.setDestroyMethodName(readString(in));
+        bd.setEnforceDestroyMethod(in.readBoolean());
+        bd.setSynthetic(in.readBoolean());
+        bd.setRole(in.readInt());
+        bd.setDescription(readString(in));
+        bd.setResourceDescription(readString(in));
+
+        ConstructorArgumentValues args = bd.getConstructorArgumentValues();
+        int indexed = in.readInt();
+        for (int i = 0; i < indexed; i++) {
+            args.addIndexedArgumentValue(in.readInt(), readValueHolder(in));
+        }
+        int generic = in.readInt();
+        for (int i = 0; i < generic; i++) {
+            args.addGenericArgumentValue(readValueHolder(in));
+        }
+        MutablePropertyValues propertyValues = bd.getPropertyValues();
+        int properties = in.readInt();
+        for (int i = 0; i < properties; i++) {
+            propertyValues.add(in.readUTF(), readValue(in));
+        }
+        int attributes = in.readInt();
+        for (int i = 0; i < attributes; i++) {
+            bd.setAttribute(in.readUTF(), readValue(in));
+        }
+        return bd;
+    }
+
+    private static ConstructorArgumentValues.ValueHolder readValueHolder(DataInputStream in) throws IOException {
+        Object value = readValue(in);
+        return new ConstructorArgumentValues.ValueHolder(value, readString(in), readString(in));
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return in.readUTF();
+            case INTEGER:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case BOOLEAN:
+                return in.readBoolean();
+            case TYPED_STRING:
+                String value = readString(in);
+                String targetTypeName = readString(in);
+                TypedStringValue typedValue = new TypedStringValue(value);
+                typedValue.setTargetTypeName(targetTypeName);
+                return typedValue;
+            case BEAN_REFERENCE:
+                return new RuntimeBeanReference(in.readUTF(), in.readBoolean());
+            case CLASS:
+                return in.readUTF();
+            default:
+                throw new IOException("Unknown value tag " + tag);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeBeanDefinition(DataOutputStream out, AbstractBeanDefinition bd) throws IOException {
+        writeString(out, bd.getParentName());
+        writeString(out, bd.getBeanClassName());
+        writeString(out, bd.getScope());
+        out.writeBoolean(bd.isAbstract());
+        out.writeBoolean(bd.isLazyInit());
+        out.writeInt(bd.getAutowireMode());
+        out.writeInt(bd.getDependencyCheck());
+        String[] dependsOn = bd.getDependsOn();
+        out.writeInt(dependsOn != null ? dependsOn.length : -1);
+        if (dependsOn != null) {
+            for (String name : dependsOn) {
+                out.writeUTF(name);
+            }
+        }
+        out.writeBoolean(bd.isAutowireCandidate());
+        out.writeBoolean(bd.isPrimary());
+        out.writeBoolean(bd.isNonPublicAccessAllowed());
+        out.writeBoolean(bd.isLenientConstructorResolution());
+        writeString(out, bd.getFactoryBeanName());
+        writeString(out, bd.getFactoryMethodName());
+        writeString(out, bd.getInitMethodName());
+        out.writeBoolean(bd.isEnforceInitMethod());
+        writeString(out, bd.getDestroyMethodName());
+        out.writeBoolean(bd.isEnforceDestroyMethod());
+        out.writeBoolean(bd.isSynthetic());
+        out.writeInt(bd.getRole());
+        writeString(out, bd.getDescription());
+        writeString(out, bd.getResourceDescription());
+
+        ConstructorArgumentValues args = bd.getConstructorArgumentValues();
+        out.writeInt(args.getIndexedArgumentValues().size());
+        for (Map.Entry<Integer, ConstructorArgumentValues.ValueHolder> entry : args.getIndexedArgumentValues().entrySet()) {
+            out.writeInt(entry.getKey());
+            writeValueHolder(out, entry.getValue());
+        }
+        out.writeInt(args.getGenericArgumentValues().size());
+        for (ConstructorArgumentValues.ValueHolder holder : args.getGenericArgumentValues()) {
+            writeValueHolder(out, holder);
+        }
+        PropertyValue[] propertyValues = bd.getPropertyValues().getPropertyValues();
+        out.writeInt(propertyValues.length);
+        for (PropertyValue pv : propertyValues) {
+            out.writeUTF(pv.getName());
+            writeValue(out, pv.getValue());
+        }
+        // 其他类型的属性只是元数据，丢弃不影响创建
+        List<String> attributes = new ArrayList<>();
+        for (String name : bd.attributeNames()) {
+            if (isSimple(bd.getAttribute(name))) {
+                attributes.add(name);
+            }
+        }
+        out.writeInt(attributes.size());
+        for (String name : attributes) {
+            out.writeUTF(name);
+            writeValue(out, bd.getAttribute(name));
+        }
+    }
+
+    private static boolean isSimple(Object value) {
+        return value instanceof String || value instanceof Integer || value instanceof Long || value instanceof Boolean;
+    }
+
+    private static void writeValueHolder(DataOutputStream out, ConstructorArgumentValues.ValueHolder holder) throws IOException {
+        writeValue(out, holder.getValue());
+        writeString(out, holder.getType());
+        writeString(out, holder.getName());
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            out.writeUTF((String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof TypedStringValue) {
+            TypedStringValue typedValue = (TypedStringValue) value;
+            out.writeByte(TYPED_STRING);
+            writeString(out, typedValue.getValue());
+            writeString(out, typedValue.getTargetTypeName());
+        } else if (value instanceof RuntimeBeanReference) {
+            out.writeByte(BEAN_REFERENCE);
+            out.writeUTF(((RuntimeBeanReference) value).getBeanName());
+            out.writeBoolean(((RuntimeBeanReference) value).isToParent());
+        } else if (value instanceof Class) {
+            // 类名由BeanWrapper转换回Class
+            out.writeByte(CLASS);
+            out.writeUTF(((Class<?>) value).getName());
+        } else {
+            throw new IllegalStateException("快照不支持的属性值类型：" + value.getClass().getName());
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    /**
+     * 从快照读取的BeanDefinition
+     */
+    private static final class Snapshot {
+
+        private final Map<String, AbstractBeanDefinition> beanDefinitions;
+
+        private final Map<String, String[]> aliases;
+
+        private Snapshot(int count) {
+            this.beanDefinitions = new LinkedHashMap<>((int) (count / 0.75f) + 1);
+            this.aliases = new LinkedHashMap<>((int) (count / 0.75f) + 1);
+        }
+
+        private void restore(AnnotationConfigApplicationContext context) throws IOException {
+            ConfigurableListableBeanFactory beanFactory = context.getBeanFactory();
+            BeanDefinitionBatch batch = new BeanDefinitionBatch(beanDefinitions.size());
+            for (Map.Entry<String, AbstractBeanDefinition> entry : beanDefinitions.entrySet()) {
+                batch.add(entry.getKey(), entry.getValue());
+            }
+            batch.registerTo(context.getDefaultListableBeanFactory());
+            for (Map.Entry<String, String[]> entry : aliases.entrySet()) {
+                for (String alias : entry.getValue()) {
+                    context.registerAlias(entry.getKey(), alias);
+                }
+            }
+            List<String> propertySourceNames = new ArrayList<>();
+            for (AbstractBeanDefinition bd : beanDefinitions.values()) {
+                if (bd.getAttribute(CONFIGURATION_CLASS_ATTRIBUTE) != null && bd.getBeanClassName() != null) {
+                    Class<?> configClass = ClassUtils.resolveClassName(bd.getBeanClassName(), beanFactory.getBeanClassLoader());
+                    for (PropertySource propertySource : AnnotatedElementUtils.getMergedRepeatableAnnotations(
+                            configClass, PropertySource.class, PropertySources.class)) {
+                        addPropertySources(context, propertySource, propertySourceNames);
+                    }
+                }
+            }
+        }
+
+        /**
+         * 与 {@code ConfigurationClassParser} 的处理一致：后声明的优先，同名的合并
+         */
+        private static void addPropertySources(AnnotationConfigApplicationContext context, PropertySource propertySource,
+                                               List<String> propertySourceNames) throws IOException {
+            String name = StringUtils.hasLength(propertySource.name()) ? propertySource.name() : null;
+            String encoding = StringUtils.hasLength(propertySource.encoding()) ? propertySource.encoding() : null;
+            PropertySourceFactory factory = propertySource.factory() == PropertySourceFactory.class ?
+                    DEFAULT_PROPERTY_SOURCE_FACTORY : BeanUtils.instantiateClass(propertySource.factory());
+            ConfigurableEnvironment environment = context.getEnvironment();
+            MutablePropertySources propertySources = environment.getPropertySources();
+            for (String location : propertySource.value()) {
+                org.springframework.core.env.PropertySource<?> source;
+                try {
+                    Resource resource = context.getResource(environment.resolveRequiredPlaceholders(location));
+                    source = factory.createPropertySource(name, new EncodedResource(resource, encoding));
+                } catch (IllegalArgumentException | FileNotFoundException ex) {
+                    if (propertySource.ignoreResourceNotFound()) {
+                        continue;
+                    }
+                    throw ex;
+                }
+                String sourceName = source.getName();
+                if (propertySourceNames.contains(sourceName)) {
+                    CompositePropertySource composite = new CompositePropertySource(sourceName);
+                    composite.addPropertySource(source);
+                    composite.addPropertySource(propertySources.get(sourceName));
+                    propertySources.replace(sourceName, composite);
+                } else if (propertySourceNames.isEmpty()) {
+                    propertySources.addLast(source);
+                    propertySourceNames.add(sourceName);
+                } else {
+                    propertySources.addBefore(propertySourceNames.get(propertySourceNames.size() - 1), source);
+                    propertySourceNames.add(sourceName);
+                }
+            }
+        }
+    }
+
+    /**
+     * 在所有BeanDefinitionRegistryPostProcessor之后、配置类增强之前保存快照
+     * <p>
+     * 通过 {@code addBeanFactoryPostProcessor} 添加的处理器，postProcessBeanFactory 先于注册为bean的处理器执行
+     */
+    private static final class SnapshotWriter implements BeanDefinitionRegistryPostProcessor {
+
+        private final File file;
+
+        private final String key;
+
+        private final Set<String> infrastructure;
+
+        private SnapshotWriter(File file, String key, Set<String> infrastructure) {
+            this.file = file;
+            this.key = key;
+            this.infrastructure = infrastructure;
+        }
+
+        @Override
+        public void postProcessBeanDefinitionRegistry(BeanDefinitionRegistry registry) throws BeansException {
+        }
+
+        @Override
+        public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) throws BeansException {
+            byte[] content;
+            try {
+                content = serialize(beanFactory);
+            } catch (IllegalStateException ex) {
+                logger.info("Bean definition snapshot not written: " + ex.getMessage());
+                return;
+            } catch (IOException ex) {
+                logger.warn("Failed to serialize bean definition snapshot", ex);
+                return;
+            }
+            try {
+                File directory = file.getAbsoluteFile().getParentFile();
+                Files.createDirectories(directory.toPath());
+                File temp = File.createTempFile(file.getName(), SNAPSHOT_SUFFIX, directory);
+                try {
+                    Files.write(temp.toPath(), content);
+                    Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    Files.deleteIfExists(temp.toPath());
+                }
+            } catch (IOException ex) {
+                logger.warn("Failed to write bean definition snapshot " + file, ex);
+            }
+        }
+
+        private byte[] serialize(ConfigurableListableBeanFactory beanFactory) throws IOException {
+            ClassLoader classLoader = beanFactory.getBeanClassLoader();
+            Map<String, AbstractBeanDefinition> beanDefinitions = new LinkedHashMap<>();
+            Set<String> classNames = new LinkedHashSet<>();
+            for (String beanName : beanFactory.getBeanDefinitionNames()) {
+                if (infrastructure.contains(beanName)) {
+                    continue;
+                }
+                AbstractBeanDefinition bd = checkSupported(beanName, beanFactory.getBeanDefinition(beanName), classLoader);
+                beanDefinitions.put(beanName, bd);
+                if (bd.getBeanClassName() != null) {
+                    classNames.add(bd.getBeanClassName());
+                }
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(bytes))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(key);
+                out.writeInt(classNames.size());
+                for (String className : classNames) {
+                    out.writeUTF(className);
+                    out.writeLong(lastModified(className, classLoader));
+                }
+                out.writeInt(beanDefinitions.size());
+                for (Map.Entry<String, AbstractBeanDefinition> entry : beanDefinitions.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    writeBeanDefinition(out, entry.getValue());
+                    String[] aliases = beanFactory.getAliases(entry.getKey());
+                    out.writeInt(aliases.length);
+                    for (String alias : aliases) {
+                        out.writeUTF(alias);
+                    }
+                }
+            }
+            return bytes.toByteArray();
+        }
+
+        private static AbstractBeanDefinition checkSupported(String beanName, BeanDefinition beanDefinition, ClassLoader classLoader) {
+            if (!(beanDefinition instanceof AbstractBeanDefinition)) {
+                throw new IllegalStateException("bean '" + beanName + "' 的定义不是AbstractBeanDefinition");
+            }
+            AbstractBeanDefinition bd = (AbstractBeanDefinition) beanDefinition;
+            if (!bd.getQualifiers().isEmpty() || !bd.getMethodOverrides().isEmpty()) {
+                throw new IllegalStateException("bean '" + beanName + "' 含有限定符或方法覆盖");
+            }
+            if (bd instanceof RootBeanDefinition && ((RootBeanDefinition) bd).getDecoratedDefinition() != null) {
+                throw new IllegalStateException("bean '" + beanName + "' 含有装饰定义");
+            }
+            String className = bd.getBeanClassName();
+            if (className != null && ClassUtils.isPresent(className, classLoader)
+                    && ImportAware.class.isAssignableFrom(ClassUtils.resolveClassName(className, classLoader))) {
+                throw new IllegalStateException("bean '" + beanName + "' 依赖导入信息(ImportAware)");
+            }
+            return bd;
+        }
+    }
+}
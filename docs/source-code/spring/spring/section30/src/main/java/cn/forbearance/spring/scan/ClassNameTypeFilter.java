@@ -0,0 +1,30 @@
+package cn.forbearance.spring.scan;
+
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+import org.springframework.core.type.filter.TypeFilter;
+
+import java.io.IOException;
+
+/**
+ * 只依赖类名的过滤器
+ * <p>
+ * {@link ParallelCandidateScanner} 遇到这类过滤器时直接用资源路径推导出的类名匹配，
+ * 不会去解析class文件生成 {@link MetadataReader}
+ *
+ * @author cristina
+ */
+public interface ClassNameTypeFilter extends TypeFilter {
+
+    /**
+     * @param className 正在扫描的类的全限定名
+     * @return 是否匹配
+     */
+    boolean matchClassName(String className);
+
+    @Override
+    default boolean match(MetadataReader metadataReader,
+                          MetadataReaderFactory metadataReaderFactory) throws IOException {
+        return matchClassName(metadataReader.getClassMetadata().getClassName());
+    }
+}
@@ -0,0 +1,50 @@
+package cn.forbearance.spring.scan;
+
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * 构建期生成的组件索引
+ * <p>
+ * 文件格式为properties，key是标注了 {@link ParallelComponentScan} 的配置类，value是逗号分隔的候选类。
+ * 索引由 {@link ComponentIndexGenerator} 在构建时生成，容器启动时直接读取，不再扫描类路径
+ *
+ * @author cristina
+ */
+public final class ComponentIndex {
+
+    public static final String COMPONENT_INDEX_LOCATION = "META-INF/component-index.properties";
+
+    /**
+     * 设置为true时忽略索引，退回到类路径扫描
+     */
+    public static final String IGNORE_INDEX_PROPERTY = "component.index.ignore";
+
+    private final Properties entries;
+
+    private ComponentIndex(Properties entries) {
+        this.entries = entries;
+    }
+
+    public static ComponentIndex load(ClassLoader classLoader) throws IOException {
+        return new ComponentIndex(PropertiesLoaderUtils.loadAllProperties(COMPONENT_INDEX_LOCATION, classLoader));
+    }
+
+    /**
+     * @param configClassName 配置类的全限定名
+     * @return 候选类，索引中没有该配置类时返回null
+     */
+    public Set<String> getCandidates(String configClassName) {
+        String value = entries.getProperty(configClassName);
+        if (value == null) {
+            return null;
+        }
+        return new LinkedHashSet<>(Arrays.asList(StringUtils.commaDelimitedListToStringArray(value)));
+    }
+}
@@ -0,0 +1,70 @@
+package cn.forbearance.spring.scan;
+
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.type.StandardAnnotationMetadata;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StringUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeSet;
+
+/**
+ * 在构建期按 {@link ParallelComponentScan} 的扫描包与过滤条件生成 {@link ComponentIndex}
+ * <p>
+ * 由pom中的exec-maven-plugin在process-classes阶段调用，过滤器(包括CUSTOM类型)与运行时使用同一套实现
+ *
+ * @author cristina
+ */
+public class ComponentIndexGenerator {
+
+    /**
+     * @param args 第一个参数为输出目录(一般是target/classes)，之后是需要生成索引的配置类
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            throw new IllegalArgumentException("用法: ComponentIndexGenerator <输出目录> <配置类>...");
+        }
+        ClassLoader classLoader = ClassUtils.getDefaultClassLoader();
+        Properties index = new Properties();
+        for (int i = 1; i < args.length; i++) {
+            Class<?> configClass = ClassUtils.forName(args[i], classLoader);
+            ParallelComponentScanRegistrar registrar = new ParallelComponentScanRegistrar();
+            registrar.setResourceLoader(new DefaultResourceLoader(classLoader));
+            registrar.setEnvironment(new StandardEnvironment());
+            // 并行扫描的顺序与文件系统有关，排序后写入
+            index.setProperty(configClass.getName(), StringUtils.collectionToCommaDelimitedString(
+                    new TreeSet<>(registrar.scan(new StandardAnnotationMetadata(configClass, true), null))));
+        }
+        write(new File(args[0], ComponentIndex.COMPONENT_INDEX_LOCATION), index);
+    }
+
+    /**
+     * 按行排序且不带时间戳，候选类不变时生成的文件也不变
+     */
+    private static void write(File file, Properties index) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        index.store(buffer, null);
+        List<String> lines = new ArrayList<>();
+        for (String line : buffer.toString("ISO-8859-1").split("\\R")) {
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                lines.add(line);
+            }
+        }
+        Collections.sort(lines);
+        StringBuilder content = new StringBuilder("# generated by ").append(ComponentIndexGenerator.class.getName()).append('\n');
+        for (String line : lines) {
+            content.append(line).append('\n');
+        }
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), content.toString().getBytes(StandardCharsets.ISO_8859_1));
+    }
+}
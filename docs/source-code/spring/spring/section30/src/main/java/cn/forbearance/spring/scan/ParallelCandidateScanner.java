@@ -0,0 +1,264 @@
+package cn.forbearance.spring.scan;
+
+import org.springframework.beans.factory.BeanDefinitionStoreException;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternUtils;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+import org.springframework.core.type.classreading.SimpleMetadataReaderFactory;
+import org.springframework.core.type.filter.TypeFilter;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.ResourceUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+/**
+ * 并行的候选组件扫描器
+ * <p>
+ * 与 {@code ClassPathScanningCandidateComponentProvider} 的区别：
+ * <ul>
+ *     <li>同一个类路径根目录(或jar)下的class文件在 {@link ForkJoinPool} 上并行匹配</li>
+ *     <li>{@link ClassNameTypeFilter} 直接按类名匹配，只有其他过滤器才会解析class文件</li>
+ *     <li>设置了缓存目录时，jar中的匹配结果按 jar内容哈希 + 过滤条件 落盘，重启后直接复用</li>
+ * </ul>
+ *
+ * @author cristina
+ */
+public class ParallelCandidateScanner {
+
+    private static final String CLASS_PATTERN = "**/*.class";
+
+    private static final String CLASS_SUFFIX = ".class";
+
+    private static final String CACHE_SUFFIX = ".candidates";
+
+    private final ResourcePatternResolver resourcePatternResolver;
+
+    private final MetadataReaderFactory metadataReaderFactory;
+
+    private final List<TypeFilter> includeFilters = new ArrayList<>();
+
+    private final List<TypeFilter> excludeFilters = new ArrayList<>();
+
+    private ForkJoinPool forkJoinPool = ForkJoinPool.commonPool();
+
+    private File cacheDirectory;
+
+    /**
+     * 描述过滤条件的字符串，参与缓存文件名的计算，过滤条件变化后旧缓存自动失效
+     */
+    private String cacheKey = "";
+
+    public ParallelCandidateScanner(ResourceLoader resourceLoader) {
+        this.resourcePatternResolver = ResourcePatternUtils.getResourcePatternResolver(resourceLoader);
+        this.metadataReaderFactory = new SimpleMetadataReaderFactory(resourceLoader);
+    }
+
+    public void addIncludeFilter(TypeFilter includeFilter) {
+        this.includeFilters.add(includeFilter);
+    }
+
+    public void addExcludeFilter(TypeFilter excludeFilter) {
+        this.excludeFilters.add(excludeFilter);
+    }
+
+    public void setForkJoinPool(ForkJoinPool forkJoinPool) {
+        this.forkJoinPool = forkJoinPool;
+    }
+
+    public void setCacheDirectory(File cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    public void setCacheKey(String cacheKey) {
+        this.cacheKey = cacheKey;
+    }
+
+    /**
+     * 扫描指定包下满足过滤条件的类
+     * @param basePackages 扫描的包
+     * @return 候选类的全限定名，按扫描顺序排列
+     */
+    public Set<String> scan(String... basePackages) throws IOException {
+        Set<String> candidates = new LinkedHashSet<>();
+        for (String basePackage : basePackages) {
+            String basePath = ClassUtils.convertClassNameToResourcePath(basePackage) + "/";
+            Resource[] roots = resourcePatternResolver.getResources(
+                    ResourcePatternResolver.CLASSPATH_ALL_URL_PREFIX + basePath);
+            for (Resource root : roots) {
+                candidates.addAll(scanRoot(basePackage, basePath, root));
+            }
+        }
+        return candidates;
+    }
+
+    private List<String> scanRoot(String basePackage, String basePath, Resource root) throws IOException {
+        File cacheFile = cacheFileOf(basePackage, root);
+        if (cacheFile != null && cacheFile.isFile()) {
+            return Files.readAllLines(cacheFile.toPath(), StandardCharsets.UTF_8);
+        }
+        String rootUrl = root.getURL().toString();
+        File rootDirectory = ResourceUtils.isJarURL(root.getURL()) ? null : root.getFile();
+        Resource[] resources = resourcePatternResolver.getResources(rootUrl + CLASS_PATTERN);
+        List<String> candidates = match(basePath, rootDirectory, Arrays.asList(resources));
+        if (cacheFile != null) {
+            writeCache(cacheFile, candidates);
+        }
+        return candidates;
+    }
+
+    private List<String> match(String basePath, File rootDirectory, List<Resource> resources) throws IOException {
+        try {
+            return forkJoinPool.submit(() -> resources.parallelStream()
+                    .map(resource -> {
+                        try {
+                            String className = classNameOf(basePath, rootDirectory, resource);
+                            return isCandidate(className, resource) ? className : null;
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList())).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("扫描被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * 按资源路径推导类名，无需读取class文件
+     */
+    private String classNameOf(String basePath, File rootDirectory, Resource resource) throws IOException {
+        String path;
+        if (rootDirectory == null) {
+            String url = resource.getURL().toString();
+            path = url.substring(url.indexOf(ResourceUtils.JAR_URL_SEPARATOR) + ResourceUtils.JAR_URL_SEPARATOR.length());
+        } else {
+            path = basePath + rootDirectory.toPath().relativize(resource.getFile().toPath())
+                    .toString().replace(File.separatorChar, '/');
+        }
+        return ClassUtils.convertResourcePathToClassName(path.substring(0, path.length() - CLASS_SUFFIX.length()));
+    }
+
+    /**
+     * 与Spring的规则一致：命中任一排除过滤器则排除，否则命中任一包含过滤器则包含。
+     * class文件只在第一个非 {@link ClassNameTypeFilter} 的过滤器需要时才解析
+     */
+    private boolean isCandidate(String className, Resource resource) throws IOException {
+        MetadataReader metadataReader = null;
+        for (TypeFilter filter : excludeFilters) {
+            if (filter instanceof ClassNameTypeFilter) {
+                if (((ClassNameTypeFilter) filter).matchClassName(className)) {
+                    return false;
+                }
+                continue;
+            }
+            if (metadataReader == null) {
+                metadataReader = metadataReaderOf(resource);
+            }
+            if (filter.match(metadataReader, metadataReaderFactory)) {
+                return false;
+            }
+        }
+        for (TypeFilter filter : includeFilters) {
+            if (filter instanceof ClassNameTypeFilter) {
+                if (((ClassNameTypeFilter) filter).matchClassName(className)) {
+                    return true;
+                }
+                continue;
+            }
+            if (metadataReader == null) {
+                metadataReader = metadataReaderOf(resource);
+            }
+            if (filter.match(metadataReader, metadataReaderFactory)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private MetadataReader metadataReaderOf(Resource resource) {
+        try {
+            return metadataReaderFactory.getMetadataReader(resource);
+        } catch (Throwable ex) {
+            throw new BeanDefinitionStoreException("Failed to read candidate component class: " + resource, ex);
+        }
+    }
+
+    /**
+     * 只缓存jar中的结果，目录中的class随时会被重新编译
+     */
+    private File cacheFileOf(String basePackage, Resource root) throws IOException {
+        if (cacheDirectory == null || !ResourceUtils.isJarURL(root.getURL())) {
+            return null;
+        }
+        File jarFile = ResourceUtils.getFile(ResourceUtils.extractJarFileURL(root.getURL()));
+        String filterHash = DigestUtils.md5DigestAsHex((basePackage + '|' + cacheKey).getBytes(StandardCharsets.UTF_8));
+        return new File(cacheDirectory, hashOf(jarFile) + "-" + filterHash + CACHE_SUFFIX);
+    }
+
+    private static String hashOf(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[8192];
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static void writeCache(File cacheFile, List<String> candidates) throws IOException {
+        Path directory = cacheFile.getParentFile().toPath();
+        Files.createDirectories(directory);
+        Path tmp = Files.createTempFile(directory, cacheFile.getName(), ".tmp");
+        Files.write(tmp, candidates, StandardCharsets.UTF_8);
+        try {
+            Files.move(tmp, cacheFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package cn.forbearance.spring.scan;
+
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.ScopedProxyMode;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 用法与 {@link ComponentScan} 相同，扫描交给 {@link ParallelCandidateScanner} 完成
+ *
+ * @author cristina
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Documented
+@Import(ParallelComponentScanRegistrar.class)
+public @interface ParallelComponentScan {
+
+    /**
+     * 扫描的包，默认为标注类所在的包
+     */
+    String[] value() default {};
+
+    boolean useDefaultFilters() default true;
+
+    ComponentScan.Filter[] includeFilters() default {};
+
+    ComponentScan.Filter[] excludeFilters() default {};
+
+    /**
+     * 与 {@link ComponentScan#scopedProxy()} 相同
+     */
+    ScopedProxyMode scopedProxy() default ScopedProxyMode.DEFAULT;
+
+    /**
+     * jar扫描结果的缓存目录，支持 ${...} 占位符，为空或者有CUSTOM过滤器时不缓存
+     */
+    String cacheDirectory() default "";
+}
@@ -0,0 +1,283 @@
+package cn.forbearance.spring.scan;
+
+import org.springframework.aop.scope.ScopedProxyUtils;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.Aware;
+import org.springframework.beans.factory.BeanClassLoaderAware;
+import org.springframework.beans.factory.BeanDefinitionStoreException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.config.BeanDefinitionHolder;
+import org.springframework.beans.factory.config.ConfigurableBeanFactory;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.BeanNameGenerator;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.context.ResourceLoaderAware;
+import org.springframework.context.annotation.AnnotationBeanNameGenerator;
+import org.springframework.context.annotation.AnnotationConfigUtils;
+import org.springframework.context.annotation.AnnotationScopeMetadataResolver;
+import org.springframework.context.annotation.ClassPathBeanDefinitionScanner;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.context.annotation.ImportBeanDefinitionRegistrar;
+import org.springframework.context.annotation.ScannedGenericBeanDefinition;
+import org.springframework.context.annotation.ScopeMetadata;
+import org.springframework.context.annotation.ScopeMetadataResolver;
+import org.springframework.context.annotation.ScopedProxyMode;
+import org.springframework.core.annotation.AnnotationAttributes;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.core.type.AnnotationMetadata;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+import org.springframework.core.type.filter.AspectJTypeFilter;
+import org.springframework.core.type.filter.AssignableTypeFilter;
+import org.springframework.core.type.filter.RegexPatternTypeFilter;
+import org.springframework.core.type.filter.TypeFilter;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StringUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * 解析 {@link ParallelComponentScan} 并注册扫描到的组件，存在 {@link ComponentIndex} 时直接使用索引
+ *
+ * @author cristina
+ */
+public class ParallelComponentScanRegistrar implements ImportBeanDefinitionRegistrar, ResourceLoaderAware, EnvironmentAware {
+
+    private ResourceLoader resourceLoader;
+
+    private Environment environment;
+
+    @Override
+    public void setResourceLoader(ResourceLoader resourceLoader) {
+        this.resourceLoader = resourceLoader;
+    }
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.environment = environment;
+    }
+
+    @Override
+    public void registerBeanDefinitions(AnnotationMetadata importingClassMetadata, BeanDefinitionRegistry registry) {
+        Set<String> candidates = indexedCandidates(importingClassMetadata.getClassName());
+        if (candidates == null) {
+            candidates = scan(importingClassMetadata, registry);
+        }
+        AnnotationAttributes attributes = attributesOf(importingClassMetadata);
+        ScopedProxyMode scopedProxy = attributes.getEnum("scopedProxy");
+        ScopeMetadataResolver scopeMetadataResolver = scopedProxy != ScopedProxyMode.DEFAULT
+                ? new AnnotationScopeMetadataResolver(scopedProxy) : new AnnotationScopeMetadataResolver();
+        new CandidateRegistrar(registry, environment, resourceLoader, scopeMetadataResolver).register(candidates);
+    }
+
+    /**
+     * 优先使用构建期生成的 {@link ComponentIndex}
+     * @return 索引中的候选类，没有索引或忽略索引时返回null
+     */
+    private Set<String> indexedCandidates(String configClassName) {
+        if (environment.getProperty(ComponentIndex.IGNORE_INDEX_PROPERTY, Boolean.class, false)) {
+            return null;
+        }
+        try {
+            return ComponentIndex.load(resourceLoader.getClassLoader()).getCandidates(configClassName);
+        } catch (IOException e) {
+            throw new BeanDefinitionStoreException("Failed to load " + ComponentIndex.COMPONENT_INDEX_LOCATION, e);
+        }
+    }
+
+    /**
+     * 按 {@link ParallelComponentScan} 的配置扫描类路径
+     * @param registry 传给CUSTOM过滤器的Aware回调，构建期生成索引时为null
+     * @return 满足过滤条件的类
+     */
+    Set<String> scan(AnnotationMetadata importingClassMetadata, BeanDefinitionRegistry registry) {
+        AnnotationAttributes attributes = attributesOf(importingClassMetadata);
+        String[] basePackages = basePackagesOf(importingClassMetadata, attributes);
+
+        ParallelCandidateScanner scanner = new ParallelCandidateScanner(resourceLoader);
+        StringBuilder cacheKey = new StringBuilder();
+        if (attributes.getBoolean("useDefaultFilters")) {
+            scanner.addIncludeFilter(new AnnotationTypeFilter(Component.class));
+            cacheKey.append("default;");
+        }
+        for (AnnotationAttributes filter : attributes.getAnnotationArray("includeFilters")) {
+            for (TypeFilter typeFilter : typeFiltersFor(filter, registry, cacheKey.append("include:"))) {
+                scanner.addIncludeFilter(typeFilter);
+            }
+        }
+        for (AnnotationAttributes filter : attributes.getAnnotationArray("excludeFilters")) {
+            for (TypeFilter typeFilter : typeFiltersFor(filter, registry, cacheKey.append("exclude:"))) {
+                scanner.addExcludeFilter(typeFilter);
+            }
+        }
+        String cacheDirectory = environment.resolvePlaceholders(attributes.getString("cacheDirectory"));
+        // CUSTOM过滤器可能依赖Environment、容器或jar以外的类，匹配结果不能只按过滤条件缓存
+        if (StringUtils.hasText(cacheDirectory) && !hasCustomFilter(attributes)) {
+            scanner.setCacheDirectory(new File(cacheDirectory));
+            scanner.setCacheKey(cacheKey.toString());
+        }
+
+        try {
+            return scanner.scan(basePackages);
+        } catch (IOException e) {
+            throw new BeanDefinitionStoreException("I/O failure during classpath scanning", e);
+        }
+    }
+
+    private static AnnotationAttributes attributesOf(AnnotationMetadata importingClassMetadata) {
+        return AnnotationAttributes.fromMap(
+                importingClassMetadata.getAnnotationAttributes(ParallelComponentScan.class.getName(), false));
+    }
+
+    private static boolean hasCustomFilter(AnnotationAttributes attributes) {
+        for (String filters : new String[]{"includeFilters", "excludeFilters"}) {
+            for (AnnotationAttributes filter : attributes.getAnnotationArray(filters)) {
+                if (filter.<FilterType>getEnum("type") == FilterType.CUSTOM) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static String[] basePackagesOf(AnnotationMetadata metadata, AnnotationAttributes attributes) {
+        String[] basePackages = attributes.getStringArray("value");
+        if (basePackages.length == 0) {
+            return new String[]{ClassUtils.getPackageName(metadata.getClassName())};
+        }
+        return basePackages;
+    }
+
+    /**
+     * 与 {@code ComponentScanAnnotationParser} 的解析规则一致，同时把过滤条件追加到缓存key中
+     */
+    @SuppressWarnings("unchecked")
+    private List<TypeFilter> typeFiltersFor(AnnotationAttributes filterAttributes, BeanDefinitionRegistry registry,
+                                            StringBuilder cacheKey) {
+        List<TypeFilter> typeFilters = new ArrayList<>();
+        FilterType filterType = filterAttributes.getEnum("type");
+        cacheKey.append(filterType).append(Arrays.toString(filterAttributes.getClassArray("classes")))
+                .append(Arrays.toString(filterAttributes.getStringArray("pattern"))).append(';');
+
+        for (Class<?> filterClass : filterAttributes.getClassArray("classes")) {
+            switch (filterType) {
+                case ANNOTATION:
+                    typeFilters.add(new AnnotationTypeFilter((Class<Annotation>) filterClass));
+                    break;
+                case ASSIGNABLE_TYPE:
+                    typeFilters.add(new AssignableTypeFilter(filterClass));
+                    break;
+                case CUSTOM:
+                    TypeFilter typeFilter = BeanUtils.instantiateClass(filterClass, TypeFilter.class);
+                    invokeAwareMethods(typeFilter, registry);
+                    typeFilters.add(typeFilter);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Filter type not supported with Class value: " + filterType);
+            }
+        }
+        for (String expression : filterAttributes.getStringArray("pattern")) {
+            switch (filterType) {
+                case ASPECTJ:
+                    typeFilters.add(new AspectJTypeFilter(expression, resourceLoader.getClassLoader()));
+                    break;
+                case REGEX:
+                    typeFilters.add(new RegexPatternTypeFilter(Pattern.compile(expression)));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Filter type not supported with String pattern: " + filterType);
+            }
+        }
+        return typeFilters;
+    }
+
+    /**
+     * 与 {@code ParserStrategyUtils#invokeAwareMethods} 一致，那个类不是public的
+     */
+    private void invokeAwareMethods(Object filter, BeanDefinitionRegistry registry) {
+        if (!(filter instanceof Aware)) {
+            return;
+        }
+        if (filter instanceof BeanClassLoaderAware) {
+            ClassLoader classLoader = registry instanceof ConfigurableBeanFactory
+                    ? ((ConfigurableBeanFactory) registry).getBeanClassLoader() : resourceLoader.getClassLoader();
+            ((BeanClassLoaderAware) filter).setBeanClassLoader(classLoader);
+        }
+        if (filter instanceof BeanFactoryAware && registry instanceof BeanFactory) {
+            ((BeanFactoryAware) filter).setBeanFactory((BeanFactory) registry);
+        }
+        if (filter instanceof EnvironmentAware) {
+            ((EnvironmentAware) filter).setEnvironment(environment);
+        }
+        if (filter instanceof ResourceLoaderAware) {
+            ((ResourceLoaderAware) filter).setResourceLoader(resourceLoader);
+        }
+    }
+
+    /**
+     * 按 {@code ClassPathBeanDefinitionScanner#doScan} 的步骤注册已经找到的候选类：{@code @Conditional} 判断、
+     * 默认值、作用域代理以及bean名称冲突的检查都与 {@code @ComponentScan} 一致，只是不再扫描类路径
+     */
+    private static class CandidateRegistrar extends ClassPathBeanDefinitionScanner {
+
+        private final BeanNameGenerator beanNameGenerator = new AnnotationBeanNameGenerator();
+
+        private final ScopeMetadataResolver scopeMetadataResolver;
+
+        CandidateRegistrar(BeanDefinitionRegistry registry, Environment environment, ResourceLoader resourceLoader,
+                           ScopeMetadataResolver scopeMetadataResolver) {
+            super(registry, false, environment, resourceLoader);
+            this.scopeMetadataResolver = scopeMetadataResolver;
+            // 候选类已经按过滤条件筛选过，这里只剩下条件判断
+            addIncludeFilter((metadataReader, metadataReaderFactory) -> true);
+        }
+
+        void register(Set<String> candidates) {
+            for (String className : candidates) {
+                ScannedGenericBeanDefinition beanDefinition;
+                try {
+                    MetadataReader metadataReader = getMetadataReaderFactory().getMetadataReader(className);
+                    if (!isCandidateComponent(metadataReader)) {
+                        continue;
+                    }
+                    beanDefinition = new ScannedGenericBeanDefinition(metadataReader);
+                    beanDefinition.setResource(metadataReader.getResource());
+                    beanDefinition.setSource(metadataReader.getResource());
+                } catch (IOException e) {
+                    throw new BeanDefinitionStoreException("Failed to read candidate component class: " + className, e);
+                }
+                if (!isCandidateComponent(beanDefinition)) {
+                    continue;
+                }
+                ScopeMetadata scopeMetadata = scopeMetadataResolver.resolveScopeMetadata(beanDefinition);
+                beanDefinition.setScope(scopeMetadata.getScopeName());
+                String beanName = beanNameGenerator.generateBeanName(beanDefinition, getRegistry());
+                postProcessBeanDefinition(beanDefinition, beanName);
+                AnnotationConfigUtils.processCommonDefinitionAnnotations(beanDefinition);
+                // 同一个类重复扫描时跳过，名称被其他类占用时抛出ConflictingBeanDefinitionException
+                if (checkCandidate(beanName, beanDefinition)) {
+                    BeanDefinitionHolder holder = new BeanDefinitionHolder(beanDefinition, beanName);
+                    registerBeanDefinition(applyScopedProxyMode(scopeMetadata, holder), getRegistry());
+                }
+            }
+        }
+
+        private BeanDefinitionHolder applyScopedProxyMode(ScopeMetadata scopeMetadata, BeanDefinitionHolder holder) {
+            ScopedProxyMode scopedProxyMode = scopeMetadata.getScopedProxyMode();
+            if (scopedProxyMode == ScopedProxyMode.NO) {
+                return holder;
+            }
+            return ScopedProxyUtils.createScopedProxy(holder, getRegistry(), scopedProxyMode == ScopedProxyMode.TARGET_CLASS);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package cn.forbearance.spring.scope;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标注 {@link PooledScope} 中的bean归还到池中之前调用的无参方法，用于清理上一次使用留下的状态。
+ * 方法抛出异常时该实例不再放回池中，直接销毁
+ *
+ * @author cristina
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+@Documented
+public @interface PoolReset {
+}
@@ -0,0 +1,558 @@
+package cn.forbearance.spring.scope;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.beans.factory.config.Scope;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 池化作用域
+ * <p>
+ * 每个bean有一个固定容量的无锁对象池。在 {@link #borrow()} 到 {@link Lease#close()} 之间获取的bean从池中借出，
+ * 同一次借用内多次获取是同一个实例；借用结束时先调用 {@link PoolReset} 标注的方法重置状态，再放回池中。
+ * 池已满时多余的实例直接销毁
+ *
+ * @author cristina
+ */
+public class PooledScope implements Scope, DisposableBean {
+
+    public static final String POOLED_SCOPE = "pooled";
+
+    private static final long WAIT_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final ThreadLocal<Lease> currentLease = new ThreadLocal<>();
+
+    private final ConcurrentMap<String, Pool> pools = new ConcurrentHashMap<>(16);
+
+    /**
+     * bean类型 -> 重置方法，没有标注 {@link PoolReset} 时为空
+     */
+    private final ConcurrentMap<Class<?>, Optional<Method>> resetMethods = new ConcurrentHashMap<>(16);
+
+    private final int maxIdle;
+
+    private final int maxTotal;
+
+    private final long maxWait;
+
+    /**
+     * 每个bean最多缓存8个空闲实例，实例总数不限
+     */
+    public PooledScope() {
+        this(8, -1, 0);
+    }
+
+    /**
+     * @param maxIdle       每个bean池中最多保留的空闲实例数
+     * @param maxTotal      每个bean同时存在的实例上限，小于等于0表示不限
+     * @param maxWaitMillis 达到上限后等待其他线程归还的最长时间
+     */
+    public PooledScope(int maxIdle, int maxTotal, long maxWaitMillis) {
+        this.maxIdle = maxIdle;
+        this.maxTotal = maxTotal;
+        this.maxWait = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+    }
+
+    /**
+     * 在当前线程上开始一次借用
+     * @return 借用句柄，配合try-with-resources使用
+     */
+    public Lease borrow() {
+        if (currentLease() != null) {
+            throw new IllegalStateException("当前线程已存在未归还的借用");
+        }
+        Lease lease = new Lease();
+        currentLease.set(lease);
+        return lease;
+    }
+
+    /**
+     * 在一次借用中执行，执行完毕后归还借出的bean
+     */
+    public <T> T execute(Callable<T> callable) throws Exception {
+        Lease lease = borrow();
+        T result;
+        try {
+            result = callable.call();
+        } catch (Throwable ex) {
+            // 与try-with-resources一致，归还时的异常附加到原异常上
+            try {
+                lease.close();
+            } catch (RuntimeException closeEx) {
+                ex.addSuppressed(closeEx);
+            }
+            throw ex;
+        }
+        lease.close();
+        return result;
+    }
+
+    @Override
+    public Object get(String name, ObjectFactory<?> objectFactory) {
+        Lease lease = requireLease();
+        synchronized (lease) {
+            lease.assertOpen();
+            PooledObject borrowed = lease.borrowed.get(name);
+            if (borrowed != null) {
+                return borrowed.bean;
+            }
+        }
+        // 等待其他线程归还时不持有借用锁
+        Pool pool = pools.computeIfAbsent(name, key -> new Pool(maxIdle));
+        PooledObject borrowed = take(name, pool, objectFactory, lease);
+        synchronized (lease) {
+            if (!lease.closed) {
+                lease.borrowed.put(name, borrowed);
+                return borrowed.bean;
+            }
+        }
+        // 借用已在其他线程上结束，刚借出的实例直接归还
+        RuntimeException failure = giveBack(pool, borrowed, null);
+        IllegalStateException ex = lease.closedException();
+        if (failure != null) {
+            ex.addSuppressed(failure);
+        }
+        throw ex;
+    }
+
+    /**
+     * 从当前借用中移除，该实例不会再回到池中，由调用方负责销毁
+     */
+    @Override
+    public Object remove(String name) {
+        Lease lease = currentLease();
+        if (lease == null) {
+            return null;
+        }
+        PooledObject removed;
+        synchronized (lease) {
+            removed = lease.closed ? null : lease.borrowed.remove(name);
+        }
+        if (removed == null) {
+            return null;
+        }
+        pools.get(name).total.decrementAndGet();
+        return removed.bean;
+    }
+
+    /**
+     * Spring在创建实例的过程中注册销毁回调，此时实例还没有交给作用域，先暂存在借用上
+     */
+    @Override
+    public void registerDestructionCallback(String name, Runnable callback) {
+        requireLease().pendingCallback = callback;
+    }
+
+    @Override
+    public Object resolveContextualObject(String key) {
+        return null;
+    }
+
+    @Override
+    public String getConversationId() {
+        return null;
+    }
+
+    /**
+     * 销毁所有空闲实例
+     */
+    @Override
+    public void destroy() {
+        RuntimeException failure = null;
+        for (Pool pool : pools.values()) {
+            PooledObject pooled;
+            while ((pooled = pool.poll()) != null) {
+                failure = discard(pool, pooled, failure);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * @return bean对应的池的统计信息，bean还没有被获取过时为null
+     */
+    public Stats getStats(String name) {
+        Pool pool = pools.get(name);
+        return pool == null ? null : new Stats(pool);
+    }
+
+    private PooledObject take(String name, Pool pool, ObjectFactory<?> objectFactory, Lease lease) {
+        PooledObject pooled = pool.poll();
+        if (pooled != null) {
+            pool.hits.increment();
+            return pooled;
+        }
+        if (pool.reserve(maxTotal)) {
+            return create(pool, objectFactory, lease);
+        }
+        // 已达到实例上限，等待其他线程归还
+        long start = System.nanoTime();
+        while (true) {
+            pooled = pool.poll();
+            if (pooled != null) {
+                pool.recordWait(System.nanoTime() - start);
+                pool.hits.increment();
+                return pooled;
+            }
+            if (pool.reserve(maxTotal)) {
+                pool.recordWait(System.nanoTime() - start);
+                return create(pool, objectFactory, lease);
+            }
+            long waited = System.nanoTime() - start;
+            if (waited >= maxWait) {
+                pool.recordWait(waited);
+                throw new IllegalStateException("bean '" + name + "' 的池已耗尽，等待 "
+                        + TimeUnit.NANOSECONDS.toMillis(waited) + " ms 后仍没有可用实例");
+            }
+            LockSupport.parkNanos(WAIT_PARK_NANOS);
+        }
+    }
+
+    private PooledObject create(Pool pool, ObjectFactory<?> objectFactory, Lease lease) {
+        pool.misses.increment();
+        lease.pendingCallback = null;
+        try {
+            Object bean = objectFactory.getObject();
+            return new PooledObject(bean, lease.pendingCallback);
+        } catch (RuntimeException | Error e) {
+            pool.total.decrementAndGet();
+            throw e;
+        } finally {
+            lease.pendingCallback = null;
+        }
+    }
+
+    /**
+     * @return 重置成功返回true，没有重置方法也视为成功
+     */
+    private boolean reset(Object bean) {
+        Optional<Method> resetMethod = resetMethods.computeIfAbsent(bean.getClass(), PooledScope::findResetMethod);
+        if (!resetMethod.isPresent()) {
+            return true;
+        }
+        try {
+            ReflectionUtils.invokeMethod(resetMethod.get(), bean);
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static Optional<Method> findResetMethod(Class<?> beanClass) {
+        Method[] found = new Method[1];
+        ReflectionUtils.doWithMethods(beanClass, method -> {
+            if (found[0] == null) {
+                ReflectionUtils.makeAccessible(method);
+                found[0] = method;
+            }
+        }, method -> method.isAnnotationPresent(PoolReset.class) && method.getParameterCount() == 0);
+        return Optional.ofNullable(found[0]);
+    }
+
+    /**
+     * 重置并放回池中，无法重置或池已满时销毁
+     */
+    private RuntimeException giveBack(Pool pool, PooledObject pooled, RuntimeException failure) {
+        if (!reset(pooled.bean) || !pool.offer(pooled)) {
+            return discard(pool, pooled, failure);
+        }
+        return failure;
+    }
+
+    /**
+     * 销毁实例，回调失败时继续处理其他实例，最后抛出第一个异常，其余的附加到它上面
+     */
+    private static RuntimeException discard(Pool pool, PooledObject pooled, RuntimeException failure) {
+        pool.total.decrementAndGet();
+        if (pooled.destructionCallback != null) {
+            try {
+                pooled.destructionCallback.run();
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    return e;
+                }
+                if (failure != e) {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        return failure;
+    }
+
+    /**
+     * 借用可能在其他线程上被结束，这时线程上的绑定已经失效，在这里解除
+     */
+    private Lease currentLease() {
+        Lease lease = currentLease.get();
+        if (lease != null && lease.closed) {
+            currentLease.remove();
+            return null;
+        }
+        return lease;
+    }
+
+    private Lease requireLease() {
+        Lease lease = currentLease();
+        if (lease == null) {
+            throw new IllegalStateException("当前线程没有处于借用中，请先调用PooledScope.borrow()");
+        }
+        return lease;
+    }
+
+    /**
+     * 一次借用
+     */
+    public class Lease implements AutoCloseable {
+
+        private final Map<String, PooledObject> borrowed = new LinkedHashMap<>(8);
+
+        private Runnable pendingCallback;
+
+        /**
+         * 只在持有借用锁时修改，其他线程可以不加锁读取
+         */
+        private volatile boolean closed;
+
+        private Lease() {
+        }
+
+        /**
+         * 在借用锁内调用，借用已结束时不能再借出bean
+         */
+        private void assertOpen() {
+            if (closed) {
+                throw closedException();
+            }
+        }
+
+        private IllegalStateException closedException() {
+            return new IllegalStateException("借用已经结束");
+        }
+
+        /**
+         * 重置并归还借出的bean，无法重置或池已满的实例直接销毁。在其他线程上结束时，
+         * 开始借用的线程下一次访问作用域时解除绑定
+         */
+        @Override
+        public void close() {
+            if (currentLease.get() == this) {
+                currentLease.remove();
+            }
+            Map<String, PooledObject> returned;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                returned = new LinkedHashMap<>(borrowed);
+                borrowed.clear();
+            }
+            RuntimeException failure = null;
+            for (Map.Entry<String, PooledObject> entry : returned.entrySet()) {
+                failure = giveBack(pools.get(entry.getKey()), entry.getValue(), failure);
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * 某个bean的池的统计信息快照
+     */
+    public static class Stats {
+
+        private final long hits;
+
+        private final long misses;
+
+        private final long waits;
+
+        private final long totalWaitNanos;
+
+        private final long maxWaitNanos;
+
+        private final int idle;
+
+        private final int total;
+
+        private Stats(Pool pool) {
+            this.hits = pool.hits.sum();
+            this.misses = pool.misses.sum();
+            this.waits = pool.waits.sum();
+            this.totalWaitNanos = pool.waitNanos.sum();
+            this.maxWaitNanos = pool.maxWaitNanos.get();
+            this.idle = pool.idleCount();
+            this.total = pool.total.get();
+        }
+
+        /**
+         * @return 从池中直接取到实例的次数
+         */
+        public long getHits() {
+            return hits;
+        }
+
+        /**
+         * @return 池中没有空闲实例而新建的次数
+         */
+        public long getMisses() {
+            return misses;
+        }
+
+        public double getHitRate() {
+            long count = hits + misses;
+            return count == 0 ? 0 : (double) hits / count;
+        }
+
+        /**
+         * @return 因达到实例上限而等待的次数
+         */
+        public long getWaits() {
+            return waits;
+        }
+
+        public long getTotalWaitNanos() {
+            return totalWaitNanos;
+        }
+
+        public long getMaxWaitNanos() {
+            return maxWaitNanos;
+        }
+
+        public int getIdle() {
+            return idle;
+        }
+
+        /**
+         * @return 空闲和借出的实例总数
+         */
+        public int getTotal() {
+            return total;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{hits=" + hits + ", misses=" + misses + ", waits=" + waits
+                    + ", totalWaitMillis=" + TimeUnit.NANOSECONDS.toMillis(totalWaitNanos)
+                    + ", maxWaitMillis=" + TimeUnit.NANOSECONDS.toMillis(maxWaitNanos)
+                    + ", idle=" + idle + ", total=" + total + '}';
+        }
+    }
+
+    private static class PooledObject {
+
+        private final Object bean;
+
+        private final Runnable destructionCallback;
+
+        private PooledObject(Object bean, Runnable destructionCallback) {
+            this.bean = bean;
+            this.destructionCallback = destructionCallback;
+        }
+    }
+
+    /**
+     * 空闲实例保存在固定长度的数组中，借出和归还都是对槽位的CAS，
+     * 每个线程从不同的槽位开始查找以减少竞争
+     */
+    private static class Pool {
+
+        private final AtomicReferenceArray<PooledObject> idle;
+
+        private final AtomicInteger total = new AtomicInteger();
+
+        private final LongAdder hits = new LongAdder();
+
+        private final LongAdder misses = new LongAdder();
+
+        private final LongAdder waits = new LongAdder();
+
+        private final LongAdder waitNanos = new LongAdder();
+
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+
+        private Pool(int maxIdle) {
+            this.idle = new AtomicReferenceArray<>(Math.max(maxIdle, 0));
+        }
+
+        private PooledObject poll() {
+            int length = idle.length();
+            int start = probe(length);
+            for (int i = 0; i < length; i++) {
+                int slot = (start + i) % length;
+                PooledObject pooled = idle.get(slot);
+                if (pooled != null && idle.compareAndSet(slot, pooled, null)) {
+                    return pooled;
+                }
+            }
+            return null;
+        }
+
+        private boolean offer(PooledObject pooled) {
+            int length = idle.length();
+            int start = probe(length);
+            for (int i = 0; i < length; i++) {
+                int slot = (start + i) % length;
+                if (idle.get(slot) == null && idle.compareAndSet(slot, null, pooled)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * 预留一个实例名额
+         */
+        private boolean reserve(int maxTotal) {
+            while (true) {
+                int current = total.get();
+                if (maxTotal > 0 && current >= maxTotal) {
+                    return false;
+                }
+                if (total.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        private void recordWait(long nanos) {
+            waits.increment();
+            waitNanos.add(nanos);
+            long max;
+            do {
+                max = maxWaitNanos.get();
+            } while (nanos > max && !maxWaitNanos.compareAndSet(max, nanos));
+        }
+
+        private int idleCount() {
+            int count = 0;
+            for (int i = 0; i < idle.length(); i++) {
+                if (idle.get(i) != null) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        private static int probe(int length) {
+            return length == 0 ? 0 : (int) (Thread.currentThread().getId() % length);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package cn.forbearance.spring.scope;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.config.Scope;
+
+import java.util.Arrays;
+
+/**
+ * 基于槽位数组的线程作用域
+ * <p>
+ * 与 {@link CustomThreadScope} 不同，bean名称在注册阶段就被映射为整数槽位，
+ * 每个线程只持有一个按槽位索引的数组，查找时不再为每个线程创建HashMap，也不会触发扩容。
+ * 名称到槽位的映射是只读的开放寻址表，只在出现新名称时整体替换，取bean时不加锁也不分配对象
+ * <p>
+ * 销毁回调按线程保存，在 {@link #destroyCurrentThread()} 时执行
+ *
+ * @author cristina
+ */
+public class SlotThreadScope implements Scope, BeanFactoryPostProcessor {
+
+    public static final String SLOT_THREAD_SCOPE = "slotThread";
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final String scopeName;
+
+    /**
+     * bean名称 -> 槽位，新增名称时在锁内替换
+     */
+    private volatile SlotTable slotTable = new SlotTable(new String[0]);
+
+    private final ThreadLocal<ThreadBeans> threadBeans = new ThreadLocal<ThreadBeans>() {
+        @Override
+        protected ThreadBeans initialValue() {
+            return new ThreadBeans(Math.max(slotTable.size(), INITIAL_CAPACITY));
+        }
+    };
+
+    public SlotThreadScope() {
+        this(SLOT_THREAD_SCOPE);
+    }
+
+    public SlotThreadScope(String scopeName) {
+        this.scopeName = scopeName;
+    }
+
+    /**
+     * 注册作用域，并为所有使用该作用域的bean预先分配槽位
+     */
+    @Override
+    public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) throws BeansException {
+        beanFactory.registerScope(scopeName, this);
+        for (String beanName : beanFactory.getBeanDefinitionNames()) {
+            BeanDefinition beanDefinition = beanFactory.getBeanDefinition(beanName);
+            if (scopeName.equals(beanDefinition.getScope())) {
+                slotOf(beanName);
+            }
+        }
+    }
+
+    /**
+     * 获取bean名称对应的槽位，未注册过的名称在首次访问时分配
+     */
+    public int slotOf(String name) {
+        int slot = slotTable.find(name);
+        return slot >= 0 ? slot : register(name);
+    }
+
+    private synchronized int register(String name) {
+        SlotTable table = slotTable;
+        int slot = table.find(name);
+        if (slot < 0) {
+            String[] names = Arrays.copyOf(table.names, table.names.length + 1);
+            names[table.names.length] = name;
+            slotTable = new SlotTable(names);
+            slot = table.names.length;
+        }
+        return slot;
+    }
+
+    @Override
+    public Object get(String name, ObjectFactory<?> objectFactory) {
+        int slot = slotOf(name);
+        ThreadBeans current = threadBeans.get();
+        if (slot >= current.beans.length) {
+            current.grow(slot + 1);
+        }
+        Object bean = current.beans[slot];
+        if (bean == null) {
+            bean = objectFactory.getObject();
+            current.beans[slot] = bean;
+        }
+        return bean;
+    }
+
+    /**
+     * 移除当前线程上的bean，同时丢弃它的销毁回调
+     */
+    @Override
+    public Object remove(String name) {
+        int slot = slotTable.find(name);
+        ThreadBeans current = threadBeans.get();
+        if (slot < 0 || slot >= current.beans.length) {
+            return null;
+        }
+        Object bean = current.beans[slot];
+        current.beans[slot] = null;
+        current.callbacks[slot] = null;
+        return bean;
+    }
+
+    @Override
+    public void registerDestructionCallback(String name, Runnable callback) {
+        int slot = slotOf(name);
+        ThreadBeans current = threadBeans.get();
+        if (slot >= current.beans.length) {
+            current.grow(slot + 1);
+        }
+        current.callbacks[slot] = callback;
+    }
+
+    /**
+     * 销毁当前线程持有的bean：按槽位倒序执行销毁回调，并解除线程上的数组，应在线程结束或归还线程池前调用
+     */
+    public void destroyCurrentThread() {
+        ThreadBeans current = threadBeans.get();
+        threadBeans.remove();
+        RuntimeException failure = null;
+        for (int slot = current.callbacks.length - 1; slot >= 0; slot--) {
+            Runnable callback = current.callbacks[slot];
+            if (callback == null) {
+                continue;
+            }
+            try {
+                callback.run();
+            } catch (RuntimeException ex) {
+                if (failure == null) {
+                    failure = ex;
+                } else {
+                    failure.addSuppressed(ex);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    @Override
+    public Object resolveContextualObject(String key) {
+        return null;
+    }
+
+    @Override
+    public String getConversationId() {
+        return Thread.currentThread().getName();
+    }
+
+    /**
+     * 名称 -> 槽位的只读开放寻址表，槽位即名称在 {@link #names} 中的下标
+     */
+    private static final class SlotTable {
+
+        private final String[] names;
+
+        private final String[] keys;
+
+        private final int[] slots;
+
+        private final int mask;
+
+        SlotTable(String[] names) {
+            this.names = names;
+            int capacity = INITIAL_CAPACITY;
+            while (capacity < names.length << 1) {
+                capacity <<= 1;
+            }
+            this.keys = new String[capacity];
+            this.slots = new int[capacity];
+            this.mask = capacity - 1;
+            for (int slot = 0; slot < names.length; slot++) {
+                int index = indexOf(names[slot]);
+                while (keys[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = names[slot];
+                slots[index] = slot;
+            }
+        }
+
+        int size() {
+            return names.length;
+        }
+
+        /**
+         * 查找名称的槽位，不存在时返回-1；bean名称通常是同一个字符串实例，先按引用比较
+         */
+        int find(String name) {
+            int index = indexOf(name);
+            String key;
+            while ((key = keys[index]) != null) {
+                if (key == name || key.equals(name)) {
+                    return slots[index];
+                }
+                index = (index + 1) & mask;
+            }
+            return -1;
+        }
+
+        private int indexOf(String name) {
+            int hash = name.hashCode();
+            return (hash ^ (hash >>> 16)) & mask;
+        }
+    }
+
+    /**
+     * 一个线程持有的bean和销毁回调，都按槽位索引
+     */
+    private static final class ThreadBeans {
+
+        private Object[] beans;
+
+        private Runnable[] callbacks;
+
+        ThreadBeans(int capacity) {
+            this.beans = new Object[capacity];
+            this.callbacks = new Runnable[capacity];
+        }
+
+        void grow(int minCapacity) {
+            int capacity = Math.max(minCapacity, beans.length << 1);
+            beans = Arrays.copyOf(beans, capacity);
+            callbacks = Arrays.copyOf(callbacks, capacity);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package cn.forbearance.spring.scope;
+
+import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.beans.factory.config.Scope;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 任务作用域
+ * <p>
+ * bean的生命周期绑定到一次显式的任务区间（{@link #begin()} 到 {@link Task#close()}），
+ * 而不是绑定到线程。任务结束时统一执行销毁回调并解除线程绑定，
+ * 因此在线程池或大量短生命周期线程上也不会残留实例
+ *
+ * @author cristina
+ */
+public class TaskScope implements Scope {
+
+    public static final String TASK_SCOPE = "task";
+
+    private final ThreadLocal<Task> currentTask = new ThreadLocal<>();
+
+    private final AtomicLong taskIds = new AtomicLong();
+
+    private final AtomicLong createdCount = new AtomicLong();
+
+    private final AtomicLong reclaimedCount = new AtomicLong();
+
+    /**
+     * 在当前线程上开启一个任务
+     * @return 任务句柄，配合try-with-resources使用
+     */
+    public Task begin() {
+        Task current = currentTask();
+        if (current != null) {
+            throw new IllegalStateException("当前线程已存在未结束的task: " + current.getId());
+        }
+        Task task = new Task("task-" + taskIds.incrementAndGet());
+        currentTask.set(task);
+        return task;
+    }
+
+    /**
+     * 在一个新任务中执行，执行完毕后销毁任务内创建的bean
+     */
+    public <T> T execute(Callable<T> callable) throws Exception {
+        Task task = begin();
+        T result;
+        try {
+            result = callable.call();
+        } catch (Throwable ex) {
+            // 与try-with-resources一致，结束任务时的异常附加到原异常上
+            try {
+                task.close();
+            } catch (RuntimeException closeEx) {
+                ex.addSuppressed(closeEx);
+            }
+            throw ex;
+        }
+        task.close();
+        return result;
+    }
+
+    @Override
+    public Object get(String name, ObjectFactory<?> objectFactory) {
+        Task task = requireTask();
+        synchronized (task) {
+            task.assertOpen();
+            Object bean = task.beans.get(name);
+            if (bean == null) {
+                bean = objectFactory.getObject();
+                task.beans.put(name, bean);
+                createdCount.incrementAndGet();
+            }
+            return bean;
+        }
+    }
+
+    @Override
+    public Object remove(String name) {
+        Task task = currentTask();
+        if (task == null) {
+            return null;
+        }
+        synchronized (task) {
+            if (task.closed) {
+                return null;
+            }
+            task.callbacks.remove(name);
+            return task.beans.remove(name);
+        }
+    }
+
+    @Override
+    public void registerDestructionCallback(String name, Runnable callback) {
+        Task task = requireTask();
+        synchronized (task) {
+            task.assertOpen();
+            task.callbacks.put(name, callback);
+        }
+    }
+
+    @Override
+    public Object resolveContextualObject(String key) {
+        return null;
+    }
+
+    @Override
+    public String getConversationId() {
+        Task task = currentTask();
+        return task == null ? null : task.getId();
+    }
+
+    /**
+     * @return 累计创建的实例数
+     */
+    public long getCreatedCount() {
+        return createdCount.get();
+    }
+
+    /**
+     * @return 随任务结束而回收的实例数
+     */
+    public long getReclaimedCount() {
+        return reclaimedCount.get();
+    }
+
+    /**
+     * 任务可能在其他线程上被结束，这时线程上的绑定已经失效，在这里解除
+     */
+    private Task currentTask() {
+        Task task = currentTask.get();
+        if (task != null && task.closed) {
+            currentTask.remove();
+            return null;
+        }
+        return task;
+    }
+
+    private Task requireTask() {
+        Task task = currentTask();
+        if (task == null) {
+            throw new IllegalStateException("当前线程没有处于task中，请先调用TaskScope.begin()");
+        }
+        return task;
+    }
+
+    /**
+     * 一次任务区间
+     */
+    public class Task implements AutoCloseable {
+
+        private final String id;
+
+        private final Map<String, Object> beans = new LinkedHashMap<>(8);
+
+        private final Map<String, Runnable> callbacks = new LinkedHashMap<>(8);
+
+        /**
+         * 只在持有任务锁时修改，其他线程可以不加锁读取
+         */
+        private volatile boolean closed;
+
+        private Task(String id) {
+            this.id = id;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * 将当前任务传递给其他线程执行的子任务，子任务结束后解除绑定，但不会结束当前任务
+         */
+        public Runnable wrap(Runnable runnable) {
+            return () -> {
+                Task previous = currentTask.get();
+                currentTask.set(this);
+                try {
+                    runnable.run();
+                } finally {
+                    if (previous == null) {
+                        currentTask.remove();
+                    } else {
+                        currentTask.set(previous);
+                    }
+                }
+            };
+        }
+
+        /**
+         * 在任务锁内调用，任务已结束时不能再创建或注册bean
+         */
+        private void assertOpen() {
+            if (closed) {
+                throw new IllegalStateException("task已经结束: " + id);
+            }
+        }
+
+        /**
+         * 结束任务：按创建的逆序批量执行销毁回调。在其他线程上结束时，
+         * 开启任务的线程下一次访问作用域时解除绑定
+         */
+        @Override
+        public void close() {
+            if (currentTask.get() == this) {
+                currentTask.remove();
+            }
+            List<Runnable> destroyCallbacks;
+            int beanCount;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                destroyCallbacks = new ArrayList<>(callbacks.values());
+                beanCount = beans.size();
+                callbacks.clear();
+                beans.clear();
+            }
+            RuntimeException failure = null;
+            for (int i = destroyCallbacks.size() - 1; i >= 0; i--) {
+                try {
+                    destroyCallbacks.get(i).run();
+                } catch (RuntimeException e) {
+                    if (failure == null) {
+                        failure = e;
+                    } else if (failure != e) {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+            reclaimedCount.addAndGet(beanCount);
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
@@ -19,6 +19,10 @@ public class BookService {
     @Inject
     private BookMapper bookMapper;
 
+    public String getLabel() {
+        return bookMapper.getLabel();
+    }
+
     @Override
     public String toString() {
         return "BookService{" +
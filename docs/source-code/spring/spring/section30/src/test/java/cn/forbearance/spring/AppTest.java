@@ -1,28 +1,154 @@
 package cn.forbearance.spring;
 
+import cn.forbearance.spring.aspect.AuditLog;
+import cn.forbearance.spring.aspect.CachingAspectJAutoProxyCreator;
+import cn.forbearance.spring.aspect.EnableLazyJoinPoint;
+import cn.forbearance.spring.aspect.EnablePointcutMatchCache;
+import cn.forbearance.spring.aspect.PointcutMatchReport;
+import cn.forbearance.spring.aspect.RingBufferAuditLog;
+import cn.forbearance.spring.bean.Blue;
+import cn.forbearance.spring.bean.Book;
 import cn.forbearance.spring.bean.Color;
+import cn.forbearance.spring.bean.CustomFactoryBean;
+import cn.forbearance.spring.bean.CustomerBeanPostProcessor;
+import cn.forbearance.spring.bean.Person;
+import cn.forbearance.spring.bean.Pink;
+import cn.forbearance.spring.bean.Red;
+import cn.forbearance.spring.bean.Yellow;
+import cn.forbearance.spring.condition.ConditionCache;
+import cn.forbearance.spring.condition.CustomImportSelector;
+import cn.forbearance.spring.condition.LazyImport;
+import cn.forbearance.spring.condition.LinuxCondition;
+import cn.forbearance.spring.condition.WindowsCondition;
+import cn.forbearance.spring.config.AopConfig;
 import cn.forbearance.spring.config.BeanConfig;
+import cn.forbearance.spring.config.CustomFilterType;
+import cn.forbearance.spring.config.ScanConfig;
+import cn.forbearance.spring.datasource.LazyDataSource;
+import cn.forbearance.spring.datasource.LockFreeDataSource;
+import cn.forbearance.spring.datasource.PoolProperties;
+import cn.forbearance.spring.env.MappedPropertySource;
+import cn.forbearance.spring.env.ReloadablePropertySource;
+import cn.forbearance.spring.env.ValueRebinder;
+import cn.forbearance.spring.factory.AsyncFactoryBean;
+import cn.forbearance.spring.factory.AsyncFactoryBeanFactory;
+import cn.forbearance.spring.factory.CachingFactoryBean;
+import cn.forbearance.spring.factory.CompiledValueBeanFactory;
+import cn.forbearance.spring.factory.CompiledValueResolver;
+import cn.forbearance.spring.factory.LazyImportBeanFactory;
+import cn.forbearance.spring.factory.ParallelListableBeanFactory;
+import cn.forbearance.spring.factory.PreInstantiationReport;
+import cn.forbearance.spring.factory.ProcessorChainBeanFactory;
+import cn.forbearance.spring.factory.PrototypeInstantiatingBeanFactory;
+import cn.forbearance.spring.factory.SelectiveBeanPostProcessor;
+import cn.forbearance.spring.factory.SingleFlightBeanFactory;
+import cn.forbearance.spring.factory.StartupRecorder;
+import cn.forbearance.spring.factory.StartupRecordingBeanFactory;
 import cn.forbearance.spring.handler.CustomInvocationHandler;
+import cn.forbearance.spring.handler.MethodHandleInvocationHandler;
+import cn.forbearance.spring.proxy.PregeneratedClassStrategy;
+import cn.forbearance.spring.proxy.PregeneratedEnhancer;
+import cn.forbearance.spring.registry.BatchingListableBeanFactory;
+import cn.forbearance.spring.registry.BeanDefinitionBatch;
+import cn.forbearance.spring.registry.BeanDefinitionSnapshot;
+import cn.forbearance.spring.scan.ComponentIndex;
+import cn.forbearance.spring.scan.ParallelCandidateScanner;
+import cn.forbearance.spring.scan.ParallelComponentScan;
+import cn.forbearance.spring.scope.PoolReset;
+import cn.forbearance.spring.scope.PooledScope;
+import cn.forbearance.spring.scope.SlotThreadScope;
+import cn.forbearance.spring.scope.TaskScope;
+import cn.forbearance.spring.service.BookService;
 import cn.forbearance.spring.service.UserService;
 import cn.forbearance.spring.service.impl.UserServiceImpl;
+import com.mchange.v2.c3p0.ComboPooledDataSource;
 import org.apache.ibatis.io.Resources;
 import org.apache.ibatis.session.SqlSession;
 import org.apache.ibatis.session.SqlSessionFactory;
 import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Before;
+import org.aspectj.lang.annotation.Pointcut;
+import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Test;
+import org.springframework.aop.ProxyMethodInvocation;
+import org.springframework.aop.interceptor.ExposeInvocationInterceptor;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.factory.BeanCreationException;
+import org.springframework.beans.factory.BeanNameAware;
+import org.springframework.beans.factory.FactoryBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.EmbeddedValueResolver;
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.cglib.core.DebuggingClassWriter;
 import org.springframework.cglib.proxy.Enhancer;
 import org.springframework.cglib.proxy.MethodInterceptor;
 import org.springframework.cglib.proxy.MethodProxy;
+import org.springframework.context.EnvironmentAware;
 import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Condition;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.annotation.EnableAspectJAutoProxy;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.context.annotation.Scope;
+import org.springframework.context.annotation.ScopedProxyMode;
 import org.springframework.context.support.ClassPathXmlApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+import org.springframework.core.type.filter.TypeFilter;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
 
+import javax.annotation.PostConstruct;
 import javax.sql.DataSource;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntBinaryOperator;
 
 /**
  * @author cristina
@@ -80,14 +206,25 @@ public class AppTest {
 
     @Test
     public void test04() {
-        Enhancer enhancer = new Enhancer();
-        enhancer.setSuperclass(AppTest.class);
+        // 代理类由pom中的proxy-classes在构建期生成，这里直接加载，不再生成字节码
+        Enhancer enhancer = new PregeneratedEnhancer();
+        enhancer.setSuperclass(EnhancedTarget.class);
         enhancer.setCallback(new CustomMethodInterceptor());
 
-        AppTest test = (AppTest) enhancer.create();
-//        test.test();
+        EnhancedTarget target = (EnhancedTarget) enhancer.create();
+        target.test();
         System.out.println("**********");
-        System.out.println(test);
+        System.out.println(target);
+    }
+
+    /**
+     * test04的代理目标，与AppTest分开，测试类的修改不会让构建期生成的代理类过期
+     */
+    public static class EnhancedTarget {
+
+        public void test() {
+
+        }
     }
 
     @Test
@@ -122,4 +259,1407 @@ public class AppTest {
             e.printStackTrace();
         }
     }
+
+    @Test
+    public void test06() throws Exception {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.addBeanFactoryPostProcessor(new SlotThreadScope());
+        RootBeanDefinition beanDefinition = new RootBeanDefinition(Book.class);
+        beanDefinition.setScope(SlotThreadScope.SLOT_THREAD_SCOPE);
+        context.registerBeanDefinition("book", beanDefinition);
+        context.refresh();
+
+        // 同一线程内是同一个实例，不同线程之间相互隔离
+        Book book = context.getBean(Book.class);
+        Assert.assertSame(book, context.getBean(Book.class));
+        Book[] other = new Book[1];
+        Thread thread = new Thread(() -> other[0] = context.getBean(Book.class));
+        thread.start();
+        thread.join();
+        Assert.assertNotSame(book, other[0]);
+        context.close();
+
+        // remove会丢弃销毁回调，destroyCurrentThread执行剩下的回调并清空当前线程
+        SlotThreadScope scope = new SlotThreadScope();
+        AtomicInteger destroyed = new AtomicInteger();
+        Book first = (Book) scope.get("book", Book::new);
+        scope.registerDestructionCallback("book", destroyed::incrementAndGet);
+        Assert.assertSame(first, scope.remove("book"));
+        Book second = (Book) scope.get("book", Book::new);
+        Assert.assertNotSame(first, second);
+        scope.registerDestructionCallback("book", destroyed::incrementAndGet);
+        scope.destroyCurrentThread();
+        Assert.assertEquals(1, destroyed.get());
+        Assert.assertNotSame(second, scope.get("book", Book::new));
+    }
+
+    @Test
+    public void test07() throws Exception {
+        TaskScope taskScope = new TaskScope();
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.getBeanFactory().registerScope(TaskScope.TASK_SCOPE, taskScope);
+        RootBeanDefinition beanDefinition = new RootBeanDefinition(Book.class);
+        beanDefinition.setScope(TaskScope.TASK_SCOPE);
+        beanDefinition.setDestroyMethodName("destroy");
+        context.registerBeanDefinition("book", beanDefinition);
+        context.refresh();
+
+        try (TaskScope.Task task = taskScope.begin()) {
+            Assert.assertEquals(task.getId(), taskScope.getConversationId());
+            Assert.assertSame(context.getBean(Book.class), context.getBean(Book.class));
+        }
+        // task结束后，bean被销毁，线程上不再持有任何实例
+        Assert.assertNull(taskScope.getConversationId());
+        Assert.assertEquals(1, taskScope.getCreatedCount());
+        Assert.assertEquals(1, taskScope.getReclaimedCount());
+
+        // 在其他线程上结束任务，当前线程不能再使用它，下一次访问时解除绑定
+        TaskScope.Task task = taskScope.begin();
+        context.getBean(Book.class);
+        Thread closer = new Thread(task::close);
+        closer.start();
+        closer.join();
+        try {
+            context.getBean(Book.class);
+            Assert.fail("task已经在其他线程上结束");
+        } catch (BeanCreationException expected) {
+            Assert.assertTrue(expected.getCause() instanceof IllegalStateException);
+        }
+        Assert.assertNull(taskScope.getConversationId());
+        Assert.assertEquals(2, taskScope.getReclaimedCount());
+        taskScope.begin().close();
+        context.close();
+    }
+
+    @Test
+    public void test08() throws Exception {
+        // 构建期生成的索引
+        Assert.assertNotNull(ComponentIndex.load(getClass().getClassLoader()).getCandidates(ScanConfig.class.getName()));
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(ScanConfig.class);
+        Assert.assertTrue(context.containsBean("bookController"));
+        Assert.assertTrue(context.containsBean("bookService"));
+        Assert.assertTrue(context.containsBean("bookMapper"));
+        context.close();
+
+        // jar中的扫描结果按jar哈希缓存，第二次扫描直接读取缓存文件
+        File cacheDirectory = Files.createTempDirectory("component-scan").toFile();
+        ParallelCandidateScanner scanner = new ParallelCandidateScanner(new DefaultResourceLoader());
+        scanner.addIncludeFilter(new CustomFilterType());
+        scanner.setCacheDirectory(cacheDirectory);
+        Set<String> candidates = scanner.scan("org.springframework.stereotype");
+        Assert.assertTrue(candidates.contains("org.springframework.stereotype.Controller"));
+        Assert.assertEquals(1, cacheDirectory.listFiles().length);
+        Assert.assertEquals(candidates, scanner.scan("org.springframework.stereotype"));
+        FileSystemUtils.deleteRecursively(cacheDirectory);
+    }
+
+    @Test
+    public void test09() {
+        StandardEnvironment environment = new StandardEnvironment();
+        ConditionCache cache = ConditionCache.forEnvironment(environment);
+        AnnotationConfigApplicationContext context = conditionContext(environment);
+        System.out.println(cache.report());
+        // 每个条件类只真正判断一次，其余都命中缓存
+        Assert.assertEquals(2, cache.getMissCount());
+        Assert.assertTrue(cache.getHitCount() >= 2);
+        context.close();
+
+        // 新增的属性源不影响os.name，继续命中缓存
+        environment.getPropertySources().addLast(new MapPropertySource("unrelated", Collections.singletonMap("foo", "bar")));
+        context = conditionContext(environment);
+        Assert.assertEquals(2, cache.getMissCount());
+        context.close();
+
+        // os.name变化后重新判断
+        environment.getPropertySources().addFirst(new MapPropertySource("os", Collections.singletonMap("os.name", "Windows 10")));
+        context = conditionContext(environment);
+        Assert.assertEquals(4, cache.getMissCount());
+        Assert.assertTrue(context.containsBean("windows"));
+        context.close();
+    }
+
+    private static AnnotationConfigApplicationContext conditionContext(StandardEnvironment environment) {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.setEnvironment(environment);
+        context.register(ConditionConfig.class);
+        context.refresh();
+        return context;
+    }
+
+    @Test
+    public void test10() {
+        BatchingListableBeanFactory beanFactory = new BatchingListableBeanFactory();
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(beanFactory);
+        context.register(BeanConfig.class);
+        context.getEnvironment().setActiveProfiles("test");
+        context.refresh();
+
+        // 容器已经刷新，批量注册与逐个注册的结果一致
+        BeanDefinitionBatch batch = new BeanDefinitionBatch(1000);
+        for (int i = 0; i < 1000; i++) {
+            batch.add("book" + i, new RootBeanDefinition(Book.class));
+        }
+        int before = context.getBeanDefinitionCount();
+        batch.registerTo(beanFactory);
+        Assert.assertEquals(before + 1000, context.getBeanDefinitionCount());
+        Assert.assertEquals(1000, context.getBeanNamesForType(Book.class).length);
+        Assert.assertNotNull(context.getBean("book999", Book.class));
+        context.close();
+    }
+
+    @Test
+    public void test11() {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(new LazyImportBeanFactory());
+        context.register(LazyImportConfig.class);
+        context.refresh();
+        String yellow = Yellow.class.getName();
+        // 刷新完成后，导入的类仍然只有类名
+        AbstractBeanDefinition beanDefinition = (AbstractBeanDefinition) context.getBeanFactory().getMergedBeanDefinition(yellow);
+        Assert.assertFalse(beanDefinition.hasBeanClass());
+
+        // 按类型、按名称获取时才加载
+        Assert.assertNotNull(context.getBean(Yellow.class));
+        Assert.assertTrue(context.getBean(Pink.class.getName()) instanceof Pink);
+        context.close();
+    }
+
+    @Test
+    public void test12() {
+        ParallelListableBeanFactory beanFactory = new ParallelListableBeanFactory();
+        beanFactory.setPreInstantiationParallelism(4);
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(beanFactory);
+        context.register(SlowInitConfig.class);
+        context.refresh();
+
+        PreInstantiationReport report = beanFactory.getPreInstantiationReport();
+        System.out.println(report);
+        Assert.assertTrue(context.getBean("cache", SlowResource.class).initialized);
+        Assert.assertTrue(report.getThreadCount() > 1);
+        List<String> criticalPath = report.getCriticalPath();
+        Assert.assertTrue(criticalPath.contains("pool1") || criticalPath.contains("pool2"));
+        context.close();
+    }
+
+    @Test
+    public void test13() {
+        StartupRecorder recorder = new StartupRecorder(4096);
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(new StartupRecordingBeanFactory(recorder));
+        context.register(Blue.class, CustomerBeanPostProcessor.class, CustomFactoryBean.class);
+        context.refresh();
+        context.getBean("customFactoryBean");
+
+        String folded = recorder.toFoldedStacks();
+        System.out.println(folded);
+        Assert.assertTrue(folded.contains("blue;createBeanInstance "));
+        Assert.assertTrue(folded.contains("blue;invokeInitMethods "));
+        Assert.assertTrue(folded.contains("blue;@PostConstruct "));
+        Assert.assertTrue(folded.contains("blue;postProcessAfterInitialization(CustomerBeanPostProcessor) "));
+        Assert.assertTrue(folded.contains("customFactoryBean;FactoryBean.getObject "));
+        String json = recorder.toJson();
+        Assert.assertTrue(json.startsWith("{\"traceEvents\":[{"));
+        Assert.assertEquals(0, recorder.getDroppedCount());
+        context.close();
+    }
+
+    @Test
+    public void test14() {
+        ProcessorChainBeanFactory beanFactory = new ProcessorChainBeanFactory();
+        BookOnlyPostProcessor processor = new BookOnlyPostProcessor();
+        beanFactory.addBeanPostProcessor(processor);
+        RootBeanDefinition book = new RootBeanDefinition(Book.class);
+        book.setScope(RootBeanDefinition.SCOPE_PROTOTYPE);
+        beanFactory.registerBeanDefinition("book", book);
+        RootBeanDefinition blue = new RootBeanDefinition(Blue.class);
+        blue.setScope(RootBeanDefinition.SCOPE_PROTOTYPE);
+        beanFactory.registerBeanDefinition("blue", blue);
+
+        for (int i = 0; i < 3; i++) {
+            beanFactory.getBean("book");
+            beanFactory.getBean("blue");
+        }
+        // 只处理Book，且只需要初始化之后的回调
+        Assert.assertEquals(3, processor.count);
+    }
+
+    @Test
+    public void test15() {
+        AtomicInteger instantiations = new AtomicInteger();
+        PrototypeInstantiatingBeanFactory beanFactory = new PrototypeInstantiatingBeanFactory() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected BeanWrapper createBeanInstance(String beanName, RootBeanDefinition mbd, Object[] args) {
+                if ("widget".equals(beanName)) {
+                    instantiations.incrementAndGet();
+                }
+                return super.createBeanInstance(beanName, mbd, args);
+            }
+        };
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(beanFactory);
+        context.register(PrototypeConfig.class);
+        context.refresh();
+
+        Widget first = context.getBean(Widget.class);
+        for (int i = 0; i < 3; i++) {
+            Widget widget = context.getBean(Widget.class);
+            Assert.assertNotSame(first, widget);
+            Assert.assertEquals("widget", widget.beanName);
+            Assert.assertNotNull(widget.environment);
+            Assert.assertTrue(widget.started);
+        }
+        // 只有第一次经过Spring的构造函数/工厂方法解析
+        Assert.assertEquals(1, instantiations.get());
+        context.close();
+    }
+
+    @Test
+    public void test16() throws Exception {
+        PooledScope pooledScope = new PooledScope(2, 1, 100);
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.getBeanFactory().registerScope(PooledScope.POOLED_SCOPE, pooledScope);
+        RootBeanDefinition beanDefinition = new RootBeanDefinition(Buffer.class);
+        beanDefinition.setScope(PooledScope.POOLED_SCOPE);
+        context.registerBeanDefinition("buffer", beanDefinition);
+        context.refresh();
+
+        Buffer first;
+        PooledScope.Lease lease = pooledScope.borrow();
+        try {
+            first = context.getBean(Buffer.class);
+            Assert.assertSame(first, context.getBean(Buffer.class));
+            first.content.append("used");
+
+            // 唯一的实例已被借出，其他线程等待超时
+            Throwable[] failure = new Throwable[1];
+            Thread thread = new Thread(() -> {
+                try {
+                    pooledScope.execute(() -> context.getBean(Buffer.class));
+                } catch (Throwable e) {
+                    failure[0] = e;
+                }
+            });
+            thread.start();
+            thread.join();
+            Assert.assertTrue(failure[0] instanceof BeanCreationException);
+            Assert.assertTrue(failure[0].getCause() instanceof IllegalStateException);
+        } finally {
+            lease.close();
+        }
+        // 归还时已重置，再次借用拿到的是同一个实例
+        Buffer second = pooledScope.execute(() -> context.getBean(Buffer.class));
+        Assert.assertSame(first, second);
+        Assert.assertEquals(0, second.content.length());
+
+        PooledScope.Stats stats = pooledScope.getStats("buffer");
+        System.out.println(stats);
+        Assert.assertEquals(1, stats.getHits());
+        Assert.assertEquals(1, stats.getMisses());
+        Assert.assertEquals(1, stats.getWaits());
+        Assert.assertEquals(1, stats.getIdle());
+
+        // 在其他线程上结束借用，实例已归还，开始借用的线程可以再次借用
+        PooledScope.Lease crossed = pooledScope.borrow();
+        Assert.assertSame(first, context.getBean(Buffer.class));
+        Thread closer = new Thread(crossed::close);
+        closer.start();
+        closer.join();
+        Assert.assertEquals(1, pooledScope.getStats("buffer").getIdle());
+        Assert.assertSame(first, pooledScope.execute(() -> context.getBean(Buffer.class)));
+        Assert.assertEquals(1, pooledScope.getStats("buffer").getTotal());
+        context.close();
+    }
+
+    @Test
+    public void test17() throws Exception {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(new SingleFlightBeanFactory());
+        RootBeanDefinition slow = new RootBeanDefinition(SlowFactoryBean.class);
+        slow.setLazyInit(true);
+        context.registerBeanDefinition("slow", slow);
+        RootBeanDefinition red = new RootBeanDefinition(Red.class);
+        red.setLazyInit(true);
+        context.registerBeanDefinition("red", red);
+        context.registerBeanDefinition("cached", new RootBeanDefinition(TtlFactoryBean.class));
+        context.refresh();
+
+        SlowFactoryBean slowFactory = context.getBean("&slow", SlowFactoryBean.class);
+        ExecutorService executor = Executors.newFixedThreadPool(9);
+        try {
+            List<Future<Object>> products = new ArrayList<>();
+            products.add(executor.submit(() -> context.getBean("slow")));
+            Assert.assertTrue(slowFactory.entered.await(5, TimeUnit.SECONDS));
+            for (int i = 1; i < 8; i++) {
+                products.add(executor.submit(() -> context.getBean("slow")));
+            }
+            // getObject期间不持有单例锁，其他单例照常创建；Spring原来的方式会一直阻塞到getObject返回
+            Assert.assertNotNull(executor.submit(() -> context.getBean("red")).get(5, TimeUnit.SECONDS));
+            slowFactory.release.countDown();
+            for (Future<Object> product : products) {
+                Assert.assertSame(products.get(0).get(), product.get());
+            }
+            Assert.assertEquals(1, slowFactory.count.get());
+
+            // 多实例FactoryBean的产品在过期前复用，过期后同时获取的线程只有一个调用getObject
+            TtlFactoryBean ttlFactory = context.getBean("&cached", TtlFactoryBean.class);
+            Object cached = context.getBean("cached");
+            Assert.assertSame(cached, context.getBean("cached"));
+            Thread.sleep(TtlFactoryBean.TTL_MILLIS + 100);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Object>> refreshed = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                refreshed.add(executor.submit(() -> {
+                    start.await();
+                    return context.getBean("cached");
+                }));
+            }
+            start.countDown();
+            for (Future<Object> product : refreshed) {
+                Assert.assertNotSame(cached, product.get());
+                Assert.assertSame(refreshed.get(0).get(), product.get());
+            }
+            Assert.assertEquals(2, ttlFactory.count.get());
+        } finally {
+            slowFactory.release.countDown();
+            executor.shutdownNow();
+        }
+        context.close();
+    }
+
+    static class SlowFactoryBean implements FactoryBean<Red> {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        private final CountDownLatch entered = new CountDownLatch(1);
+
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public Red getObject() throws Exception {
+            count.incrementAndGet();
+            entered.countDown();
+            release.await();
+            return new Red();
+        }
+
+        @Override
+        public Class<?> getObjectType() {
+            return Red.class;
+        }
+
+        @Override
+        public boolean isSingleton() {
+            return true;
+        }
+    }
+
+    static class TtlFactoryBean implements CachingFactoryBean<Red> {
+
+        private static final long TTL_MILLIS = 500;
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Red getObject() throws Exception {
+            count.incrementAndGet();
+            // 让同时获取的线程都赶上这一次创建
+            Thread.sleep(50);
+            return new Red();
+        }
+
+        @Override
+        public Class<?> getObjectType() {
+            return Red.class;
+        }
+
+        @Override
+        public boolean isSingleton() {
+            return false;
+        }
+
+        @Override
+        public long getObjectTtlMillis() {
+            return TTL_MILLIS;
+        }
+    }
+
+    @Test
+    public void test18() {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(new AsyncFactoryBeanFactory());
+        context.register(AsyncConfig.class);
+        context.refresh();
+
+        AsyncRedFactoryBean factory = context.getBean("&red", AsyncRedFactoryBean.class);
+        RedConsumer consumer = context.getBean(RedConsumer.class);
+        // 排在前面的bean创建之前产品已经开始创建
+        Assert.assertTrue(factory.startedAt < consumer.createdAt);
+        Assert.assertSame(context.getBean("red"), consumer.red);
+        Assert.assertEquals(1, factory.count.get());
+        context.close();
+
+        // 产品创建失败时抛出原始异常，下一次获取时重新创建
+        try {
+            new FailingOnceFactoryBean().getObject();
+            Assert.fail();
+        } catch (Exception ex) {
+            Assert.assertTrue(ex instanceof IllegalStateException);
+        }
+        context = new AnnotationConfigApplicationContext(new AsyncFactoryBeanFactory());
+        context.registerBeanDefinition("failingOnce", new RootBeanDefinition(FailingOnceFactoryBean.class));
+        context.refresh();
+        try {
+            context.getBean("failingOnce");
+            Assert.fail();
+        } catch (BeanCreationException ex) {
+            Assert.assertTrue(ex.getCause() instanceof IllegalStateException);
+        }
+        Assert.assertTrue(context.getBean("failingOnce") instanceof Red);
+        Assert.assertEquals(2, context.getBean("&failingOnce", FailingOnceFactoryBean.class).count.get());
+        context.close();
+    }
+
+    @Configuration
+    static class AsyncConfig {
+
+        @Bean
+        public RedConsumer redConsumer() {
+            return new RedConsumer();
+        }
+
+        @Bean
+        public AsyncRedFactoryBean red() {
+            return new AsyncRedFactoryBean();
+        }
+    }
+
+    static class RedConsumer {
+
+        private final long createdAt = System.nanoTime();
+
+        @Autowired
+        private Red red;
+    }
+
+    static class FailingOnceFactoryBean implements AsyncFactoryBean<Red> {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public CompletableFuture<Red> getObjectAsync() {
+            CompletableFuture<Red> future = new CompletableFuture<>();
+            if (count.incrementAndGet() == 1) {
+                future.completeExceptionally(new IllegalStateException("第一次创建失败"));
+            } else {
+                future.complete(new Red());
+            }
+            return future;
+        }
+
+        @Override
+        public Class<?> getObjectType() {
+            return Red.class;
+        }
+
+        @Override
+        public boolean isSingleton() {
+            return true;
+        }
+    }
+
+    static class AsyncRedFactoryBean implements AsyncFactoryBean<Red> {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        private volatile long startedAt;
+
+        @Override
+        public CompletableFuture<Red> getObjectAsync() {
+            count.incrementAndGet();
+            startedAt = System.nanoTime();
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return new Red();
+            });
+        }
+
+        @Override
+        public Class<?> getObjectType() {
+            return Red.class;
+        }
+
+        @Override
+        public boolean isSingleton() {
+            return true;
+        }
+    }
+
+    @Test
+    public void test19() {
+        CompiledValueBeanFactory beanFactory = new CompiledValueBeanFactory();
+        AnnotationConfigApplicationContext compiled = valueContext(beanFactory);
+        AnnotationConfigApplicationContext plain = valueContext(new DefaultListableBeanFactory());
+
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(plain.getBean(Values.class).toString(), compiled.getBean(Values.class).toString());
+        }
+        Values values = compiled.getBean(Values.class);
+        Assert.assertEquals("Person{name='forbearance', age=22}", compiled.getBean(Person.class).toString());
+        Assert.assertEquals("name=forbearance, age=22", values.description);
+        Assert.assertEquals("FORBEARANCE", values.upperName);
+        Assert.assertEquals(18, values.limit);
+
+        String template = "操作系统: ${os.name}，age=#{22}";
+        Assert.assertEquals(new EmbeddedValueResolver(beanFactory).resolveStringValue(template),
+                new CompiledValueResolver(beanFactory).resolveStringValue(template));
+        compiled.close();
+        plain.close();
+    }
+
+    private static AnnotationConfigApplicationContext valueContext(DefaultListableBeanFactory beanFactory) {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(beanFactory);
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("values",
+                Collections.<String, Object>singletonMap("person.name", "forbearance")));
+        RootBeanDefinition person = new RootBeanDefinition(Person.class);
+        person.setScope(RootBeanDefinition.SCOPE_PROTOTYPE);
+        context.registerBeanDefinition("person", person);
+        RootBeanDefinition values = new RootBeanDefinition(Values.class);
+        values.setScope(RootBeanDefinition.SCOPE_PROTOTYPE);
+        context.registerBeanDefinition("values", values);
+        context.refresh();
+        return context;
+    }
+
+    static class Values {
+
+        @Value("name=${person.name}, age=#{20 + 2}")
+        private String description;
+
+        @Value("#{'${person.name}'.toUpperCase()}")
+        private String upperName;
+
+        @Value("${person.limit:18}")
+        private int limit;
+
+        private String home;
+
+        @Value("${user.home}")
+        public void setHome(String home) {
+            this.home = home;
+        }
+
+        @Override
+        public String toString() {
+            return description + "," + upperName + "," + limit + "," + home;
+        }
+    }
+
+    @Test
+    public void test20() throws IOException {
+        File directory = Files.createTempDirectory("mapped-properties").toFile();
+        File file = new File(directory, "application.properties");
+        String content = "# comment \\\nnot.continued=x\n! bang\n"
+                + "db.user=root\n"
+                + "db.password = secret  \r\n"
+                + "key\\ with\\ spaces : value\n"
+                + "multi = first \\\n        second \\\r\n   third\n"
+                + "empty\n"
+                + "colon:value:with:colons\n"
+                + "unicode=\\u4e2d\\u6587\n"
+                + "dup=1\ndup=2\n"
+                + "  indented \\\n  = yes\n"
+                + "backslash=ends with \\\\\n"
+                + "last=no newline";
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.ISO_8859_1));
+        Properties expected = new Properties();
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            expected.load(in);
+        }
+
+        MappedPropertySource source = new MappedPropertySource("mapped", file);
+        Assert.assertEquals(expected.size(), source.getPropertyNames().length);
+        for (String name : expected.stringPropertyNames()) {
+            Assert.assertEquals(name, expected.getProperty(name), source.getProperty(name));
+        }
+        Assert.assertNull(source.getProperty("missing"));
+
+        // 文件没有变化时直接使用保存的索引
+        File index = new File(directory, "application.properties.idx");
+        Assert.assertTrue(index.isFile());
+        long indexModified = index.lastModified();
+        Assert.assertEquals("root", new MappedPropertySource("mapped", file).getProperty("db.user"));
+        Assert.assertEquals(indexModified, index.lastModified());
+
+        Files.write(file.toPath(), "db.user=admin\n".getBytes(StandardCharsets.ISO_8859_1));
+        Assert.assertEquals("admin", new MappedPropertySource("mapped", file).getProperty("db.user"));
+
+        // 长度和修改时间都不变，按内容判断索引已经失效
+        long lastModified = file.lastModified();
+        Files.write(file.toPath(), "db.pass=guest\n".getBytes(StandardCharsets.ISO_8859_1));
+        Assert.assertTrue(file.setLastModified(lastModified));
+        source = new MappedPropertySource("mapped", file);
+        Assert.assertNull(source.getProperty("db.user"));
+        Assert.assertEquals("guest", source.getProperty("db.pass"));
+        // 编码不同时重新生成
+        Assert.assertEquals("guest", new MappedPropertySource("mapped", file, StandardCharsets.UTF_8).getProperty("db.pass"));
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Test
+    public void test21() throws Exception {
+        File directory = Files.createTempDirectory("reloadable-properties").toFile();
+        File file = new File(directory, "application.properties");
+        Files.write(file.toPath(), "person.name=alpha\nother=1\n".getBytes(StandardCharsets.ISO_8859_1));
+        ReloadablePropertySource source = new ReloadablePropertySource("reloadable", file);
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(source);
+        context.register(ValueRebinder.class);
+        context.registerBeanDefinition("person", new RootBeanDefinition(Person.class));
+        context.registerBeanDefinition("unrelated", new RootBeanDefinition(Unrelated.class));
+        context.refresh();
+
+        Person person = context.getBean(Person.class);
+        Unrelated unrelated = context.getBean(Unrelated.class);
+        Assert.assertEquals("alpha", person.getName());
+        Assert.assertEquals(1, context.getBean(ValueRebinder.class).getInjectionSiteCount("person.name"));
+
+        // 只重新注入用到person.name的字段
+        Files.write(file.toPath(), "person.name=beta\nother=1\n".getBytes(StandardCharsets.ISO_8859_1));
+        Assert.assertEquals(Collections.singleton("person.name"), source.reload());
+        Assert.assertEquals("beta", person.getName());
+        Assert.assertEquals(Integer.valueOf(22), person.getAge());
+        Assert.assertEquals(1, unrelated.calls);
+
+        source.watch();
+        Files.write(file.toPath(), "person.name=gamma\nother=2\n".getBytes(StandardCharsets.ISO_8859_1));
+        // 等待断言的结果本身，而不是重新注入的先后顺序
+        long deadline = System.currentTimeMillis() + 30000;
+        while (!("gamma".equals(person.getName()) && "2".equals(unrelated.other))
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        Assert.assertEquals("gamma", person.getName());
+        Assert.assertEquals("2", unrelated.other);
+        source.close();
+        context.close();
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    static class Unrelated {
+
+        private volatile String other;
+
+        private volatile int calls;
+
+        @Value("${other}")
+        public void setOther(String other) {
+            this.other = other;
+            calls++;
+        }
+    }
+
+    @Test
+    public void test22() throws Exception {
+        File directory = Files.createTempDirectory("snapshot").toFile();
+        AnnotationConfigApplicationContext first = new AnnotationConfigApplicationContext();
+        first.getEnvironment().setActiveProfiles("test");
+        Assert.assertFalse(BeanDefinitionSnapshot.register(first, directory, BeanConfig.class));
+        first.refresh();
+        Assert.assertEquals(1, directory.listFiles().length);
+
+        AnnotationConfigApplicationContext second = new AnnotationConfigApplicationContext();
+        second.getEnvironment().setActiveProfiles("test");
+        Assert.assertTrue(BeanDefinitionSnapshot.register(second, directory, BeanConfig.class));
+        second.refresh();
+        Assert.assertEquals(new TreeSet<>(Arrays.asList(first.getBeanDefinitionNames())),
+                new TreeSet<>(Arrays.asList(second.getBeanDefinitionNames())));
+        Assert.assertArrayEquals(new String[]{"testDataSource"}, second.getBeanNamesForType(DataSource.class));
+        // @PropertySource重新加载，配置类仍然被增强
+        Assert.assertEquals("root", second.getBean(DataSource.class).unwrap(ComboPooledDataSource.class).getUser());
+        Assert.assertSame(second.getBean(Color.class), second.getBean(BeanConfig.class).color());
+        first.close();
+        second.close();
+
+        // 其他profile使用单独的快照
+        AnnotationConfigApplicationContext dev = new AnnotationConfigApplicationContext();
+        dev.getEnvironment().setActiveProfiles("dev");
+        Assert.assertFalse(BeanDefinitionSnapshot.register(dev, directory, BeanConfig.class));
+        dev.refresh();
+        Assert.assertArrayEquals(new String[]{"devDataSource"}, dev.getBeanNamesForType(DataSource.class));
+        dev.close();
+        Assert.assertEquals(2, directory.listFiles().length);
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Test
+    public void test23() throws Exception {
+        PoolProperties properties = new PoolProperties();
+        properties.setJdbcUrl("jdbc:h2:mem:pool23;DB_CLOSE_DELAY=-1");
+        properties.setUser("sa");
+        properties.setPassword("");
+        properties.setMaxSize(2);
+        // 并发部分8个线程共用2个连接，超时留出余量，避免持有连接的线程被调度器挂起时误报
+        properties.setBorrowTimeoutMillis(1000);
+        LockFreeDataSource dataSource = new LockFreeDataSource(properties);
+
+        Connection first = dataSource.getConnection();
+        Connection second = dataSource.getConnection();
+        Assert.assertEquals(2, dataSource.getTotalConnections());
+        try {
+            dataSource.getConnection();
+            Assert.fail();
+        } catch (SQLTimeoutException ex) {
+            // 连接池已满
+        }
+        // 归还的连接直接交给等待的线程
+        CompletableFuture<Connection> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return dataSource.getConnection();
+            } catch (SQLException ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+        Thread.sleep(50);
+        first.setAutoCommit(false);
+        first.close();
+        Assert.assertTrue(first.isClosed());
+        Connection handedOff = waiting.get();
+        Assert.assertTrue(handedOff.getAutoCommit());
+        handedOff.close();
+        second.close();
+        Assert.assertEquals(2, dataSource.getIdleConnections());
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        AtomicInteger queries = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(executor.submit(() -> {
+                for (int j = 0; j < 500; j++) {
+                    try (Connection connection = dataSource.getConnection();
+                         ResultSet rs = connection.createStatement().executeQuery("SELECT 1")) {
+                        rs.next();
+                        queries.addAndGet(rs.getInt(1));
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        Assert.assertEquals(4000, queries.get());
+        Assert.assertEquals(2, dataSource.getTotalConnections());
+
+        // 归还时恢复被修改的属性
+        Connection modified = dataSource.getConnection();
+        int isolation = modified.getTransactionIsolation();
+        modified.setReadOnly(true);
+        modified.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+        modified.close();
+        try (Connection reused = dataSource.getConnection()) {
+            Assert.assertFalse(reused.isReadOnly());
+            Assert.assertEquals(isolation, reused.getTransactionIsolation());
+        }
+        // 出现连接异常(08xxx)的连接归还时直接关闭
+        Connection broken = dataSource.getConnection();
+        try {
+            broken.createStatement().execute("CALL SIGNAL('08S01', 'communication link failure')");
+            Assert.fail();
+        } catch (SQLException ex) {
+            Assert.assertTrue(ex.getSQLState().startsWith("08"));
+        }
+        broken.close();
+        Assert.assertEquals(1, dataSource.getTotalConnections());
+        dataSource.close();
+        Assert.assertEquals(0, dataSource.getTotalConnections());
+
+        // 通过配置切换BeanConfig中的连接池
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().setActiveProfiles("test");
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("pool",
+                Collections.<String, Object>singletonMap("db.pool.type", "lockfree")));
+        context.register(BeanConfig.class);
+        context.refresh();
+        Assert.assertTrue(context.getBean(DataSource.class).isWrapperFor(LockFreeDataSource.class));
+        context.close();
+    }
+
+    @Test
+    public void test24() throws Exception {
+        PoolProperties properties = new PoolProperties();
+        properties.setJdbcUrl("jdbc:h2:mem:lazy24;DB_CLOSE_DELAY=-1");
+        properties.setUser("sa");
+        properties.setPassword("");
+        AtomicInteger created = new AtomicInteger();
+        LazyDataSource warm = new LazyDataSource(() -> {
+            created.incrementAndGet();
+            return new LockFreeDataSource(properties);
+        });
+        warm.setWarmUpConnections(3);
+        LazyDataSource cold = new LazyDataSource(() -> {
+            created.incrementAndGet();
+            return new LockFreeDataSource(properties);
+        });
+        // 刷新之前已经被使用过的数据源，刷新后仍然预热
+        LazyDataSource early = new LazyDataSource(() -> new LockFreeDataSource(properties));
+        early.setWarmUpConnections(2);
+        early.getConnection().close();
+        Assert.assertFalse(early.isReady());
+
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.getBeanFactory().registerSingleton("warm", warm);
+        context.getBeanFactory().registerSingleton("cold", cold);
+        context.getBeanFactory().registerSingleton("early", early);
+        context.refresh();
+        Assert.assertEquals(2, early.readiness().get(10, TimeUnit.SECONDS).unwrap(LockFreeDataSource.class).getTotalConnections());
+        // 刷新完成后在后台预热，没有预热的数据源直到第一次使用才创建连接池
+        Assert.assertEquals(3, warm.readiness().get(10, TimeUnit.SECONDS).unwrap(LockFreeDataSource.class).getTotalConnections());
+        Assert.assertTrue(warm.isReady());
+        Assert.assertFalse(cold.isInitialized());
+        Assert.assertFalse(cold.isReady());
+        Assert.assertEquals(1, created.get());
+
+        try (Connection connection = cold.getConnection()) {
+            Assert.assertFalse(connection.isClosed());
+        }
+        Assert.assertTrue(cold.isReady());
+        Assert.assertEquals(2, created.get());
+        LockFreeDataSource pool = cold.unwrap(LockFreeDataSource.class);
+        context.close();
+        cold.close();
+        warm.close();
+        early.close();
+        Assert.assertEquals(0, pool.getTotalConnections());
+        try {
+            cold.getConnection();
+            Assert.fail();
+        } catch (SQLException ex) {
+            // 已关闭
+        }
+    }
+
+    @Test
+    public void test25() {
+        for (boolean lazy : new boolean[]{false, true}) {
+            AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+            context.registerBeanDefinition("auditLog", new RootBeanDefinition(RecordingAuditLog.class));
+            context.register(AopConfig.class);
+            if (lazy) {
+                context.register(LazyJoinPointConfig.class);
+            }
+            context.refresh();
+            BookService bookService = context.getBean(BookService.class);
+            RecordingAuditLog auditLog = context.getBean(RecordingAuditLog.class);
+            Assert.assertEquals("1", bookService.getLabel());
+            Assert.assertEquals(Collections.singletonList("BookService.getLabel()"), auditLog.signatures);
+            // 默认的通知把连接点放进调用的属性Map，按需创建的不会
+            Assert.assertEquals(!lazy, auditLog.shared);
+            context.close();
+        }
+    }
+
+    @EnableLazyJoinPoint
+    @Configuration
+    static class LazyJoinPointConfig {
+    }
+
+    static class RecordingAuditLog implements AuditLog {
+
+        private final List<String> signatures = new ArrayList<>();
+
+        private boolean shared;
+
+        @Override
+        public void record(JoinPoint joinPoint) {
+            signatures.add(joinPoint.getSignature().toShortString());
+            ProxyMethodInvocation invocation = (ProxyMethodInvocation) ExposeInvocationInterceptor.currentInvocation();
+            shared = invocation.getUserAttribute(JoinPoint.class.getName()) != null;
+        }
+    }
+
+    @Test
+    public void test26() throws Exception {
+        File directory = Files.createTempDirectory("audit").toFile();
+        for (RingBufferAuditLog.OverflowPolicy policy : RingBufferAuditLog.OverflowPolicy.values()) {
+            File file = new File(directory, policy + ".log");
+            RingBufferAuditLog auditLog = new RingBufferAuditLog(file, 16, policy, 4);
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 20000; j++) {
+                        auditLog.record("cn.forbearance.spring.service.BookService", "getLabel");
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            executor.shutdown();
+            auditLog.close();
+
+            List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+            Assert.assertEquals(80000, auditLog.getEnqueuedCount() + auditLog.getDroppedCount());
+            Assert.assertEquals(auditLog.getEnqueuedCount(), auditLog.getWrittenCount());
+            Assert.assertEquals(auditLog.getWrittenCount(), lines.size());
+            Assert.assertTrue(lines.get(0).matches("\\d+ cn\\.forbearance\\.spring\\.service\\.BookService\\.getLabel"));
+            if (policy == RingBufferAuditLog.OverflowPolicy.BLOCK) {
+                Assert.assertEquals(0, auditLog.getDroppedCount());
+            }
+            // 关闭后的记录被丢弃
+            auditLog.record("type", "method");
+            Assert.assertEquals(80001, auditLog.getEnqueuedCount() + auditLog.getDroppedCount());
+        }
+
+        // 关闭时仍在发布的记录要么写入文件，要么计为丢弃
+        File racing = new File(directory, "racing.log");
+        RingBufferAuditLog racingLog = new RingBufferAuditLog(racing, 16, RingBufferAuditLog.OverflowPolicy.BLOCK, 4);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            futures.add(executor.submit(() -> {
+                for (int j = 0; j < 20000; j++) {
+                    racingLog.record("cn.forbearance.spring.service.BookService", "getLabel");
+                }
+            }));
+        }
+        Thread.sleep(5);
+        racingLog.close();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        Assert.assertEquals(80000, racingLog.getEnqueuedCount() + racingLog.getDroppedCount());
+        Assert.assertEquals(racingLog.getEnqueuedCount(), racingLog.getWrittenCount());
+        Assert.assertEquals(racingLog.getWrittenCount(), Files.readAllLines(racing.toPath(), StandardCharsets.UTF_8).size());
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Test
+    public void test27() {
+        // 其他测试可能已经缓存了BookService的匹配结果
+        CachingAspectJAutoProxyCreator.clearMatchCache(BookService.class);
+        PointcutMatchReport.AspectStats first = null;
+        for (int i = 0; i < 2; i++) {
+            AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+            context.registerBeanDefinition("auditLog", new RootBeanDefinition(RecordingAuditLog.class));
+            RootBeanDefinition prototype = new RootBeanDefinition(BookService.class);
+            prototype.setScope(BeanDefinition.SCOPE_PROTOTYPE);
+            context.registerBeanDefinition("prototypeBookService", prototype);
+            context.register(AopConfig.class, PointcutMatchCacheConfig.class);
+            context.refresh();
+            for (int j = 0; j < 3; j++) {
+                BookService bookService = (BookService) context.getBean("prototypeBookService");
+                Assert.assertTrue(AopUtils.isAopProxy(bookService));
+                Assert.assertEquals("1", bookService.getLabel());
+            }
+            Assert.assertEquals(3, context.getBean(RecordingAuditLog.class).signatures.size());
+            PointcutMatchReport.AspectStats stats = context.getBean(CachingAspectJAutoProxyCreator.class)
+                    .getPointcutMatchReport().getAspect("logAspect");
+            if (i == 0) {
+                first = stats;
+                Assert.assertTrue(stats.getEvaluations() > 0);
+                Assert.assertTrue(stats.getCacheHits() > 0);
+            } else {
+                // 第二个容器中的类都已经匹配过
+                Assert.assertEquals(0, stats.getEvaluations());
+                Assert.assertEquals(first.getEvaluations() + first.getCacheHits(), stats.getCacheHits());
+            }
+            context.close();
+        }
+    }
+
+    @EnablePointcutMatchCache
+    @Configuration
+    static class PointcutMatchCacheConfig {
+    }
+
+    @Test
+    public void test28() throws Exception {
+        List<String> calls = new ArrayList<>();
+        UserService target = () -> calls.add("add");
+        MethodHandleInvocationHandler handler = new MethodHandleInvocationHandler(target) {
+            @Override
+            protected void before(Method method) {
+                calls.add("before " + method.getName());
+            }
+
+            @Override
+            protected void after(Method method) {
+                calls.add("after " + method.getName());
+            }
+        };
+        UserService proxy = (UserService) handler.getProxy();
+        proxy.add();
+        proxy.add();
+        Assert.assertEquals(Arrays.asList("before add", "add", "after add", "before add", "add", "after add"), calls);
+        Assert.assertEquals(target.hashCode(), proxy.hashCode());
+        // 同一个目标类的代理共用代理类
+        Object other = new MethodHandleInvocationHandler(new UserServiceImpl()).getProxy();
+        Assert.assertSame(other.getClass(), new MethodHandleInvocationHandler(new UserServiceImpl()).getProxy().getClass());
+
+        // 目标方法的异常原样抛出
+        Callable<String> failing = () -> {
+            throw new IOException("boom");
+        };
+        @SuppressWarnings("unchecked")
+        Callable<String> failingProxy = (Callable<String>) new MethodHandleInvocationHandler(failing).getProxy();
+        try {
+            failingProxy.call();
+            Assert.fail();
+        } catch (IOException ex) {
+            Assert.assertEquals("boom", ex.getMessage());
+        }
+
+        // 基本类型的参数和返回值由生成的调用类装箱、拆箱
+        IntBinaryOperator sum = (IntBinaryOperator) new MethodHandleInvocationHandler((IntBinaryOperator) Integer::sum).getProxy();
+        Assert.assertEquals(3, sum.applyAsInt(1, 2));
+        // 非public的接口、超过3个参数时通过MethodHandle调用
+        Formatter formatter = (Formatter) new MethodHandleInvocationHandler(
+                (Formatter) (name, times, loud, suffix) -> name + times + loud + suffix).getProxy();
+        Assert.assertEquals("a2true!", formatter.format("a", 2, true, '!'));
+    }
+
+    interface Formatter {
+
+        String format(String name, int times, boolean loud, char suffix);
+    }
+
+    @Test
+    public void test29() {
+        // 代理类由exec-maven-plugin生成，在IDE中直接运行时跳过
+        Assume.assumeTrue(getClass().getClassLoader().getResource(PregeneratedClassStrategy.INDEX_LOCATION) != null);
+        AtomicInteger generated = new AtomicInteger();
+        PregeneratedClassStrategy strategy = new PregeneratedClassStrategy() {
+            @Override
+            protected DebuggingClassWriter getClassVisitor() throws Exception {
+                generated.incrementAndGet();
+                return super.getClassVisitor();
+            }
+        };
+        List<String> calls = new ArrayList<>();
+        MethodInterceptor interceptor = (o, method, args, methodProxy) -> {
+            calls.add(method.getName());
+            return methodProxy.invokeSuper(o, args);
+        };
+
+        Enhancer enhancer = new PregeneratedEnhancer(strategy);
+        enhancer.setSuperclass(PregeneratedTarget.class);
+        enhancer.setCallback(interceptor);
+        PregeneratedTarget target = (PregeneratedTarget) enhancer.create();
+        Assert.assertEquals("hello cglib", target.greet("cglib"));
+        Assert.assertEquals(Collections.singletonList("greet"), calls);
+        Assert.assertTrue(target.getClass().getName().contains("ByPregeneratedCGLIB"));
+        // 代理类和调用父类方法用到的FastClass都来自构建期
+        Assert.assertEquals(0, generated.get());
+
+        // 没有在构建期生成的目标退回到运行时生成
+        enhancer = new PregeneratedEnhancer(strategy);
+        enhancer.setSuperclass(RuntimeGeneratedTarget.class);
+        enhancer.setCallback(interceptor);
+        Assert.assertEquals("bye cglib", ((RuntimeGeneratedTarget) enhancer.create()).greet("cglib"));
+        Assert.assertEquals(Arrays.asList("greet", "greet"), calls);
+        Assert.assertTrue(generated.get() > 0);
+    }
+
+    public static class PregeneratedTarget {
+
+        public String greet(String name) {
+            return "hello " + name;
+        }
+    }
+
+    public static class RuntimeGeneratedTarget {
+
+        public String greet(String name) {
+            return "bye " + name;
+        }
+    }
+
+    @Test
+    public void test30() {
+        CachingAspectJAutoProxyCreator.clearMatchCache(Book.class);
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.registerBeanDefinition("cachedBook", new RootBeanDefinition(Book.class));
+        context.registerBeanDefinition("plainBook", new RootBeanDefinition(Book.class));
+        context.register(BeanNameAspectConfig.class, PointcutMatchCacheConfig.class);
+        context.refresh();
+        // 命名切点解析后是bean()，同一个类的两个bean分别匹配
+        Assert.assertTrue(AopUtils.isAopProxy(context.getBean("cachedBook")));
+        Assert.assertFalse(AopUtils.isAopProxy(context.getBean("plainBook")));
+        context.close();
+    }
+
+    @EnableAspectJAutoProxy
+    @Configuration
+    static class BeanNameAspectConfig {
+
+        @Bean
+        public BeanNameAspect beanNameAspect() {
+            return new BeanNameAspect();
+        }
+    }
+
+    @Aspect
+    static class BeanNameAspect {
+
+        @Pointcut("bean(cached*)")
+        public void cachedBeans() {
+        }
+
+        @Before("cachedBeans()")
+        public void before() {
+        }
+    }
+
+    @Test
+    public void test31() throws Exception {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("scan.prefix", AppTest.class.getName() + "$Scanned");
+        properties.put("scan.conditional", "false");
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("scan", properties));
+        context.register(ParallelScanConfig.class);
+        context.refresh();
+        // CUSTOM过滤器收到了Environment
+        Assert.assertTrue(context.containsBean("scannedComponent"));
+        // 与@ComponentScan一样判断@Conditional
+        Assert.assertFalse(context.containsBean("scannedConditional"));
+        // 按@Scope的proxyMode注册作用域代理
+        Assert.assertTrue(context.containsBeanDefinition("scopedTarget.scannedPrototype"));
+        Assert.assertTrue(AopUtils.isCglibProxy(context.getBean("scannedPrototype")));
+        context.close();
+
+        // 有CUSTOM过滤器时不缓存jar的扫描结果
+        File cacheDirectory = Files.createTempDirectory("parallel-scan").toFile();
+        context = new AnnotationConfigApplicationContext();
+        properties.put("scan.prefix", "org.springframework.stereotype.");
+        properties.put("scan.cache", cacheDirectory.getAbsolutePath());
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("scan", properties));
+        context.register(CustomCachedScanConfig.class);
+        context.refresh();
+        Assert.assertEquals(0, cacheDirectory.listFiles().length);
+        context.close();
+        context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("scan", properties));
+        context.register(RegexCachedScanConfig.class);
+        context.refresh();
+        Assert.assertEquals(1, cacheDirectory.listFiles().length);
+        context.close();
+        FileSystemUtils.deleteRecursively(cacheDirectory);
+    }
+
+    @ParallelComponentScan(value = "org.springframework.stereotype", useDefaultFilters = false, cacheDirectory = "${scan.cache}",
+            includeFilters = @ComponentScan.Filter(type = FilterType.CUSTOM, classes = ScanPrefixFilter.class))
+    @Configuration
+    static class CustomCachedScanConfig {
+    }
+
+    @ParallelComponentScan(value = "org.springframework.stereotype", useDefaultFilters = false, cacheDirectory = "${scan.cache}",
+            includeFilters = @ComponentScan.Filter(type = FilterType.REGEX, pattern = "org\\.springframework\\.stereotype\\..*"))
+    @Configuration
+    static class RegexCachedScanConfig {
+    }
+
+    @ParallelComponentScan(value = "cn.forbearance.spring", useDefaultFilters = false,
+            includeFilters = @ComponentScan.Filter(type = FilterType.CUSTOM, classes = ScanPrefixFilter.class))
+    @Configuration
+    static class ParallelScanConfig {
+    }
+
+    public static class ScanPrefixFilter implements TypeFilter, EnvironmentAware {
+
+        private Environment environment;
+
+        @Override
+        public void setEnvironment(Environment environment) {
+            this.environment = environment;
+        }
+
+        @Override
+        public boolean match(MetadataReader metadataReader, MetadataReaderFactory metadataReaderFactory) {
+            return metadataReader.getClassMetadata().getClassName().startsWith(environment.getProperty("scan.prefix"));
+        }
+    }
+
+    public static class ScanEnabledCondition implements Condition {
+
+        @Override
+        public boolean matches(ConditionContext context, AnnotatedTypeMetadata metadata) {
+            return context.getEnvironment().getProperty("scan.conditional", Boolean.class, true);
+        }
+    }
+
+    @Component("scannedComponent")
+    public static class ScannedComponent {
+    }
+
+    @Conditional(ScanEnabledCondition.class)
+    @Component("scannedConditional")
+    public static class ScannedConditional {
+    }
+
+    @Scope(value = "prototype", proxyMode = ScopedProxyMode.TARGET_CLASS)
+    @Component("scannedPrototype")
+    public static class ScannedPrototype {
+    }
+
+    static class Buffer {
+
+        private final StringBuilder content = new StringBuilder();
+
+        @PoolReset
+        public void reset() {
+            content.setLength(0);
+        }
+    }
+
+    @Configuration
+    static class PrototypeConfig {
+
+        @Scope("prototype")
+        @Bean(initMethod = "start")
+        public Widget widget() {
+            return new Widget();
+        }
+    }
+
+    static class Widget implements BeanNameAware {
+
+        @Autowired
+        private Environment environment;
+
+        private String beanName;
+
+        private boolean started;
+
+        @Override
+        public void setBeanName(String name) {
+            this.beanName = name;
+        }
+
+        public void start() {
+            // init方法执行时属性已经注入
+            started = environment != null;
+        }
+    }
+
+    static class BookOnlyPostProcessor implements SelectiveBeanPostProcessor {
+
+        private int count;
+
+        @Override
+        public boolean supportsBeanType(Class<?> beanType) {
+            return Book.class.isAssignableFrom(beanType);
+        }
+
+        @Override
+        public boolean requiresBeforeInitialization() {
+            return false;
+        }
+
+        @Override
+        public Object postProcessBeforeInitialization(Object bean, String beanName) {
+            throw new IllegalStateException("不需要初始化之前的回调");
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            count++;
+            return bean;
+        }
+    }
+
+    @Configuration
+    static class SlowInitConfig {
+
+        @Bean
+        public SlowResource pool1() {
+            return new SlowResource(null);
+        }
+
+        @Bean
+        public SlowResource pool2() {
+            return new SlowResource(null);
+        }
+
+        @Bean
+        public SlowResource pool3() {
+            return new SlowResource(null);
+        }
+
+        @Bean
+        public SlowResource pool4() {
+            return new SlowResource(null);
+        }
+
+        @Bean
+        public SlowResource cache(SlowResource pool1) {
+            return new SlowResource(pool1);
+        }
+
+        @Bean
+        @DependsOn("pool2")
+        public SlowResource warmup() {
+            return new SlowResource(null);
+        }
+    }
+
+    static class SlowResource implements InitializingBean {
+
+        private final SlowResource dependency;
+
+        private volatile boolean initialized;
+
+        SlowResource(SlowResource dependency) {
+            this.dependency = dependency;
+        }
+
+        @PostConstruct
+        public void checkDependency() {
+            // 注入的依赖必须已经执行完afterPropertiesSet
+            Assert.assertTrue(dependency == null || dependency.initialized);
+        }
+
+        @Override
+        public void afterPropertiesSet() throws Exception {
+            Thread.sleep(200);
+            initialized = true;
+        }
+    }
+
+    @Configuration
+    @LazyImport(CustomImportSelector.class)
+    static class LazyImportConfig {
+    }
+
+    @Configuration
+    static class ConditionConfig {
+
+        @Conditional(WindowsCondition.class)
+        @Bean(value = "windows")
+        public Book book1() {
+            return new Book("book1", 49);
+        }
+
+        @Conditional(WindowsCondition.class)
+        @Bean(value = "windows2")
+        public Book book2() {
+            return new Book("book2", 49);
+        }
+
+        @Conditional(LinuxCondition.class)
+        @Bean(value = "linux")
+        public Book book3() {
+            return new Book("book3", 49);
+        }
+
+        @Conditional(LinuxCondition.class)
+        @Bean(value = "linux2")
+        public Book book4() {
+            return new Book("book4", 49);
+        }
+    }
 }
@@ -0,0 +1,99 @@
+package cn.forbearance.spring.benchmark;
+
+import cn.forbearance.spring.aspect.AuditLog;
+import cn.forbearance.spring.aspect.EnableLazyJoinPoint;
+import cn.forbearance.spring.config.AopConfig;
+import cn.forbearance.spring.mapper.BookMapper;
+import cn.forbearance.spring.service.BookService;
+import org.aspectj.lang.JoinPoint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 调用 {@link BookService} 的开销：不织入、默认通知、按需创建连接点的通知
+ *
+ * @author cristina
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AdviceBenchmark {
+
+    @Param({"unadvised", "eager", "lazy"})
+    private String mode;
+
+    private AnnotationConfigApplicationContext context;
+
+    private BookService bookService;
+
+    @Setup
+    public void setUp() {
+        context = new AnnotationConfigApplicationContext();
+        if ("unadvised".equals(mode)) {
+            context.register(BookMapper.class, BookService.class);
+        } else {
+            context.registerBeanDefinition("auditLog", new RootBeanDefinition(CountingAuditLog.class));
+            context.register(AopConfig.class);
+            if ("lazy".equals(mode)) {
+                context.register(LazyJoinPointConfig.class);
+            }
+        }
+        context.refresh();
+        bookService = context.getBean(BookService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public String getLabel() {
+        return bookService.getLabel();
+    }
+
+    @EnableLazyJoinPoint
+    @Configuration
+    static class LazyJoinPointConfig {
+    }
+
+    /**
+     * 不访问连接点，只比较通知分派本身
+     */
+    public static class CountingAuditLog implements AuditLog {
+
+        private long count;
+
+        @Override
+        public void record(JoinPoint joinPoint) {
+            count++;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(AdviceBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
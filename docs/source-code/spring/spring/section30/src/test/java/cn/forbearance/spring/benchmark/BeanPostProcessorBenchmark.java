@@ -0,0 +1,134 @@
+package cn.forbearance.spring.benchmark;
+
+import cn.forbearance.spring.bean.Blue;
+import cn.forbearance.spring.bean.Book;
+import cn.forbearance.spring.factory.ProcessorChainBeanFactory;
+import cn.forbearance.spring.factory.SelectiveBeanPostProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+
+import javax.sql.DataSource;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 原型bean的创建耗时：每个处理器都调用 vs 按bean类型筛选处理器
+ * <p>
+ * 注册了若干个只关心 {@link DataSource} 的处理器，对Book、Blue来说都是空操作
+ *
+ * @author cristina
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BeanPostProcessorBenchmark {
+
+    @Param({"4", "16"})
+    private int processorCount;
+
+    private DefaultListableBeanFactory plain;
+
+    private ProcessorChainBeanFactory selective;
+
+    private PrintStream out;
+
+    @Setup
+    public void setup() {
+        // Blue的构造函数会打印，避免输出影响结果
+        out = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        }));
+        plain = new DefaultListableBeanFactory();
+        selective = new ProcessorChainBeanFactory();
+        for (int i = 0; i < processorCount; i++) {
+            plain.addBeanPostProcessor(new DataSourcePostProcessor());
+            selective.addBeanPostProcessor(new DataSourcePostProcessor());
+        }
+        registerPrototypes(plain);
+        registerPrototypes(selective);
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(out);
+    }
+
+    @Benchmark
+    public Object bookAllProcessors() {
+        return plain.getBean("book");
+    }
+
+    @Benchmark
+    public Object bookSelectedProcessors() {
+        return selective.getBean("book");
+    }
+
+    @Benchmark
+    public Object blueAllProcessors() {
+        return plain.getBean("blue");
+    }
+
+    @Benchmark
+    public Object blueSelectedProcessors() {
+        return selective.getBean("blue");
+    }
+
+    private static void registerPrototypes(DefaultListableBeanFactory beanFactory) {
+        RootBeanDefinition book = new RootBeanDefinition(Book.class);
+        book.setScope(RootBeanDefinition.SCOPE_PROTOTYPE);
+        beanFactory.registerBeanDefinition("book", book);
+        RootBeanDefinition blue = new RootBeanDefinition(Blue.class);
+        blue.setScope(RootBeanDefinition.SCOPE_PROTOTYPE);
+        beanFactory.registerBeanDefinition("blue", blue);
+    }
+
+    /**
+     * 普通的 {@link BeanPostProcessor} 在DefaultListableBeanFactory中对每个bean都会被调用
+     */
+    static class DataSourcePostProcessor implements SelectiveBeanPostProcessor {
+
+        @Override
+        public boolean supportsBeanType(Class<?> beanType) {
+            return DataSource.class.isAssignableFrom(beanType);
+        }
+
+        @Override
+        public Object postProcessBeforeInitialization(Object bean, String beanName) {
+            return bean;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            return bean;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(BeanPostProcessorBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,131 @@
+package cn.forbearance.spring.benchmark;
+
+import cn.forbearance.spring.condition.ConditionCache;
+import cn.forbearance.spring.condition.LinuxCondition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.context.annotation.Condition;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 条件判断：与 {@link LinuxCondition} 逻辑相同、每次都读取属性的条件 vs 经过 {@link ConditionCache} 的 {@link LinuxCondition}
+ * <p>
+ * 应用通常在系统属性前面还有若干属性源，未缓存时每次判断都要依次查找它们
+ *
+ * @author cristina
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConditionBenchmark {
+
+    @Param({"uncached", "cached"})
+    private String mode;
+
+    @Param({"0", "4"})
+    private int extraPropertySources;
+
+    private Condition condition;
+
+    private ConditionContext context;
+
+    @Setup
+    public void setup() {
+        StandardEnvironment environment = new StandardEnvironment();
+        for (int i = 0; i < extraPropertySources; i++) {
+            environment.getPropertySources().addFirst(new MapPropertySource("application" + i,
+                    Collections.<String, Object>singletonMap("app.key" + i, "value" + i)));
+        }
+        context = new SimpleConditionContext(environment, new DefaultListableBeanFactory());
+        condition = "cached".equals(mode) ? new LinuxCondition() : new UncachedLinuxCondition();
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return condition.matches(context, null);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ConditionBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+    /**
+     * 与 {@link LinuxCondition} 的判断逻辑相同
+     */
+    static class UncachedLinuxCondition implements Condition {
+
+        @Override
+        public boolean matches(ConditionContext context, AnnotatedTypeMetadata metadata) {
+            context.getRegistry().containsBeanDefinition("org.springframework.context.annotation.internalConfigurationAnnotationProcessor");
+            return context.getEnvironment().getProperty("os.name").contains("linux");
+        }
+    }
+
+    static class SimpleConditionContext implements ConditionContext {
+
+        private final Environment environment;
+
+        private final DefaultListableBeanFactory beanFactory;
+
+        private final ResourceLoader resourceLoader = new DefaultResourceLoader();
+
+        SimpleConditionContext(Environment environment, DefaultListableBeanFactory beanFactory) {
+            this.environment = environment;
+            this.beanFactory = beanFactory;
+        }
+
+        @Override
+        public BeanDefinitionRegistry getRegistry() {
+            return beanFactory;
+        }
+
+        @Override
+        public ConfigurableListableBeanFactory getBeanFactory() {
+            return beanFactory;
+        }
+
+        @Override
+        public Environment getEnvironment() {
+            return environment;
+        }
+
+        @Override
+        public ResourceLoader getResourceLoader() {
+            return resourceLoader;
+        }
+
+        @Override
+        public ClassLoader getClassLoader() {
+            return resourceLoader.getClassLoader();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package cn.forbearance.spring.benchmark;
+
+import cn.forbearance.spring.datasource.DataSourcePoolFactory;
+import cn.forbearance.spring.datasource.PoolProperties;
+import com.mchange.v2.c3p0.DataSources;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 内嵌H2数据库上的连接池压测，线程数多于连接数，统计获取并归还连接的耗时分布(p50、p90、p99...)
+ *
+ * @author cristina
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(32)
+@State(Scope.Benchmark)
+public class DataSourcePoolBenchmark {
+
+    @Param({"c3p0", "lockfree"})
+    private String type;
+
+    @Param({"10"})
+    private int maxSize;
+
+    private DataSource dataSource;
+
+    @Setup
+    public void setUp() throws Exception {
+        PoolProperties properties = new PoolProperties();
+        properties.setJdbcUrl("jdbc:h2:mem:pool;DB_CLOSE_DELAY=-1");
+        properties.setUser("sa");
+        properties.setPassword("");
+        properties.setDriverClass("org.h2.Driver");
+        properties.setMaxSize(maxSize);
+        dataSource = DataSourcePoolFactory.forType(type).create(properties);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        if (dataSource instanceof Closeable) {
+            ((Closeable) dataSource).close();
+        } else {
+            DataSources.destroy(dataSource);
+        }
+    }
+
+    @Benchmark
+    public boolean borrow() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            return connection.getAutoCommit();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(DataSourcePoolBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,99 @@
+package cn.forbearance.spring.benchmark;
+
+import cn.forbearance.spring.scope.PoolReset;
+import cn.forbearance.spring.scope.PooledScope;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 创建代价较高的bean：每次新建的原型作用域 vs 池化作用域，4个线程同时获取
+ *
+ * @author cristina
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class PooledScopeBenchmark {
+
+    @Param({"prototype", PooledScope.POOLED_SCOPE})
+    private String scope;
+
+    private AnnotationConfigApplicationContext context;
+
+    private PooledScope pooledScope;
+
+    @Setup
+    public void setup() {
+        pooledScope = new PooledScope(8, -1, 0);
+        context = new AnnotationConfigApplicationContext();
+        context.getBeanFactory().registerScope(PooledScope.POOLED_SCOPE, pooledScope);
+        RootBeanDefinition beanDefinition = new RootBeanDefinition(Encoder.class);
+        beanDefinition.setScope(scope);
+        context.registerBeanDefinition("encoder", beanDefinition);
+        context.refresh();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        pooledScope.destroy();
+    }
+
+    @Benchmark
+    public int encode() throws Exception {
+        if ("prototype".equals(scope)) {
+            return context.getBean(Encoder.class).encode(42);
+        }
+        return pooledScope.execute(() -> context.getBean(Encoder.class).encode(42));
+    }
+
+    /**
+     * 带有64KB缓冲区的bean
+     */
+    public static class Encoder {
+
+        private final byte[] buffer = new byte[64 * 1024];
+
+        private int position;
+
+        public int encode(int value) {
+            buffer[position++] = (byte) value;
+            return position;
+        }
+
+        @PoolReset
+        public void reset() {
+            Arrays.fill(buffer, 0, position, (byte) 0);
+            position = 0;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PooledScopeBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
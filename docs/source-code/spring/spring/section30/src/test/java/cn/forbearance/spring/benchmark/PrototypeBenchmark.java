@@ -0,0 +1,118 @@
+package cn.forbearance.spring.benchmark;
+
+import cn.forbearance.spring.bean.Blue;
+import cn.forbearance.spring.bean.Book;
+import cn.forbearance.spring.bean.Color;
+import cn.forbearance.spring.factory.PrototypeInstantiatingBeanFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 原型bean的getBean吞吐量：Spring原来的反射方式 vs 预编译的创建方式
+ *
+ * @author cristina
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PrototypeBenchmark {
+
+    @Param({"reflective", "generated"})
+    private String mode;
+
+    private AnnotationConfigApplicationContext context;
+
+    private PrintStream out;
+
+    @Setup
+    public void setup() {
+        // Book的init方法和Blue的构造函数会打印，避免输出影响结果
+        out = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        }));
+        DefaultListableBeanFactory beanFactory = "generated".equals(mode)
+                ? new PrototypeInstantiatingBeanFactory() : new DefaultListableBeanFactory();
+        context = new AnnotationConfigApplicationContext(beanFactory);
+        context.register(PrototypeConfig.class);
+        context.refresh();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        System.setOut(out);
+    }
+
+    @Benchmark
+    public Object book() {
+        return context.getBean("book");
+    }
+
+    @Benchmark
+    public Object blue() {
+        return context.getBean("blue");
+    }
+
+    @Benchmark
+    public Object color() {
+        return context.getBean("color");
+    }
+
+    /**
+     * 与早期章节BeanConfig中的原型bean相同
+     */
+    @Configuration
+    public static class PrototypeConfig {
+
+        @org.springframework.context.annotation.Scope("prototype")
+        @Bean(initMethod = "init", destroyMethod = "destroy")
+        public Book book() {
+            return new Book("forbearance.cn", 49);
+        }
+
+        @org.springframework.context.annotation.Scope("prototype")
+        @Bean
+        public Blue blue() {
+            return new Blue();
+        }
+
+        @org.springframework.context.annotation.Scope("prototype")
+        @Bean
+        public Color color() {
+            return new Color();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PrototypeBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
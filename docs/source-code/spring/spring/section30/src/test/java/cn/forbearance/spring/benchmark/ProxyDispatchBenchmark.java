@@ -0,0 +1,140 @@
+package cn.forbearance.spring.benchmark;
+
+import cn.forbearance.spring.handler.CustomInvocationHandler;
+import cn.forbearance.spring.handler.MethodHandleInvocationHandler;
+import cn.forbearance.spring.service.UserService;
+import cn.forbearance.spring.service.impl.UserServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 调用 {@link UserService#add()} 的开销：直接调用、{@link Method#invoke} 分派的代理、{@link java.lang.invoke.MethodHandle} 分派的代理，
+ * 以及创建代理对象的开销
+ * <p>
+ * {@link UserServiceImpl#add()} 的输出被丢弃，noop 目标只剩下分派本身的开销
+ *
+ * @author cristina
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProxyDispatchBenchmark {
+
+    @Param({"direct", "reflective", "handle"})
+    private String dispatch;
+
+    @Param({"impl", "noop"})
+    private String target;
+
+    private PrintStream out;
+
+    private UserService service;
+
+    private UserService userService;
+
+    @Setup
+    public void setUp() {
+        out = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+        service = "impl".equals(target) ? new UserServiceImpl() : new NoopUserService();
+        userService = createProxy();
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(out);
+    }
+
+    @Benchmark
+    public void add() {
+        userService.add();
+    }
+
+    /**
+     * 每次创建新的代理对象
+     */
+    @Benchmark
+    public UserService createProxy() {
+        if ("reflective".equals(dispatch)) {
+            return (UserService) new QuietReflectiveHandler(service).getProxy();
+        } else if ("handle".equals(dispatch)) {
+            return (UserService) new QuietMethodHandleHandler(service).getProxy();
+        }
+        return service;
+    }
+
+    public static class NoopUserService implements UserService {
+
+        @Override
+        public void add() {
+        }
+    }
+
+    /**
+     * 不打印前后的日志，只比较分派
+     */
+    static class QuietReflectiveHandler extends CustomInvocationHandler {
+
+        QuietReflectiveHandler(Object target) {
+            super(target);
+        }
+
+        @Override
+        protected void before(Method method) {
+        }
+
+        @Override
+        protected void after(Method method) {
+        }
+    }
+
+    static class QuietMethodHandleHandler extends MethodHandleInvocationHandler {
+
+        QuietMethodHandleHandler(Object target) {
+            super(target);
+        }
+
+        @Override
+        protected void before(Method method) {
+        }
+
+        @Override
+        protected void after(Method method) {
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ProxyDispatchBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
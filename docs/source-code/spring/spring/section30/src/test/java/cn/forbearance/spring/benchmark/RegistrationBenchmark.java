@@ -0,0 +1,85 @@
+package cn.forbearance.spring.benchmark;
+
+import cn.forbearance.spring.bean.Book;
+import cn.forbearance.spring.registry.BatchingListableBeanFactory;
+import cn.forbearance.spring.registry.BeanDefinitionBatch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 注册大量BeanDefinition的耗时：逐个注册 vs 批量注册
+ * <p>
+ * 容器刷新时registrar由ConfigurationClassPostProcessor调用，此时已经有bean被创建，
+ * 所以这里先getBean一次，模拟真实的注册时机
+ *
+ * @author cristina
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RegistrationBenchmark {
+
+    @Param({"10000", "100000"})
+    private int count;
+
+    private RootBeanDefinition[] beanDefinitions;
+
+    @Setup
+    public void setup() {
+        beanDefinitions = new RootBeanDefinition[count];
+        for (int i = 0; i < count; i++) {
+            beanDefinitions[i] = new RootBeanDefinition(Book.class);
+        }
+    }
+
+    @Benchmark
+    public Object registerOneByOne() {
+        DefaultListableBeanFactory beanFactory = startedBeanFactory(new DefaultListableBeanFactory());
+        for (int i = 0; i < count; i++) {
+            beanFactory.registerBeanDefinition("book" + i, beanDefinitions[i]);
+        }
+        return beanFactory;
+    }
+
+    @Benchmark
+    public Object registerBatch() {
+        BatchingListableBeanFactory beanFactory = startedBeanFactory(new BatchingListableBeanFactory());
+        BeanDefinitionBatch batch = new BeanDefinitionBatch(count);
+        for (int i = 0; i < count; i++) {
+            batch.add("book" + i, beanDefinitions[i]);
+        }
+        batch.registerTo(beanFactory);
+        return beanFactory;
+    }
+
+    private static <T extends DefaultListableBeanFactory> T startedBeanFactory(T beanFactory) {
+        beanFactory.registerBeanDefinition("seed", new RootBeanDefinition(Book.class));
+        beanFactory.getBean("seed");
+        return beanFactory;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RegistrationBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
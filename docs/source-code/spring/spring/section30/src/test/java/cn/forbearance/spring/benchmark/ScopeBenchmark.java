@@ -0,0 +1,73 @@
+package cn.forbearance.spring.benchmark;
+
+import cn.forbearance.spring.scope.CustomThreadScope;
+import cn.forbearance.spring.scope.SlotThreadScope;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.beans.factory.ObjectFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 线程作用域取bean的吞吐量对比：{@link CustomThreadScope} vs {@link SlotThreadScope}
+ *
+ * @author cristina
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScopeBenchmark {
+
+    private static final String[] NAMES = {"book", "blue", "white", "color", "person", "red", "yellow", "pink"};
+
+    private final ObjectFactory<Object> objectFactory = Object::new;
+
+    private CustomThreadScope customThreadScope;
+
+    private SlotThreadScope slotThreadScope;
+
+    @Setup
+    public void setup() {
+        customThreadScope = new CustomThreadScope();
+        slotThreadScope = new SlotThreadScope();
+        for (String name : NAMES) {
+            slotThreadScope.slotOf(name);
+        }
+    }
+
+    @Benchmark
+    public void customThreadScope(Blackhole blackhole) {
+        for (String name : NAMES) {
+            blackhole.consume(customThreadScope.get(name, objectFactory));
+        }
+    }
+
+    @Benchmark
+    public void slotThreadScope(Blackhole blackhole) {
+        for (String name : NAMES) {
+            blackhole.consume(slotThreadScope.get(name, objectFactory));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ScopeBenchmark.class.getSimpleName())
+                .threads(4)
+                .build()).run();
+    }
+}
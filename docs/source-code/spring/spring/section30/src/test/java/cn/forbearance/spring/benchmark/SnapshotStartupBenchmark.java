@@ -0,0 +1,83 @@
+package cn.forbearance.spring.benchmark;
+
+import cn.forbearance.spring.config.BeanConfig;
+import cn.forbearance.spring.registry.BeanDefinitionSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 从快照启动与正常解析配置类的启动耗时对比
+ *
+ * @author cristina
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SnapshotStartupBenchmark {
+
+    private File directory;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("snapshot-benchmark").toFile();
+        // 生成快照
+        refresh(directory);
+    }
+
+    @TearDown
+    public void tearDown() {
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public Object refreshWithSnapshot() {
+        return refresh(directory);
+    }
+
+    @Benchmark
+    public Object refreshWithParsing() {
+        return refresh(null);
+    }
+
+    private static Object refresh(File directory) {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().setActiveProfiles("test");
+        if (directory != null) {
+            BeanDefinitionSnapshot.register(context, directory, BeanConfig.class);
+        } else {
+            context.register(BeanConfig.class);
+        }
+        context.refresh();
+        int count = context.getBeanDefinitionCount();
+        context.close();
+        return count;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SnapshotStartupBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
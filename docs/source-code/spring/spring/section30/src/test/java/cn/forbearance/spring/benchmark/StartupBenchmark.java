@@ -0,0 +1,65 @@
+package cn.forbearance.spring.benchmark;
+
+import cn.forbearance.spring.config.ScanConfig;
+import cn.forbearance.spring.scan.ComponentIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 容器启动耗时对比
+ *
+ * @author cristina
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StartupBenchmark {
+
+    /**
+     * 读取构建期生成的组件索引
+     */
+    @Benchmark
+    public Object refreshWithIndex() {
+        return refresh(false);
+    }
+
+    /**
+     * 忽略索引，扫描类路径
+     */
+    @Benchmark
+    public Object refreshWithScan() {
+        return refresh(true);
+    }
+
+    private static Object refresh(boolean ignoreIndex) {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark",
+                Collections.<String, Object>singletonMap(ComponentIndex.IGNORE_INDEX_PROPERTY, ignoreIndex)));
+        context.register(ScanConfig.class);
+        context.refresh();
+        int count = context.getBeanDefinitionCount();
+        context.close();
+        return count;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(StartupBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,90 @@
+package cn.forbearance.spring.benchmark;
+
+import cn.forbearance.spring.bean.Person;
+import cn.forbearance.spring.factory.CompiledValueResolver;
+import cn.forbearance.spring.factory.CompiledValueBeanFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.beans.factory.config.EmbeddedValueResolver;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.util.StringValueResolver;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code @Value} 的解析：Spring原来的 {@link EmbeddedValueResolver} vs {@link CompiledValueResolver}
+ *
+ * @author cristina
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValueResolutionBenchmark {
+
+    /**
+     * 与CustomAware中解析的字符串相同
+     */
+    private static final String TEMPLATE = "操作系统: ${os.name}，age=#{22}";
+
+    @Param({"spring", "compiled"})
+    private String mode;
+
+    private AnnotationConfigApplicationContext context;
+
+    private StringValueResolver resolver;
+
+    @Setup
+    public void setup() {
+        DefaultListableBeanFactory beanFactory = "compiled".equals(mode)
+                ? new CompiledValueBeanFactory() : new DefaultListableBeanFactory();
+        context = new AnnotationConfigApplicationContext(beanFactory);
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark",
+                Collections.<String, Object>singletonMap("person.name", "forbearance")));
+        RootBeanDefinition person = new RootBeanDefinition(Person.class);
+        person.setScope(RootBeanDefinition.SCOPE_PROTOTYPE);
+        context.registerBeanDefinition("person", person);
+        context.refresh();
+        resolver = "compiled".equals(mode) ? new CompiledValueResolver(beanFactory) : new EmbeddedValueResolver(beanFactory);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public String resolveString() {
+        return resolver.resolveStringValue(TEMPLATE);
+    }
+
+    @Benchmark
+    public Object person() {
+        return context.getBean("person");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ValueResolutionBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}